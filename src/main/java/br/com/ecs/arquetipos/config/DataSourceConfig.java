@@ -30,7 +30,7 @@ public class DataSourceConfig {
             ds.setJdbcUrl(jdbcDatabaseUrl);
             ds.setUsername(firstNonBlank(System.getenv("PGUSER"), env.getProperty("spring.datasource.username")));
             ds.setPassword(firstNonBlank(System.getenv("PGPASSWORD"), env.getProperty("spring.datasource.password")));
-            ds.setMaximumPoolSize(10);
+            configurePool(ds);
             return ds;
         }
 
@@ -49,7 +49,7 @@ public class DataSourceConfig {
                     ds.setJdbcUrl(databaseUrl);
                     ds.setUsername(firstNonBlank(System.getenv("PGUSER"), env.getProperty("spring.datasource.username")));
                     ds.setPassword(firstNonBlank(System.getenv("PGPASSWORD"), env.getProperty("spring.datasource.password")));
-                    ds.setMaximumPoolSize(10);
+                    configurePool(ds);
                     return ds;
                 }
 
@@ -79,7 +79,7 @@ public class DataSourceConfig {
                     else ds.setUsername(firstNonBlank(System.getenv("PGUSER"), env.getProperty("spring.datasource.username")));
                     if (password != null) ds.setPassword(password);
                     else ds.setPassword(firstNonBlank(System.getenv("PGPASSWORD"), env.getProperty("spring.datasource.password")));
-                    ds.setMaximumPoolSize(10);
+                    configurePool(ds);
                     return ds;
                 }
                 // se esquema não é postgres, tenta usar como JDBC direto
@@ -100,7 +100,7 @@ public class DataSourceConfig {
             ds.setJdbcUrl(configuredUrl);
             ds.setUsername(firstNonBlank(System.getenv("PGUSER"), env.getProperty("spring.datasource.username")));
             ds.setPassword(firstNonBlank(System.getenv("PGPASSWORD"), env.getProperty("spring.datasource.password")));
-            ds.setMaximumPoolSize(10);
+            configurePool(ds);
             return ds;
         }
 
@@ -120,7 +120,7 @@ public class DataSourceConfig {
             ds.setJdbcUrl(jdbcUrl);
             if (pgUser != null) ds.setUsername(pgUser);
             if (pgPassword != null) ds.setPassword(pgPassword);
-            ds.setMaximumPoolSize(10);
+            configurePool(ds);
             return ds;
         }
 
@@ -130,6 +130,14 @@ public class DataSourceConfig {
         throw new IllegalStateException(msg);
     }
 
+    private void configurePool(HikariDataSource ds) {
+        ds.setMaximumPoolSize(10);
+        // Driver do PostgreSQL reescreve batches de INSERT em INSERTs multi-valores (bem menos round trips)
+        if (ds.getJdbcUrl() != null && ds.getJdbcUrl().startsWith("jdbc:postgresql:")) {
+            ds.addDataSourceProperty("reWriteBatchedInserts", "true");
+        }
+    }
+
     private String firstNonBlank(String... vals) {
         if (vals == null) return null;
         for (String v : vals) {
@@ -0,0 +1,19 @@
+package br.com.ecs.arquetipos.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class ReactorConfig {
+
+    // Scheduler limitado para isolar chamadas JPA/JDBC (bloqueantes) dos pipelines reativos.
+    // O número de threads acompanha o pool do Hikari (10): mais threads só ficariam esperando conexão.
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jdbcScheduler(@Value("${reactor.jdbc-scheduler.threads:10}") int threads,
+                                   @Value("${reactor.jdbc-scheduler.queued-tasks:10000}") int queuedTasks) {
+        return Schedulers.newBoundedElastic(threads, queuedTasks, "jdbc");
+    }
+}
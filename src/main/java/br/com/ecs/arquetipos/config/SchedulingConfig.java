@@ -0,0 +1,10 @@
+package br.com.ecs.arquetipos.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Habilita as tarefas @Scheduled (ex.: renovação do token da Hotmart)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
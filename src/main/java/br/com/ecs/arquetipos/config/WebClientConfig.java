@@ -1,4 +1,95 @@
 package br.com.ecs.arquetipos.config;
 
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.socket.nio.NioChannelOption;
+import jdk.net.ExtendedSocketOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+@Configuration
 public class WebClientConfig {
+
+    /**
+     * Pool de conexões exclusivo da Hotmart. Conexões ociosas ou antigas demais são descartadas em
+     * background (antes que o load balancer do outro lado as derrube), e as métricas do pool
+     * (reactor.netty.connection.provider.* com name=hotmart) expõem conexões ativas, ociosas e pendentes.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider hotmartConnectionProvider(
+            @Value("${hotmart.http.pool.max-connections:50}") int maxConnections,
+            @Value("${hotmart.http.pool.pending-acquire-max-count:500}") int pendingAcquireMaxCount,
+            @Value("${hotmart.http.pool.pending-acquire-timeout:2s}") Duration pendingAcquireTimeout,
+            @Value("${hotmart.http.pool.max-idle-time:30s}") Duration maxIdleTime,
+            @Value("${hotmart.http.pool.max-life-time:5m}") Duration maxLifeTime,
+            @Value("${hotmart.http.pool.eviction-interval:30s}") Duration evictionInterval) {
+        return ConnectionProvider.builder("hotmart")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictionInterval)
+                .lifo()
+                .metrics(true)
+                .build();
+    }
+
+    // WebClient dedicado à Hotmart: sem timeouts, uma Hotmart lenta prende conexões indefinidamente
+    @Bean
+    public WebClient hotmartWebClient(WebClient.Builder webClientBuilder,
+                                      ConnectionProvider hotmartConnectionProvider,
+                                      @Value("${hotmart.http.connect-timeout:2s}") Duration connectTimeout,
+                                      @Value("${hotmart.http.read-timeout:5s}") Duration readTimeout,
+                                      @Value("${hotmart.http.keep-alive.idle:60s}") Duration keepAliveIdle,
+                                      @Value("${hotmart.http.keep-alive.interval:10s}") Duration keepAliveInterval,
+                                      @Value("${hotmart.http.keep-alive.count:3}") int keepAliveCount,
+                                      @Value("${hotmart.http.http2-enabled:false}") boolean http2Enabled) {
+        HttpClient httpClient = hotmartHttpClient(hotmartConnectionProvider, connectTimeout, readTimeout,
+                keepAliveIdle, keepAliveInterval, keepAliveCount, http2Enabled);
+        return webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    static HttpClient hotmartHttpClient(ConnectionProvider connectionProvider,
+                                        Duration connectTimeout,
+                                        Duration readTimeout,
+                                        Duration keepAliveIdle,
+                                        Duration keepAliveInterval,
+                                        int keepAliveCount,
+                                        boolean http2Enabled) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(readTimeout);
+
+        // O Reactor Netty usa o transporte nativo (epoll) quando disponível, e ele ignora as opções NIO
+        if (Epoll.isAvailable()) {
+            httpClient = httpClient
+                    .option(EpollChannelOption.TCP_KEEPIDLE, (int) keepAliveIdle.toSeconds())
+                    .option(EpollChannelOption.TCP_KEEPINTVL, (int) keepAliveInterval.toSeconds())
+                    .option(EpollChannelOption.TCP_KEEPCNT, keepAliveCount);
+        } else {
+            httpClient = httpClient
+                    .option(NioChannelOption.of(ExtendedSocketOptions.TCP_KEEPIDLE), (int) keepAliveIdle.toSeconds())
+                    .option(NioChannelOption.of(ExtendedSocketOptions.TCP_KEEPINTERVAL), (int) keepAliveInterval.toSeconds())
+                    .option(NioChannelOption.of(ExtendedSocketOptions.TCP_KEEPCOUNT), keepAliveCount);
+        }
+
+        if (http2Enabled) {
+            // HTTP/2 via ALPN quando a Hotmart negociar; caso contrário, segue em HTTP/1.1
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return httpClient;
+    }
 }
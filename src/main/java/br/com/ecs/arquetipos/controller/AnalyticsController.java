@@ -0,0 +1,27 @@
+package br.com.ecs.arquetipos.controller;
+
+import br.com.ecs.arquetipos.dto.RevenueReport;
+import br.com.ecs.arquetipos.service.RevenueAnalyticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final RevenueAnalyticsService revenueAnalyticsService;
+
+    // Receita por produto/moeda/dia no período (datas ISO, dias UTC, intervalo fechado)
+    @GetMapping("/revenue")
+    public ResponseEntity<RevenueReport> revenue(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                 @RequestParam(required = false) String productId,
+                                                 @RequestParam(required = false) String currency) {
+        return ResponseEntity.ok(revenueAnalyticsService.report(from, to, productId, currency));
+    }
+}
@@ -0,0 +1,128 @@
+package br.com.ecs.arquetipos.controller;
+
+import br.com.ecs.arquetipos.dto.ImportReport;
+import br.com.ecs.arquetipos.dto.SubscriberPage;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.repository.SubscriberRepositoryCustom.ExportFilter;
+import br.com.ecs.arquetipos.repository.SubscriberRepositoryCustom.SearchFilter;
+import br.com.ecs.arquetipos.service.SubscriberBulkImportService;
+import br.com.ecs.arquetipos.service.SubscriberExportService;
+import br.com.ecs.arquetipos.service.SubscriberQueryService;
+import br.com.ecs.arquetipos.service.SubscriberResponseCache.CachedResponse;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/subscribers")
+@RequiredArgsConstructor
+public class SubscriberController {
+
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final SubscriberBulkImportService bulkImportService;
+    private final SubscriberExportService exportService;
+    private final SubscriberQueryService queryService;
+
+    /**
+     * Alvo dos {@code Location} devolvidos pelos webhooks. O corpo sai pronto do cache; com um
+     * {@code If-None-Match} que bate com o ETag a resposta é 304, sem banco e sem serialização.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<byte[]> getSubscriber(@PathVariable long id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Optional<CachedResponse> cached = queryService.findResponse(id);
+        if (cached.isEmpty()) return ResponseEntity.notFound().build();
+
+        CachedResponse response = cached.get();
+        // Sempre revalidar: o ETag é barato de conferir e o cadastro pode mudar a qualquer webhook
+        CacheControl cacheControl = CacheControl.noCache();
+        if (matches(ifNoneMatch, response.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(response.etag()).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(response.etag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response.body());
+    }
+
+    // If-None-Match aceita lista e comparação fraca (RFC 9110 13.1.2)
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) return true;
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lista paginada, mais recentes primeiro. A próxima página é pedida com {@code after=<nextCursor>}
+     * e custa o mesmo em qualquer profundidade (keyset em created_at, id).
+     */
+    @GetMapping
+    public ResponseEntity<SubscriberPage> listSubscribers(@RequestParam(required = false) Provider provider,
+                                                         @RequestParam(required = false) String productId,
+                                                         @RequestParam(required = false) Instant purchasedFrom,
+                                                         @RequestParam(required = false) Instant purchasedTo,
+                                                         @RequestParam(required = false) String after,
+                                                         @RequestParam(required = false) Integer limit) {
+        SearchFilter filter = new SearchFilter(provider, productId, purchasedFrom, purchasedTo);
+        return ResponseEntity.ok(queryService.search(filter, after, limit));
+    }
+
+    // Carga de histórico de vendas: o corpo é lido em streaming, sem ser carregado inteiro em memória
+    @PostMapping(value = "/import", consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ImportReport> importSubscribers(@RequestParam(defaultValue = "UNKNOWN") Provider provider,
+                                                          @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                          @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+                                                          InputStream body) throws IOException {
+        InputStream in = "gzip".equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(body, 64 * 1024) : body;
+        return ResponseEntity.ok(bulkImportService.importFrom(in, contentType, provider));
+    }
+
+    /**
+     * Exporta a base em NDJSON (padrão) ou CSV, escrevendo direto na resposta enquanto o cursor avança.
+     * Com {@code Accept-Encoding: gzip} a saída é comprimida em streaming.
+     */
+    @GetMapping("/export")
+    public void exportSubscribers(@RequestParam(defaultValue = "ndjson") String format,
+                                  @RequestParam(required = false) Provider provider,
+                                  @RequestParam(required = false) String productId,
+                                  @RequestParam(required = false) Instant createdFrom,
+                                  @RequestParam(required = false) Instant createdTo,
+                                  @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                  HttpServletResponse response) throws IOException {
+        SubscriberExportService.Format exportFormat = SubscriberExportService.Format.of(format);
+        boolean csv = exportFormat == SubscriberExportService.Format.CSV;
+        response.setContentType(csv ? TEXT_CSV_VALUE + ";charset=UTF-8" : MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"subscribers." + (csv ? "csv" : "ndjson") + "\"");
+
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+        if (gzip) response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(), 64 * 1024) : response.getOutputStream();
+        exportService.export(new ExportFilter(provider, productId, createdFrom, createdTo), exportFormat, out);
+        if (out instanceof GZIPOutputStream compressed) compressed.finish();
+        out.flush();
+    }
+}
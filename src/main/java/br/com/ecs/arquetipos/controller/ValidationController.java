@@ -2,18 +2,25 @@ package br.com.ecs.arquetipos.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import br.com.ecs.arquetipos.dto.EmailBatchRequest;
 import br.com.ecs.arquetipos.dto.EmailRequest;
+import br.com.ecs.arquetipos.dto.EmailValidationResult;
 import br.com.ecs.arquetipos.service.EmailValidationService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/")
 @RequiredArgsConstructor
 public class ValidationController {
 
+    static final String STALE_HEADER = "X-Validation-Stale";
+
     private final EmailValidationService emailValidationService;
 
     // Este controller não realiza mais consultas à Hotmart.
@@ -30,14 +37,28 @@ public class ValidationController {
         ));
     }
 
+    // Retorna Mono: a thread do Tomcat é liberada enquanto a validação aguarda banco/Hotmart
     @PostMapping("/validate-email")
-    public ResponseEntity<Map<String, Object>> validateEmail(@Valid @RequestBody EmailRequest request) {
-        boolean isStudent = emailValidationService.isUserActiveStudent(request.getEmail());
-        Map<String, Object> body = Map.of(
-                "email", request.getEmail(),
-                "is_student", isStudent,
-                "status", "success"
-        );
-        return ResponseEntity.ok(body);
+    public Mono<ResponseEntity<Map<String, Object>>> validateEmail(@Valid @RequestBody EmailRequest request) {
+        return emailValidationService.validate(request.getEmail())
+                .map(result -> {
+                    Map<String, Object> body = Map.of(
+                            "email", request.getEmail(),
+                            "is_student", Boolean.TRUE.equals(result.getStudent()),
+                            "status", "success"
+                    );
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (Boolean.TRUE.equals(result.getStale())) {
+                        // Hotmart indisponível: resposta baseada no último resultado conhecido
+                        response.header(STALE_HEADER, "true");
+                    }
+                    return response.body(body);
+                });
+    }
+
+    // Validação em lote: cada resultado é enviado como uma linha NDJSON assim que fica pronto
+    @PostMapping(value = "/validate-emails", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<EmailValidationResult> validateEmails(@Valid @RequestBody EmailBatchRequest request) {
+        return emailValidationService.checkActiveStudents(request.getEmails());
     }
 }
\ No newline at end of file
@@ -4,15 +4,21 @@ import br.com.ecs.arquetipos.dto.HotmartWebhookPayload;
 import br.com.ecs.arquetipos.dto.WebhookRequest;
 import br.com.ecs.arquetipos.model.Subscriber;
 import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.WebhookInboxMessage;
 import br.com.ecs.arquetipos.service.SubscriberService;
+import br.com.ecs.arquetipos.service.WebhookDeduplicator;
+import br.com.ecs.arquetipos.service.WebhookInboxService;
+import br.com.ecs.arquetipos.service.WebhookProviderRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.net.URI;
 import java.util.*;
-import java.math.BigDecimal;
-import java.time.Instant;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/webhook")
@@ -20,26 +26,59 @@ import java.time.Instant;
 public class WebhookController {
 
     private final SubscriberService subscriberService;
+    private final WebhookInboxService webhookInboxService;
+    private final WebhookDeduplicator webhookDeduplicator;
+    private final WebhookProviderRegistry webhookProviders;
+
+    // Modo assíncrono: valida, grava na webhook_inbox e responde 202; os workers fazem o resto
+    @Value("${webhook.async.enabled:false}")
+    private boolean asyncIntake;
 
     @PostMapping("/hotmart")
     public ResponseEntity<Map<String, Object>> receiveHotmartWebhook(@RequestBody HotmartWebhookPayload payload) {
-        WebhookRequest request = parsePayload(payload, Provider.HOTMART);
-        Subscriber saved = subscriberService.createOrUpdate(request, Provider.HOTMART);
+        return receiveHotmart(payload, () -> webhookProviders.toRequest(Provider.HOTMART, payload));
+    }
 
-        Map<String, Object> body = Map.of(
-                "status", "success",
-                "id", saved.getId(),
-                "email", saved.getEmail(),
-                "name", saved.getName(),
-                "provider", "HOTMART"
-        );
+    /*
+     * Reentregas (mesmo evento) são confirmadas sem reprocessar nem tocar em subscribers. O evento é
+     * reservado antes do processamento, então duas entregas simultâneas não passam ambas pelo
+     * SubscriberService; se o processamento falha, a reserva é desfeita para a próxima reentrega.
+     */
+    private ResponseEntity<Map<String, Object>> receiveHotmart(HotmartWebhookPayload payload,
+                                                               Supplier<WebhookRequest> toRequest) {
+        String eventKey = WebhookDeduplicator.hotmartEventKey(payload);
+        Optional<WebhookDeduplicator.ProcessedEvent> processed = webhookDeduplicator.claim(Provider.HOTMART, eventKey);
+        if (processed.isPresent()) return replayed(processed.get(), Provider.HOTMART);
 
-        return ResponseEntity.created(URI.create("/subscribers/" + saved.getId())).body(body);
+        try {
+            WebhookRequest request = toRequest.get();
+            if (asyncIntake) {
+                ResponseEntity<Map<String, Object>> response = accepted(request, Provider.HOTMART);
+                webhookDeduplicator.complete(Provider.HOTMART, eventKey, null, request.getEmail());
+                return response;
+            }
+            Subscriber saved = subscriberService.createOrUpdate(request, Provider.HOTMART);
+            webhookDeduplicator.complete(Provider.HOTMART, eventKey, saved.getId(), saved.getEmail());
+
+            Map<String, Object> body = Map.of(
+                    "status", "success",
+                    "id", saved.getId(),
+                    "email", saved.getEmail(),
+                    "name", saved.getName(),
+                    "provider", "HOTMART"
+            );
+
+            return ResponseEntity.created(URI.create("/subscribers/" + saved.getId())).body(body);
+        } catch (RuntimeException e) {
+            webhookDeduplicator.release(Provider.HOTMART, eventKey);
+            throw e;
+        }
     }
 
     @PostMapping("/eduzz")
-    public ResponseEntity<Map<String, Object>> receiveEduzzWebhook(@RequestBody Map<String, Object> payload) {
-        WebhookRequest request = parsePayload(payload, Provider.EDUZZ);
+    public ResponseEntity<Map<String, Object>> receiveEduzzWebhook(@RequestBody byte[] payload) {
+        WebhookRequest request = readSigned(Provider.EDUZZ, payload);
+        if (asyncIntake) return accepted(request, Provider.EDUZZ);
         Subscriber saved = subscriberService.createOrUpdate(request, Provider.EDUZZ);
 
         Map<String, Object> body = Map.of(
@@ -55,25 +94,30 @@ public class WebhookController {
 
     // Backward-compatible generic endpoint: tenta inferir o provider a partir do payload
     @PostMapping
-    public ResponseEntity<Map<String, Object>> receiveGenericWebhook(@RequestBody Map<String, Object> payload,
-                                                                     @RequestHeader Map<String, String> headers) {
+    public ResponseEntity<Map<String, Object>> receiveGenericWebhook(@RequestBody byte[] payload,
+                                                                     @RequestHeader HttpHeaders headers) {
         try {
-            Provider provider = inferProviderFromHeaders(headers);
-            if (provider == Provider.UNKNOWN) {
-                // tenta inferir pelo payload
-                provider = inferProviderFromPayload(payload);
-            }
-
-            WebhookRequest request = parsePayload(payload, provider);
-
-            Subscriber saved;
-            // Backward-compatibility: alguns consumidores ainda esperam o método antigo que recebe name/email
-            if (provider == Provider.UNKNOWN) {
-                // para testes/compatibilidade, usa HOTMART como provider ao chamar método antigo
-                saved = subscriberService.createOrUpdate(request.getName(), request.getEmail(), Provider.HOTMART);
+            // Header de assinatura conhecido: corpo desserializado direto no DTO do provider
+            Provider provider = webhookProviders.detect(headers);
+            if (provider == Provider.HOTMART) {
+                // Mesma deduplicação do /webhook/hotmart: a chave do evento sai do DTO tipado
+                HotmartWebhookPayload hotmart = (HotmartWebhookPayload) webhookProviders.readPayload(provider, payload);
+                return receiveHotmart(hotmart, () -> toRequest(Provider.HOTMART, hotmart, payload));
+            }
+            WebhookRequest request;
+            if (provider != Provider.UNKNOWN) {
+                request = readSigned(provider, payload);
             } else {
-                saved = subscriberService.createOrUpdate(request, provider);
+                // Sem assinatura: heurísticas do extractor (campos e provider numa única passada)
+                WebhookPayloadExtractor extracted = WebhookPayloadExtractor.parse(payload);
+                provider = extracted.inferredProvider();
+                request = extracted.toRequest(provider);
             }
+            // Provider não identificado é gravado como HOTMART, com o payload completo, nos dois modos
+            Provider target = provider == Provider.UNKNOWN ? Provider.HOTMART : provider;
+            if (asyncIntake) return accepted(request, target);
+
+            Subscriber saved = subscriberService.createOrUpdate(request, target);
 
             if (saved == null) {
                 Map<String, Object> error = Map.of(
@@ -102,289 +146,51 @@ public class WebhookController {
         }
     }
 
-    private Provider inferProviderFromHeaders(Map<String, String> headers) {
-        for (String key : headers.keySet()) {
-            String lk = key.toLowerCase(Locale.ROOT);
-            if (lk.contains("hotmart")) return Provider.HOTMART;
-            if (lk.contains("eduzz")) return Provider.EDUZZ;
-        }
-        return Provider.UNKNOWN;
-    }
-
-    private Provider inferProviderFromPayload(Map<String, Object> payload) {
-        if (payload.containsKey("hotmart") || payload.containsKey("product") && payload.toString().toLowerCase().contains("hotmart")) {
-            return Provider.HOTMART;
-        }
-        if (payload.containsKey("eduzz") || payload.toString().toLowerCase().contains("eduzz")) {
-            return Provider.EDUZZ;
-        }
-        return Provider.UNKNOWN;
-    }
-
-    // Overload específico para o DTO Hotmart para evitar casts inseguros
-    private WebhookRequest parsePayload(HotmartWebhookPayload payload, Provider provider) {
-        WebhookRequest req = new WebhookRequest();
-        if (payload == null) return req;
-
-        HotmartWebhookPayload.DataNode data = payload.getData();
-        if (data != null) {
-            HotmartWebhookPayload.Buyer buyer = data.getBuyer();
-            if (buyer != null) {
-                req.setEmail(buyer.getEmail());
-                req.setName(buyer.getName() != null ? buyer.getName() : buyer.getFirst_name());
-                req.setFirstName(buyer.getFirst_name());
-                req.setLastName(buyer.getLast_name());
-                String phone = buyer.getCheckout_phone();
-                String code = buyer.getCheckout_phone_code();
-                if (phone != null) {
-                    if (code != null) req.setPhone("+" + code + " " + phone);
-                    else req.setPhone(phone);
-                }
-                req.setDocument(buyer.getDocument());
-                HotmartWebhookPayload.Address addr = buyer.getAddress();
-                if (addr != null) {
-                    req.setZipcode(addr.getZipcode());
-                    req.setCity(addr.getCity());
-                    req.setState(addr.getState());
-                    req.setCountry(addr.getCountry_iso() != null ? addr.getCountry_iso() : addr.getCountry());
-                }
-            }
-
-            HotmartWebhookPayload.Product product = data.getProduct();
-            if (product != null) {
-                if (product.getId() != null) req.setProductId(String.valueOf(product.getId()));
-                req.setProductName(product.getName());
-            }
-
-            HotmartWebhookPayload.Purchase purchase = data.getPurchase();
-            if (purchase != null) {
-                req.setTransactionId(purchase.getTransaction());
-                HotmartWebhookPayload.Price price = purchase.getPrice();
-                if (price != null) {
-                    req.setCurrency(price.getCurrency_value());
-                    if (price.getValue() != null) req.setPrice(price.getValue());
-                }
-                if (purchase.getApproved_date() != null) {
-                    try { req.setPurchaseDate(Instant.ofEpochMilli(purchase.getApproved_date())); } catch (Exception ignored) {}
-                }
-            }
-        }
-
-        // Fallbacks mínimos
-        if (req.getEmail() == null || req.getEmail().isBlank()) {
-            throw new IllegalArgumentException("Email not found in webhook payload");
-        }
-        if (req.getName() == null || req.getName().isBlank()) {
-            String local = req.getEmail().split("@")[0];
-            req.setName(local);
-        }
-
-        return req;
-    }
-
-    // Método genérico original (mantido para outros providers)
-    @SuppressWarnings("unchecked")
-    private WebhookRequest parsePayload(Map<String, Object> payload, Provider provider) {
-        String email = findEmailRecursively(payload);
-        String name = findNameRecursively(payload);
-
-        // Regras para endpoint genérico (mais restritivas que o parser do Hotmart DTO)
-        if (provider != Provider.HOTMART) {
-            // exige que o payload contenha explicitamente o campo 'name'
-            if (!payload.containsKey("name") && (name == null || name.isBlank())) {
-                throw new IllegalArgumentException("Name is required");
-            }
-            // exige formato de email válido
-            if (email == null || email.isBlank()) {
-                throw new IllegalArgumentException("Email not found in webhook payload");
-            }
-            if (!isValidEmail(email)) {
-                throw new IllegalArgumentException("Invalid email format");
-            }
-        }
-
-        if (email == null || email.isBlank()) {
-            throw new IllegalArgumentException("Email not found in webhook payload");
-        }
-        if (name == null || name.isBlank()) {
-            String local = email.split("@")[0];
-            name = local;
-        }
-
-        WebhookRequest req = new WebhookRequest();
-        req.setEmail(email);
-        req.setName(name);
-
-        // Campos adicionais - tentativa de extração heurística
-        if (provider == Provider.HOTMART) {
-            Object dataObj = payload.get("data");
-            if (dataObj instanceof Map) {
-                Map<String, Object> data = (Map<String, Object>) dataObj;
-                Object buyerObj = data.get("buyer");
-                if (buyerObj instanceof Map) {
-                    Map<String, Object> buyer = (Map<String, Object>) buyerObj;
-                    req.setFirstName((String) buyer.getOrDefault("first_name", buyer.get("firstName")));
-                    req.setLastName((String) buyer.getOrDefault("last_name", buyer.get("lastName")));
-                    String phone = (String) buyer.get("checkout_phone");
-                    String code = (String) buyer.get("checkout_phone_code");
-                    if (phone != null) {
-                        if (code != null) req.setPhone("+" + code + " " + phone);
-                        else req.setPhone(phone);
-                    }
-                    req.setDocument((String) buyer.get("document"));
-                    Object addressObj = buyer.get("address");
-                    if (addressObj instanceof Map) {
-                        Map<String, Object> address = (Map<String, Object>) addressObj;
-                        req.setZipcode((String) address.get("zipcode"));
-                        req.setCity((String) address.get("city"));
-                        req.setState((String) address.get("state"));
-                        req.setCountry((String) address.getOrDefault("country_iso", address.get("country")));
-                    }
-                }
-
-                Object productObj = data.get("product");
-                if (productObj instanceof Map) {
-                    Map<String, Object> product = (Map<String, Object>) productObj;
-                    Object pid = product.get("id");
-                    if (pid != null) req.setProductId(String.valueOf(pid));
-                    req.setProductName((String) product.get("name"));
-                }
-
-                Object purchaseObj = data.get("purchase");
-                if (purchaseObj instanceof Map) {
-                    Map<String, Object> purchase = (Map<String, Object>) purchaseObj;
-                    req.setTransactionId((String) purchase.get("transaction"));
-                    Object priceObj = purchase.get("price");
-                    if (priceObj instanceof Map) {
-                        Map<String, Object> priceMap = (Map<String, Object>) priceObj;
-                        Object val = priceMap.get("value");
-                        if (val instanceof Number) {
-                            req.setPrice(BigDecimal.valueOf(((Number) val).doubleValue()));
-                        } else if (val instanceof String) {
-                            try { req.setPrice(new BigDecimal((String) val)); } catch (Exception ignored) {}
-                        }
-                        req.setCurrency((String) priceMap.get("currency_value"));
-                    }
-                    Object approved = purchase.get("approved_date");
-                    if (approved instanceof Number) {
-                        long ts = ((Number) approved).longValue();
-                        try { req.setPurchaseDate(Instant.ofEpochMilli(ts)); } catch (Exception ignored) {}
-                    }
-                }
-            }
-        } else {
-            req.setFirstName(findStringByKeyRecursively(payload, Arrays.asList("first_name","firstName","first")));
-            req.setLastName(findStringByKeyRecursively(payload, Arrays.asList("last_name","lastName","last")));
-            req.setPhone(findStringByKeyRecursively(payload, Arrays.asList("phone","checkout_phone","phone_number")));
-            req.setDocument(findStringByKeyRecursively(payload, Arrays.asList("document","cpf","cnpj")));
-            req.setZipcode(findStringByKeyRecursively(payload, Arrays.asList("zipcode","zip","postal_code")));
-            req.setCity(findStringByKeyRecursively(payload, Arrays.asList("city")));
-            req.setState(findStringByKeyRecursively(payload, Arrays.asList("state")));
-            req.setCountry(findStringByKeyRecursively(payload, Arrays.asList("country","country_iso")));
-        }
-
-        return req;
-    }
-
-    // Pequena validação de email (não substitui validação robusta)
-    private boolean isValidEmail(String email) {
-        return email != null && email.matches("^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
+    /*
+     * Payload de provider conhecido: DTO tipado primeiro. Se o layout não for o esperado e faltar
+     * email ou nome, as heurísticas do extractor (que aceitam customer.*, chaves aninhadas etc.)
+     * ainda resolvem o comprador, como antes da ligação tipada.
+     */
+    private WebhookRequest readSigned(Provider provider, byte[] payload) {
+        // JSON malformado falha aqui mesmo, sem fallback
+        return toRequest(provider, webhookProviders.readPayload(provider, payload), payload);
     }
 
-    @SuppressWarnings("unchecked")
-    private String findEmailRecursively(Object node) {
-        if (node == null) return null;
-        if (node instanceof String) {
-            String s = (String) node;
-            if (s.contains("@")) return s;
-            return null;
-        }
-        if (node instanceof Map) {
-            Map<String, Object> map = (Map<String, Object>) node;
-            for (Map.Entry<String, Object> e : map.entrySet()) {
-                String key = e.getKey().toLowerCase(Locale.ROOT);
-                if (key.contains("email") || key.contains("e-mail") || key.contains("buyer") || key.contains("customer")) {
-                    Object val = e.getValue();
-                    String found = findEmailRecursively(val);
-                    if (found != null) return found;
-                }
-            }
-            for (Object v : map.values()) {
-                String found = findEmailRecursively(v);
-                if (found != null) return found;
-            }
-        }
-        if (node instanceof Collection) {
-            for (Object item : (Collection<?>) node) {
-                String found = findEmailRecursively(item);
-                if (found != null) return found;
-            }
+    private WebhookRequest toRequest(Provider provider, Object typed, byte[] payload) {
+        try {
+            return webhookProviders.toRequest(provider, typed);
+        } catch (IllegalArgumentException typedError) {
+            return WebhookPayloadExtractor.parse(payload).toRequest(provider);
         }
-        return null;
     }
 
-    @SuppressWarnings("unchecked")
-    private String findNameRecursively(Object node) {
-        if (node == null) return null;
-        if (node instanceof String) {
-            String s = (String) node;
-            // Não considerar strings que parecem emails como nome
-            if (s.contains("@")) return null;
-            return s;
-        }
-        if (node instanceof Map) {
-            Map<String, Object> map = (Map<String, Object>) node;
-            for (Map.Entry<String, Object> e : map.entrySet()) {
-                String key = e.getKey().toLowerCase(Locale.ROOT);
-                if (key.contains("name") || key.contains("nome") || key.contains("buyer") || key.contains("customer")) {
-                    Object val = e.getValue();
-                    if (val instanceof String) return (String) val;
-                    String found = findNameRecursively(val);
-                    if (found != null) return found;
-                }
-            }
-            for (Object v : map.values()) {
-                String found = findNameRecursively(v);
-                if (found != null) return found;
-            }
-        }
-        if (node instanceof Collection) {
-            for (Object item : (Collection<?>) node) {
-                String found = findNameRecursively(item);
-                if (found != null) return found;
-            }
-        }
-        return null;
+    private ResponseEntity<Map<String, Object>> accepted(WebhookRequest request, Provider provider) {
+        WebhookInboxMessage queued = webhookInboxService.enqueue(request, provider);
+        Map<String, Object> body = Map.of(
+                "status", "accepted",
+                "id", queued.getId(),
+                "email", request.getEmail(),
+                "provider", provider.name()
+        );
+        return ResponseEntity.accepted().body(body);
     }
 
-    @SuppressWarnings("unchecked")
-    private String findStringByKeyRecursively(Object node, List<String> keysLower) {
-        if (node == null) return null;
-        if (node instanceof String) return (String) node;
-        if (node instanceof Map) {
-            Map<String, Object> map = (Map<String, Object>) node;
-            for (Map.Entry<String, Object> e : map.entrySet()) {
-                String key = e.getKey().toLowerCase(Locale.ROOT);
-                for (String k : keysLower) {
-                    if (key.equals(k)) {
-                        Object val = e.getValue();
-                        if (val instanceof String) return (String) val;
-                        String found = findStringByKeyRecursively(val, keysLower);
-                        if (found != null) return found;
-                    }
-                }
-            }
-            for (Object v : map.values()) {
-                String found = findStringByKeyRecursively(v, keysLower);
-                if (found != null) return found;
-            }
-        }
-        if (node instanceof Collection) {
-            for (Object item : (Collection<?>) node) {
-                String found = findStringByKeyRecursively(item, keysLower);
-                if (found != null) return found;
-            }
-        }
-        return null;
+    private ResponseEntity<Map<String, Object>> replayed(WebhookDeduplicator.ProcessedEvent event, Provider provider) {
+        if (event.inProgress()) {
+            // Outra entrega do mesmo evento ainda está processando: 409 faz o provider reentregar depois
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "status", "processing",
+                    "replay", true,
+                    "provider", provider.name()
+            ));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "success");
+        body.put("replay", true);
+        // Eventos aceitos no modo assíncrono ainda não têm id de subscriber
+        if (event.subscriberId() != null) body.put("id", event.subscriberId());
+        if (event.email() != null) body.put("email", event.email());
+        body.put("provider", provider.name());
+        return ResponseEntity.ok(body);
     }
 }
@@ -0,0 +1,411 @@
+package br.com.ecs.arquetipos.controller;
+
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.service.EduzzWebhookAdapter;
+import br.com.ecs.arquetipos.service.HotmartWebhookAdapter;
+import br.com.ecs.arquetipos.service.WebhookProviderAdapter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Extrai os campos do payload do endpoint genérico (quando não há header de assinatura) numa
+ * única passada pelos tokens JSON, sem montar um Map. As heurísticas de busca (chaves
+ * preferenciais primeiro, depois ordem do documento, nível a nível) são resolvidas comparando o
+ * caminho de cada candidato com o melhor já visto, em vez de percorrer a árvore uma vez por campo.
+ * O provider é detectado no mesmo passo.
+ */
+final class WebhookPayloadExtractor {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // Categorias de busca; cada nível do caminho guarda a máscara das categorias cuja chave casou
+    private static final int EMAIL = 0;
+    private static final int NAME = 1;
+    private static final int FIRST_NAME = 2;
+    private static final int LAST_NAME = 3;
+    private static final int PHONE = 4;
+    private static final int DOCUMENT = 5;
+    private static final int ZIPCODE = 6;
+    private static final int CITY = 7;
+    private static final int STATE = 8;
+    private static final int COUNTRY = 9;
+    private static final int CATEGORIES = 10;
+
+    private static final String[] EMAIL_HINTS = {"email", "e-mail", "buyer", "customer"};
+    private static final String[] NAME_HINTS = {"name", "nome", "buyer", "customer"};
+    // Índice = categoria; comparação exata (sem diferenciar maiúsculas)
+    private static final String[][] FIELD_KEYS = {
+            null,
+            null,
+            {"first_name", "firstName", "first"},
+            {"last_name", "lastName", "last"},
+            {"phone", "checkout_phone", "phone_number"},
+            {"document", "cpf", "cnpj"},
+            {"zipcode", "zip", "postal_code"},
+            {"city"},
+            {"state"},
+            {"country", "country_iso"}
+    };
+
+    // Pilha de contêineres abertos (0 = objeto raiz)
+    private int depth;
+    private boolean[] array = new boolean[8];
+    private int[] index = new int[8];
+    private int[] mask = new int[8];
+    private int[] inherited = new int[8];
+    private String[] key = new String[8];
+
+    private final String[] values = new String[CATEGORIES];
+    private final long[][] ranks = new long[CATEGORIES][];
+
+    private boolean nameKey;
+    private boolean hotmartKey;
+    private boolean productKey;
+    private boolean eduzzKey;
+    private boolean mentionsHotmart;
+    private boolean mentionsEduzz;
+
+    // Layout conhecido do Hotmart (data.buyer / data.product / data.purchase)
+    private String buyerFirstName;
+    private String buyerFirstNameCamel;
+    private String buyerLastName;
+    private String buyerLastNameCamel;
+    private String buyerPhone;
+    private String buyerPhoneCode;
+    private String buyerDocument;
+    private String addressZipcode;
+    private String addressCity;
+    private String addressState;
+    private String addressCountry;
+    private String addressCountryIso;
+    private String productId;
+    private String productName;
+    private String transactionId;
+    private BigDecimal price;
+    private String currency;
+    private Instant purchaseDate;
+    private String event;
+
+    private WebhookPayloadExtractor() {
+    }
+
+    static WebhookPayloadExtractor parse(byte[] body) {
+        WebhookPayloadExtractor extractor = new WebhookPayloadExtractor();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Webhook payload must be a JSON object");
+            }
+            extractor.push(false);
+            JsonToken token;
+            while (extractor.depth > 0 && (token = parser.nextToken()) != null) {
+                switch (token) {
+                    case FIELD_NAME -> extractor.field(parser.currentName());
+                    case START_OBJECT -> {
+                        extractor.arrayItem();
+                        extractor.push(false);
+                    }
+                    case START_ARRAY -> {
+                        extractor.arrayItem();
+                        extractor.push(true);
+                    }
+                    case END_OBJECT, END_ARRAY -> extractor.depth--;
+                    case VALUE_STRING -> {
+                        extractor.arrayItem();
+                        extractor.string(parser);
+                    }
+                    case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> {
+                        extractor.arrayItem();
+                        extractor.number(parser);
+                    }
+                    default -> extractor.arrayItem();
+                }
+            }
+            if (extractor.depth > 0) {
+                throw new IllegalArgumentException("Malformed JSON payload");
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON payload", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return extractor;
+    }
+
+    Provider inferredProvider() {
+        if (hotmartKey || productKey && mentionsHotmart) return Provider.HOTMART;
+        if (eduzzKey || mentionsEduzz) return Provider.EDUZZ;
+        return Provider.UNKNOWN;
+    }
+
+    WebhookRequest toRequest(Provider provider) {
+        String email = values[EMAIL];
+        String name = values[NAME];
+
+        // Regras para endpoint genérico (mais restritivas que o parser do Hotmart DTO)
+        if (provider != Provider.HOTMART) {
+            // exige que o payload contenha explicitamente o campo 'name'
+            if (!nameKey && (name == null || name.isBlank())) {
+                throw new IllegalArgumentException("Name is required");
+            }
+            if (email == null || email.isBlank()) {
+                throw new IllegalArgumentException("Email not found in webhook payload");
+            }
+            if (!WebhookProviderAdapter.isValidEmail(email)) {
+                throw new IllegalArgumentException("Invalid email format");
+            }
+        }
+
+        if (email == null || email.isBlank()) {
+            throw new IllegalArgumentException("Email not found in webhook payload");
+        }
+        if (name == null || name.isBlank()) {
+            name = email.split("@")[0];
+        }
+
+        WebhookRequest req = new WebhookRequest();
+        req.setEmail(email);
+        req.setName(name);
+
+        if (provider == Provider.HOTMART) {
+            req.setFirstName(buyerFirstName != null ? buyerFirstName : buyerFirstNameCamel);
+            req.setLastName(buyerLastName != null ? buyerLastName : buyerLastNameCamel);
+            if (buyerPhone != null) {
+                req.setPhone(buyerPhoneCode != null ? "+" + buyerPhoneCode + " " + buyerPhone : buyerPhone);
+            }
+            req.setDocument(buyerDocument);
+            req.setZipcode(addressZipcode);
+            req.setCity(addressCity);
+            req.setState(addressState);
+            req.setCountry(addressCountryIso != null ? addressCountryIso : addressCountry);
+            req.setProductId(productId);
+            req.setProductName(productName);
+            req.setTransactionId(transactionId);
+            req.setPrice(price);
+            req.setCurrency(currency);
+            req.setPurchaseDate(purchaseDate);
+            req.setPurchaseStatus(HotmartWebhookAdapter.purchaseStatus(event));
+        } else {
+            req.setFirstName(values[FIRST_NAME]);
+            req.setLastName(values[LAST_NAME]);
+            req.setPhone(values[PHONE]);
+            req.setDocument(values[DOCUMENT]);
+            req.setZipcode(values[ZIPCODE]);
+            req.setCity(values[CITY]);
+            req.setState(values[STATE]);
+            req.setCountry(values[COUNTRY]);
+            if (provider == Provider.EDUZZ) req.setPurchaseStatus(EduzzWebhookAdapter.purchaseStatus(null, event));
+        }
+        return req;
+    }
+
+    private void push(boolean isArray) {
+        if (depth == array.length) {
+            int size = depth * 2;
+            array = Arrays.copyOf(array, size);
+            index = Arrays.copyOf(index, size);
+            mask = Arrays.copyOf(mask, size);
+            inherited = Arrays.copyOf(inherited, size);
+            key = Arrays.copyOf(key, size);
+        }
+        int parent = depth > 0 ? inherited[depth - 1] : 0;
+        array[depth] = isArray;
+        index[depth] = -1;
+        mask[depth] = 0;
+        inherited[depth] = parent;
+        key[depth] = null;
+        depth++;
+    }
+
+    private void field(String name) {
+        int top = depth - 1;
+        int m = 0;
+        if (containsAny(name, EMAIL_HINTS)) m |= 1 << EMAIL;
+        if (containsAny(name, NAME_HINTS)) m |= 1 << NAME;
+        for (int c = FIRST_NAME; c < CATEGORIES; c++) {
+            for (String k : FIELD_KEYS[c]) {
+                if (name.equalsIgnoreCase(k)) {
+                    m |= 1 << c;
+                    break;
+                }
+            }
+        }
+        index[top]++;
+        mask[top] = m;
+        inherited[top] = (top > 0 ? inherited[top - 1] : 0) | m;
+        key[top] = name;
+
+        if (top == 0) {
+            switch (name) {
+                case "name" -> nameKey = true;
+                case "hotmart" -> hotmartKey = true;
+                case "product" -> productKey = true;
+                case "eduzz" -> eduzzKey = true;
+                default -> { }
+            }
+        }
+        sniff(name);
+    }
+
+    // Itens de array não têm chave: só avançam a posição
+    private void arrayItem() {
+        int top = depth - 1;
+        if (array[top]) index[top]++;
+    }
+
+    private void string(JsonParser parser) throws IOException {
+        char[] text = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        if (!mentionsHotmart || !mentionsEduzz) sniff(text, offset, length);
+
+        // Tipo do evento na raiz não é dado do comprador: não concorre a nome, cidade etc.
+        if (depth == 1 && "event".equals(key[0])) {
+            event = parser.getText();
+            return;
+        }
+
+        int top = depth - 1;
+        boolean hasAt = false;
+        for (int i = offset; i < offset + length; i++) {
+            if (text[i] == '@') {
+                hasAt = true;
+                break;
+            }
+        }
+        if (hasAt) offer(EMAIL, parser);
+        // Strings com '@' só contam como nome quando a própria chave sugere nome
+        if (!hasAt || (mask[top] & 1 << NAME) != 0) offer(NAME, parser);
+        for (int c = FIRST_NAME; c < CATEGORIES; c++) {
+            if ((inherited[top] & 1 << c) != 0) offer(c, parser);
+        }
+
+        if (inSection("buyer")) {
+            switch (key[2]) {
+                case "first_name" -> buyerFirstName = parser.getText();
+                case "firstName" -> buyerFirstNameCamel = parser.getText();
+                case "last_name" -> buyerLastName = parser.getText();
+                case "lastName" -> buyerLastNameCamel = parser.getText();
+                case "checkout_phone" -> buyerPhone = parser.getText();
+                case "checkout_phone_code" -> buyerPhoneCode = parser.getText();
+                case "document" -> buyerDocument = parser.getText();
+                default -> { }
+            }
+        } else if (inSubsection("buyer", "address")) {
+            switch (key[3]) {
+                case "zipcode" -> addressZipcode = parser.getText();
+                case "city" -> addressCity = parser.getText();
+                case "state" -> addressState = parser.getText();
+                case "country" -> addressCountry = parser.getText();
+                case "country_iso" -> addressCountryIso = parser.getText();
+                default -> { }
+            }
+        } else if (inSection("product")) {
+            if ("id".equals(key[2])) productId = parser.getText();
+            else if ("name".equals(key[2])) productName = parser.getText();
+        } else if (inSection("purchase")) {
+            if ("transaction".equals(key[2])) transactionId = parser.getText();
+        } else if (inSubsection("purchase", "price")) {
+            if ("value".equals(key[3])) {
+                try { price = new BigDecimal(parser.getText()); } catch (NumberFormatException ignored) {}
+            } else if ("currency_value".equals(key[3])) {
+                currency = parser.getText();
+            }
+        }
+    }
+
+    private void number(JsonParser parser) throws IOException {
+        if (inSection("product")) {
+            if ("id".equals(key[2])) productId = String.valueOf(parser.getNumberValue());
+        } else if (inSection("purchase")) {
+            if ("approved_date".equals(key[2])) {
+                try { purchaseDate = Instant.ofEpochMilli(parser.getNumberValue().longValue()); } catch (DateTimeException ignored) {}
+            }
+        } else if (inSubsection("purchase", "price")) {
+            if ("value".equals(key[3])) price = BigDecimal.valueOf(parser.getDoubleValue());
+        }
+    }
+
+    /**
+     * Aceita o valor atual como candidato da categoria se o caminho dele vier antes do melhor
+     * atual: em cada nível, entradas cuja chave casou vêm antes das demais, e depois vale a ordem
+     * do documento.
+     */
+    private void offer(int category, JsonParser parser) throws IOException {
+        long[] best = ranks[category];
+        if (best != null) {
+            int common = Math.min(best.length, depth);
+            int cmp = 0;
+            for (int level = 0; level < common && cmp == 0; level++) {
+                cmp = Long.compare(rank(category, level), best[level]);
+            }
+            if (cmp >= 0) return;
+        }
+        long[] path = new long[depth];
+        for (int level = 0; level < depth; level++) path[level] = rank(category, level);
+        ranks[category] = path;
+        values[category] = parser.getText();
+    }
+
+    private long rank(int category, int level) {
+        long preferred = (mask[level] & 1 << category) != 0 ? 0L : 1L;
+        return preferred << 32 | index[level];
+    }
+
+    private boolean inSection(String section) {
+        return depth == 3 && inData() && !array[1] && !array[2] && section.equals(key[1]);
+    }
+
+    private boolean inSubsection(String section, String subsection) {
+        return depth == 4 && inData() && !array[1] && !array[2] && !array[3]
+                && section.equals(key[1]) && subsection.equals(key[2]);
+    }
+
+    private boolean inData() {
+        return "data".equals(key[0]);
+    }
+
+    private void sniff(String text) {
+        if (!mentionsHotmart && containsIgnoreCase(text, "hotmart")) mentionsHotmart = true;
+        if (!mentionsEduzz && containsIgnoreCase(text, "eduzz")) mentionsEduzz = true;
+    }
+
+    private void sniff(char[] text, int offset, int length) {
+        if (!mentionsHotmart && containsIgnoreCase(text, offset, length, "hotmart")) mentionsHotmart = true;
+        if (!mentionsEduzz && containsIgnoreCase(text, offset, length, "eduzz")) mentionsEduzz = true;
+    }
+
+    private static boolean containsAny(String name, String[] hints) {
+        for (String hint : hints) {
+            if (containsIgnoreCase(name, hint)) return true;
+        }
+        return false;
+    }
+
+    private static boolean containsIgnoreCase(String text, String needle) {
+        for (int i = 0; i <= text.length() - needle.length(); i++) {
+            if (text.regionMatches(true, i, needle, 0, needle.length())) return true;
+        }
+        return false;
+    }
+
+    // needle sempre em minúsculas
+    private static boolean containsIgnoreCase(char[] text, int offset, int length, String needle) {
+        int n = needle.length();
+        for (int i = offset; i <= offset + length - n; i++) {
+            int j = 0;
+            while (j < n && Character.toLowerCase(text[i + j]) == needle.charAt(j)) j++;
+            if (j == n) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,7 @@
+package br.com.ecs.arquetipos.dto;
+
+// Resultado compacto da consulta de usuários do Club: se há associação ativa e quantas entradas foram lidas
+public record ClubMembership(boolean active, int entriesScanned) {
+
+    public static final ClubMembership NONE = new ClubMembership(false, 0);
+}
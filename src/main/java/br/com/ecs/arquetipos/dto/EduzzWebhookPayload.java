@@ -0,0 +1,84 @@
+package br.com.ecs.arquetipos.dto;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Payload do webhook da Eduzz (formato MyEduzz: {@code event} + {@code data} com fatura e
+ * comprador). Os campos {@code name}/{@code email}/{@code first_name}/{@code last_name} e o objeto
+ * {@code customer} na raiz cobrem os formatos antigos.
+ */
+@Data
+@NoArgsConstructor
+public class EduzzWebhookPayload {
+    private String id;
+    private String event;
+    private String name;
+    private String email;
+    @JsonAlias("first_name")
+    private String firstName;
+    @JsonAlias("last_name")
+    private String lastName;
+    private Buyer customer;
+    private Invoice data;
+
+    @Data
+    @NoArgsConstructor
+    public static class Invoice {
+        private String id;
+        private String status;
+        private Buyer buyer;
+        private List<Item> items;
+        private Price price;
+        private Instant paidAt;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Buyer {
+        private String id;
+        private String name;
+        private String email;
+        @JsonAlias("first_name")
+        private String firstName;
+        @JsonAlias("last_name")
+        private String lastName;
+        private String document;
+        private String phone;
+        private String cellphone;
+        private Address address;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Address {
+        private String street;
+        private String number;
+        private String neighborhood;
+        private String complement;
+        private String city;
+        private String state;
+        private String zipCode;
+        private String country;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Item {
+        private String productId;
+        private String name;
+        private Price price;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Price {
+        private BigDecimal value;
+        private String currency;
+    }
+}
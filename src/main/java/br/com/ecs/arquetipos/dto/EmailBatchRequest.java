@@ -0,0 +1,17 @@
+package br.com.ecs.arquetipos.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class EmailBatchRequest {
+
+    @NotEmpty(message = "Emails are required")
+    @Size(max = 5000, message = "At most 5000 emails per request")
+    private List<@NotBlank(message = "Email is required") @Email(message = "Invalid email format") String> emails;
+}
@@ -0,0 +1,36 @@
+package br.com.ecs.arquetipos.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Resultado individual da validação em lote (uma linha do NDJSON)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailValidationResult {
+
+    private String email;
+
+    @JsonProperty("is_student")
+    private Boolean student;
+
+    private String status;
+    private String code; // preenchido apenas quando status = error
+    private Boolean stale; // true quando o resultado é o último conhecido (Hotmart indisponível)
+
+    public static EmailValidationResult success(String email, boolean student) {
+        return new EmailValidationResult(email, student, "success", null, null);
+    }
+
+    public static EmailValidationResult stale(String email, boolean student) {
+        return new EmailValidationResult(email, student, "success", null, true);
+    }
+
+    public static EmailValidationResult error(String email, String code) {
+        return new EmailValidationResult(email, null, "error", code, null);
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.ecs.arquetipos.dto;
+
+import java.util.List;
+
+/**
+ * Resultado de uma importação em massa: linhas lidas, aceitas e rejeitadas, subscribers gravados
+ * e vazão. {@code rejects} traz só as primeiras rejeições (o total está em {@code rejected}).
+ */
+public record ImportReport(long rows,
+                           long imported,
+                           long rejected,
+                           long subscribersWritten,
+                           long elapsedMillis,
+                           double rowsPerSecond,
+                           List<Reject> rejects) {
+
+    // Linha do arquivo (1 = primeira linha) e motivo da rejeição
+    public record Reject(long line, String reason) {
+    }
+}
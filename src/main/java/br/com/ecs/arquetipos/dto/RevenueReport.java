@@ -0,0 +1,22 @@
+package br.com.ecs.arquetipos.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Receita no período [from, to] (dias UTC), lida da tabela consolidada revenue_daily: uma linha
+ * por produto, moeda e dia, mais o total de cada produto/moeda no período.
+ */
+public record RevenueReport(LocalDate from,
+                            LocalDate to,
+                            List<DailyRevenue> days,
+                            List<ProductRevenue> totals) {
+
+    // productId/currency nulos quando a compra não os informava
+    public record DailyRevenue(LocalDate day, String productId, String currency, long purchases, BigDecimal revenue) {
+    }
+
+    public record ProductRevenue(String productId, String currency, long purchases, BigDecimal revenue) {
+    }
+}
@@ -0,0 +1,10 @@
+package br.com.ecs.arquetipos.dto;
+
+import java.util.List;
+
+/**
+ * Página de GET /subscribers. {@code nextCursor} é opaco e vai no parâmetro {@code after} da
+ * próxima chamada; nulo quando não há mais resultados.
+ */
+public record SubscriberPage(List<SubscriberSummary> items, String nextCursor) {
+}
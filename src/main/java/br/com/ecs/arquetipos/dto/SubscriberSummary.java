@@ -0,0 +1,21 @@
+package br.com.ecs.arquetipos.dto;
+
+import br.com.ecs.arquetipos.model.Provider;
+
+import java.time.Instant;
+
+/**
+ * Projeção de subscriber para as consultas de suporte: só as colunas exibidas, lidas direto do
+ * banco, sem carregar a entidade.
+ */
+public record SubscriberSummary(Long id,
+                                String name,
+                                String email,
+                                Provider provider,
+                                Instant createdAt,
+                                String firstName,
+                                String lastName,
+                                String city,
+                                String state,
+                                String country) {
+}
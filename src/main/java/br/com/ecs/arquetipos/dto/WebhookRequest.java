@@ -1,5 +1,6 @@
 package br.com.ecs.arquetipos.dto;
 
+import br.com.ecs.arquetipos.model.PurchaseStatus;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
@@ -34,4 +35,6 @@ public class WebhookRequest {
     private BigDecimal price;
     private String currency;
     private Instant purchaseDate;
+    // Derivado do evento pelo adapter do provider; ausente vale como compra aprovada
+    private PurchaseStatus purchaseStatus;
 }
@@ -0,0 +1,14 @@
+package br.com.ecs.arquetipos.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Rejeição do rate limiter local: a cota da Hotmart está esgotada e nenhuma requisição foi enviada.
+ * Responde como o 429 da própria Hotmart, com o retryAfter calculado localmente.
+ */
+public class HotmartRateLimitedException extends HotmartAPIException {
+
+    public HotmartRateLimitedException(String message, Integer retryAfter) {
+        super(message, HttpStatus.TOO_MANY_REQUESTS, null, retryAfter);
+    }
+}
@@ -0,0 +1,14 @@
+package br.com.ecs.arquetipos.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Rejeição local de uma chamada à Hotmart (circuit breaker aberto ou bulkhead cheio).
+ * Nenhuma requisição foi enviada; o chamador pode recorrer ao último resultado conhecido.
+ */
+public class HotmartUnavailableException extends HotmartAPIException {
+
+    public HotmartUnavailableException(String message, Integer retryAfter) {
+        super(message, HttpStatus.SERVICE_UNAVAILABLE, null, retryAfter);
+    }
+}
@@ -0,0 +1,37 @@
+package br.com.ecs.arquetipos.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// Espelho local dos membros do Club da Hotmart, mantido pelo ClubMemberSyncService
+@Entity
+@Table(name = "club_members", uniqueConstraints = @UniqueConstraint(columnNames = {"subdomain", "email"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClubMember {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String subdomain;
+
+    // Sempre normalizado (trim + minúsculas)
+    @Column(nullable = false)
+    private String email;
+
+    @Column(nullable = false)
+    private String status;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    // Início da última execução do sync que encontrou o membro na listagem
+    @Column(name = "last_seen_at")
+    private Instant lastSeenAt;
+}
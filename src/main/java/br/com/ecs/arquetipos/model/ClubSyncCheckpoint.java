@@ -0,0 +1,35 @@
+package br.com.ecs.arquetipos.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// Progresso do sync de membros do Club por subdomínio, permitindo retomar uma execução interrompida
+@Entity
+@Table(name = "club_sync_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClubSyncCheckpoint {
+
+    @Id
+    private String subdomain;
+
+    // Próxima página a buscar; null quando não há execução em andamento
+    @Column(name = "next_page_token")
+    private String nextPageToken;
+
+    @Column(name = "run_started_at")
+    private Instant runStartedAt;
+
+    @Column(name = "last_completed_at")
+    private Instant lastCompletedAt;
+
+    @Column(name = "pages_synced")
+    private int pagesSynced;
+
+    @Column(name = "members_synced")
+    private long membersSynced;
+}
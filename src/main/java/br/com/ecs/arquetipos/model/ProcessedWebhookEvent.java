@@ -0,0 +1,42 @@
+package br.com.ecs.arquetipos.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+// Evento de webhook já aplicado; a chave (provider, event_key) identifica reentregas
+@Entity
+@Table(name = "processed_webhook_events")
+@IdClass(ProcessedWebhookEvent.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProcessedWebhookEvent {
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Provider provider;
+        private String eventKey;
+    }
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    private Provider provider;
+
+    @Id
+    @Column(name = "event_key")
+    private String eventKey;
+
+    @Column(name = "subscriber_id")
+    private Long subscriberId;
+
+    private String email;
+
+    @Column(name = "processed_at", nullable = false)
+    private Instant processedAt;
+}
@@ -0,0 +1,53 @@
+package br.com.ecs.arquetipos.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Uma compra recebida por webhook. A tabela é só de inserção (particionada por mês no PostgreSQL);
+ * o subscriber guarda apenas os dados de identificação do comprador.
+ */
+@Entity
+@Table(name = "purchases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Purchase {
+
+    // Gravadas via JDBC (PurchaseRepositoryImpl); a entidade serve às consultas
+    @Id
+    private Long id;
+
+    @Column(name = "subscriber_id", nullable = false)
+    private Long subscriberId;
+
+    @Column(nullable = false)
+    private String email;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Provider provider;
+
+    private String productId;
+    private String productName;
+    private String transactionId;
+
+    private BigDecimal price;
+    private String currency;
+
+    @Column(name = "purchased_at", nullable = false)
+    private Instant purchasedAt;
+
+    @Column(name = "received_at", nullable = false)
+    private Instant receivedAt;
+
+    // Reembolso e chargeback são linhas próprias, que estornam a receita da compra aprovada
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    @Builder.Default
+    private PurchaseStatus status = PurchaseStatus.APPROVED;
+}
@@ -0,0 +1,23 @@
+package br.com.ecs.arquetipos.model;
+
+/**
+ * Situação da compra informada pelo evento do webhook. O sinal diz como o evento entra na receita
+ * consolidada: aprovação soma, reembolso e chargeback estornam, os demais não movimentam.
+ */
+public enum PurchaseStatus {
+    APPROVED(1),
+    REFUNDED(-1),
+    CHARGEBACK(-1),
+    CANCELED(0),
+    PENDING(0);
+
+    private final int revenueSign;
+
+    PurchaseStatus(int revenueSign) {
+        this.revenueSign = revenueSign;
+    }
+
+    public int revenueSign() {
+        return revenueSign;
+    }
+}
@@ -10,11 +10,13 @@ import java.math.BigDecimal;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Subscriber {
 
+    // Sequence com incremento 50 (otimizador pooled-lo): IDs reservados em bloco, sem impedir o batch de INSERTs
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "subscribers_seq")
+    @SequenceGenerator(name = "subscribers_seq", sequenceName = "subscribers_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -41,7 +43,7 @@ public class Subscriber {
     private String state;
     private String country;
 
-    // Informações do produto/compra
+    // Última compra registrada antes da tabela purchases; o webhook não atualiza mais estas colunas
     private String productId;
     private String productName;
 
@@ -52,4 +54,7 @@ public class Subscriber {
 
     private Instant purchaseDate;
 
+    // Hash do último payload aplicado (SubscriberFingerprints); reentregas iguais não reescrevem a linha
+    private Long fingerprint;
+
 }
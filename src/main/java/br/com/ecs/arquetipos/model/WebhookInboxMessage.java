@@ -0,0 +1,55 @@
+package br.com.ecs.arquetipos.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// Webhook aceito no modo assíncrono, aguardando processamento pelos workers
+@Entity
+@Table(name = "webhook_inbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WebhookInboxMessage {
+
+    public enum Status {
+        PENDING,
+        PROCESSING,
+        DEAD
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Provider provider;
+
+    // WebhookRequest já validado, serializado em JSON
+    @Column(nullable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    @Builder.Default
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "received_at", nullable = false)
+    private Instant receivedAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    // Prazo do lote reservado por um worker; vencido, a mensagem volta a ficar disponível
+    @Column(name = "locked_until")
+    private Instant lockedUntil;
+
+    @Column(name = "last_error")
+    private String lastError;
+}
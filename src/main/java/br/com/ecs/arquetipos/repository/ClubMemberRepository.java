@@ -0,0 +1,20 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.model.ClubMember;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ClubMemberRepository extends JpaRepository<ClubMember, Long>, ClubMemberRepositoryCustom {
+
+    @Query("select m.status from ClubMember m where m.subdomain = :subdomain and m.email = :email")
+    Optional<String> findStatus(@Param("subdomain") String subdomain, @Param("email") String email);
+
+    List<ClubMember> findBySubdomainAndEmailIn(String subdomain, Collection<String> emails);
+}
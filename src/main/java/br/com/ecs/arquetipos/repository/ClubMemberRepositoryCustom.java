@@ -0,0 +1,24 @@
+package br.com.ecs.arquetipos.repository;
+
+import java.time.Instant;
+import java.util.Map;
+
+public interface ClubMemberRepositoryCustom {
+
+    /**
+     * Insere ou atualiza em lote o status dos membros (email normalizado -> status) e marca todos
+     * como vistos na execução iniciada em {@code runStartedAt}.
+     * Linhas cujo status não mudou não são reescritas, exceto para registrar a visita uma vez por execução.
+     *
+     * @return quantidade de linhas inseridas ou com status alterado
+     */
+    int upsertStatuses(String subdomain, Map<String, String> statusByEmail, Instant runStartedAt, Instant updatedAt);
+
+    /**
+     * Marca como INACTIVE os membros que não apareceram na listagem desde {@code runStartedAt}.
+     * Só deve ser chamado ao fim de uma execução completa.
+     *
+     * @return quantidade de membros desativados
+     */
+    int deactivateNotSeenSince(String subdomain, Instant runStartedAt, Instant updatedAt);
+}
@@ -0,0 +1,68 @@
+package br.com.ecs.arquetipos.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class ClubMemberRepositoryImpl implements ClubMemberRepositoryCustom {
+
+    private static final String POSTGRES_UPSERT =
+            "INSERT INTO club_members (subdomain, email, status, updated_at, last_seen_at) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (subdomain, email) DO UPDATE SET status = EXCLUDED.status, updated_at = EXCLUDED.updated_at " +
+            "WHERE club_members.status IS DISTINCT FROM EXCLUDED.status";
+
+    // H2 (testes) não suporta ON CONFLICT ... DO UPDATE; MERGE tem o mesmo efeito
+    private static final String H2_UPSERT =
+            "MERGE INTO club_members t USING (VALUES (CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS TIMESTAMP), CAST(? AS TIMESTAMP))) " +
+            "s(subdomain, email, status, updated_at, last_seen_at) ON t.subdomain = s.subdomain AND t.email = s.email " +
+            "WHEN MATCHED AND t.status <> s.status THEN UPDATE SET status = s.status, updated_at = s.updated_at " +
+            "WHEN NOT MATCHED THEN INSERT (subdomain, email, status, updated_at, last_seen_at) " +
+            "VALUES (s.subdomain, s.email, s.status, s.updated_at, s.last_seen_at)";
+
+    // Registra a visita uma única vez por execução: uma página retomada após falha não reescreve a linha
+    private static final String TOUCH_SEEN =
+            "UPDATE club_members SET last_seen_at = ? WHERE subdomain = ? AND email = ? " +
+            "AND (last_seen_at IS NULL OR last_seen_at < ?)";
+
+    private static final String DEACTIVATE_NOT_SEEN =
+            "UPDATE club_members SET status = 'INACTIVE', updated_at = ? WHERE subdomain = ? AND status <> 'INACTIVE' " +
+            "AND (last_seen_at IS NULL OR last_seen_at < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlDialect sqlDialect;
+
+    @Override
+    public int upsertStatuses(String subdomain, Map<String, String> statusByEmail, Instant runStartedAt, Instant updatedAt) {
+        if (statusByEmail.isEmpty()) return 0;
+
+        Timestamp ts = Timestamp.from(updatedAt);
+        Timestamp seen = Timestamp.from(runStartedAt);
+        List<Object[]> args = new ArrayList<>(statusByEmail.size());
+        List<Object[]> touchArgs = new ArrayList<>(statusByEmail.size());
+        statusByEmail.forEach((email, status) -> {
+            args.add(new Object[]{subdomain, email, status, ts, seen});
+            touchArgs.add(new Object[]{seen, subdomain, email, seen});
+        });
+
+        int[] counts = jdbcTemplate.batchUpdate(sqlDialect.isPostgres() ? POSTGRES_UPSERT : H2_UPSERT, args);
+        // Linhas recém-inseridas já saem com last_seen_at; aqui só as existentes ainda não vistas nesta execução
+        jdbcTemplate.batchUpdate(TOUCH_SEEN, touchArgs);
+
+        int changed = 0;
+        for (int count : counts) {
+            if (count > 0) changed += count;
+        }
+        return changed;
+    }
+
+    @Override
+    public int deactivateNotSeenSince(String subdomain, Instant runStartedAt, Instant updatedAt) {
+        return jdbcTemplate.update(DEACTIVATE_NOT_SEEN, Timestamp.from(updatedAt), subdomain, Timestamp.from(runStartedAt));
+    }
+}
@@ -0,0 +1,9 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.model.ClubSyncCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ClubSyncCheckpointRepository extends JpaRepository<ClubSyncCheckpoint, String> {
+}
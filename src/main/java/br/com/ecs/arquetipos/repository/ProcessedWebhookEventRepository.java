@@ -0,0 +1,60 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.model.ProcessedWebhookEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface ProcessedWebhookEventRepository extends JpaRepository<ProcessedWebhookEvent, ProcessedWebhookEvent.Key> {
+
+    // Reserva do evento: entre entregas concorrentes só uma grava (retorno 1) e processa
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO processed_webhook_events (provider, event_key, subscriber_id, email, processed_at)"
+            + " VALUES (:provider, :eventKey, :subscriberId, :email, :processedAt) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("provider") String provider,
+                       @Param("eventKey") String eventKey,
+                       @Param("subscriberId") Long subscriberId,
+                       @Param("email") String email,
+                       @Param("processedAt") Instant processedAt);
+
+    // Reserva ainda em andamento (email nulo) abandonada há mais de claimedBefore: assume a reserva
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE processed_webhook_events SET processed_at = :claimedAt"
+            + " WHERE provider = :provider AND event_key = :eventKey AND email IS NULL AND processed_at < :claimedBefore",
+            nativeQuery = true)
+    int takeOverStaleClaim(@Param("provider") String provider,
+                           @Param("eventKey") String eventKey,
+                           @Param("claimedBefore") Instant claimedBefore,
+                           @Param("claimedAt") Instant claimedAt);
+
+    // Processamento concluído: grava o resultado devolvido às reentregas
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE processed_webhook_events SET subscriber_id = :subscriberId, email = :email, processed_at = :processedAt"
+            + " WHERE provider = :provider AND event_key = :eventKey", nativeQuery = true)
+    int complete(@Param("provider") String provider,
+                 @Param("eventKey") String eventKey,
+                 @Param("subscriberId") Long subscriberId,
+                 @Param("email") String email,
+                 @Param("processedAt") Instant processedAt);
+
+    // Processamento falhou: desfaz a reserva para que a próxima reentrega tente de novo
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM processed_webhook_events WHERE provider = :provider AND event_key = :eventKey AND email IS NULL",
+            nativeQuery = true)
+    int releaseClaim(@Param("provider") String provider, @Param("eventKey") String eventKey);
+
+    @Modifying
+    @Transactional
+    @Query("delete from ProcessedWebhookEvent e where e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") Instant before);
+}
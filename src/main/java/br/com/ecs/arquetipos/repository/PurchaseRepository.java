@@ -0,0 +1,17 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.model.Purchase;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface PurchaseRepository extends JpaRepository<Purchase, Long>, PurchaseRepositoryCustom {
+
+    List<Purchase> findBySubscriberIdOrderByPurchasedAtDesc(Long subscriberId);
+
+    // Intervalo semiaberto [from, to): no PostgreSQL só as partições do período são lidas
+    List<Purchase> findByProductIdAndPurchasedAtGreaterThanEqualAndPurchasedAtLessThan(String productId, Instant from, Instant to);
+}
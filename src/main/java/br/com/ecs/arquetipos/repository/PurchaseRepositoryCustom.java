@@ -0,0 +1,42 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.dto.RevenueReport.DailyRevenue;
+import br.com.ecs.arquetipos.model.Purchase;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+public interface PurchaseRepositoryCustom {
+
+    /**
+     * Acrescenta a compra; uma reentrega (mesmo provider, transação e data) é ignorada. Compras
+     * novas somam em revenue_daily na mesma transação.
+     *
+     * @return {@code false} quando a compra já estava registrada
+     */
+    @Transactional
+    boolean append(Purchase purchase);
+
+    /** Mesmo que {@link #append}, com várias compras por comando. */
+    @Transactional
+    int appendAll(List<Purchase> purchases);
+
+    /**
+     * Linhas de revenue_daily no período [from, to], em ordem de dia; filtros nulos não filtram.
+     * O custo depende de dias x produtos, não do volume de compras.
+     */
+    List<DailyRevenue> revenueByDay(LocalDate from, LocalDate to, String productId, String currency);
+
+    /** Cria a partição mensal, se ainda não existir. Sem efeito fora do PostgreSQL. */
+    void createMonthlyPartition(YearMonth month);
+
+    /**
+     * Desanexa as partições mensais anteriores a {@code month}; as tabelas continuam existindo
+     * para arquivamento ou DROP manual.
+     *
+     * @return nomes das partições desanexadas
+     */
+    List<String> detachPartitionsBefore(YearMonth month);
+}
@@ -0,0 +1,256 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.dto.RevenueReport.DailyRevenue;
+import br.com.ecs.arquetipos.model.Purchase;
+import br.com.ecs.arquetipos.model.PurchaseStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class PurchaseRepositoryImpl implements PurchaseRepositoryCustom {
+
+    private static final String PURCHASE_COLUMNS = "subscriber_id, email, provider, product_id, product_name, " +
+            "transaction_id, price, currency, purchased_at, received_at, status";
+
+    private static final String INSERT = "INSERT INTO purchases (" + PURCHASE_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Tipada: sem os CASTs o PostgreSQL trata os parâmetros de um VALUES dentro de WITH como texto
+    private static final String TYPED_ROW = "(CAST(? AS BIGINT), CAST(? AS VARCHAR), CAST(? AS VARCHAR), " +
+            "CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS NUMERIC), CAST(? AS VARCHAR), " +
+            "CAST(? AS TIMESTAMP), CAST(? AS TIMESTAMP), CAST(? AS VARCHAR))";
+
+    private static final int PARAMETERS_PER_ROW = 11;
+
+    // Reentrega do mesmo (provider, transaction_id, status) não gera outra linha, seja qual for o purchased_at;
+    // aprovação e reembolso da mesma transação são eventos distintos
+    private static final String CLAIM_TRANSACTION_H2 = "INSERT INTO purchase_transactions (provider, transaction_id, status) " +
+            "VALUES (?, ?, ?) ON CONFLICT DO NOTHING";
+
+    // Peso de cada linha na receita consolidada (PurchaseStatus.revenueSign)
+    private static final String REVENUE_SIGN = Arrays.stream(PurchaseStatus.values())
+            .map(s -> "WHEN '" + s.name() + "' THEN " + s.revenueSign())
+            .collect(Collectors.joining(" ", "CASE status ", " END"));
+
+    // Linhas por comando no PostgreSQL, bem abaixo do limite de 65535 parâmetros do protocolo
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    // H2 (testes): soma de um grupo de compras novas na linha consolidada
+    private static final String ROLLUP_MERGE_H2 = "MERGE INTO revenue_daily t USING (VALUES (CAST(? AS VARCHAR), " +
+            "CAST(? AS VARCHAR), CAST(? AS DATE), CAST(? AS BIGINT), CAST(? AS NUMERIC(19,4)))) " +
+            "s(product_id, currency, purchase_day, purchases, revenue) " +
+            "ON t.product_id = s.product_id AND t.currency = s.currency AND t.purchase_day = s.purchase_day " +
+            "WHEN MATCHED THEN UPDATE SET purchases = t.purchases + s.purchases, revenue = t.revenue + s.revenue " +
+            "WHEN NOT MATCHED THEN INSERT (product_id, currency, purchase_day, purchases, revenue) " +
+            "VALUES (s.product_id, s.currency, s.purchase_day, s.purchases, s.revenue)";
+
+    private record RollupKey(String productId, String currency, LocalDate day) {
+    }
+
+    private static final class RollupTotal {
+        long purchases;
+        BigDecimal revenue = BigDecimal.ZERO;
+    }
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlDialect sqlDialect;
+
+    @Override
+    public boolean append(Purchase purchase) {
+        return appendAll(List.of(purchase)) > 0;
+    }
+
+    @Override
+    public int appendAll(List<Purchase> purchases) {
+        if (purchases.isEmpty()) return 0;
+        if (!sqlDialect.isPostgres()) return appendAllH2(purchases);
+
+        // Reserva da transação, inserção e consolidação no mesmo comando: só as linhas realmente inseridas somam
+        int appended = 0;
+        for (int from = 0; from < purchases.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Purchase> chunk = purchases.subList(from, Math.min(purchases.size(), from + MAX_ROWS_PER_STATEMENT));
+            String values = "VALUES " + String.join(", ", Collections.nCopies(chunk.size(), TYPED_ROW));
+            Long count = jdbcTemplate.query(appendWithRevenueRollup(values), ps -> {
+                for (int i = 0; i < chunk.size(); i++) bind(ps, i * PARAMETERS_PER_ROW, chunk.get(i));
+            }, rs -> rs.next() ? rs.getLong(1) : 0L);
+            appended += count != null ? count.intValue() : 0;
+        }
+        return appended;
+    }
+
+    /**
+     * Grava em purchases as linhas produzidas por {@code source} (um SELECT ou VALUES com as colunas de
+     * {@link #PURCHASE_COLUMNS}, nessa ordem) e soma as inseridas em revenue_daily, num único comando
+     * (PostgreSQL); devolve uma linha com a quantidade inserida.
+     * Linhas com transaction_id só entram se conseguirem reservar (provider, transaction_id, status) em
+     * purchase_transactions: a tabela particionada não comporta um índice único sem purchased_at, que
+     * pode vir do horário de recebimento e mudar a cada reentrega. Repetições dentro do próprio lote
+     * contam uma vez. Cada linha entra na receita com o sinal do seu status (reembolso e chargeback estornam,
+     * cancelamentos e pendentes ficam de fora). As compras são agrupadas antes do upsert, que não pode
+     * tocar a mesma linha duas vezes.
+     */
+    static String appendWithRevenueRollup(String source) {
+        return "WITH input (" + PURCHASE_COLUMNS + ") AS (" + source + "), " +
+                "candidates AS (SELECT input.*, ROW_NUMBER() OVER (PARTITION BY provider, transaction_id, status " +
+                "ORDER BY purchased_at) AS rn FROM input), " +
+                "claimed AS (INSERT INTO purchase_transactions (provider, transaction_id, status) " +
+                "SELECT provider, transaction_id, status FROM candidates WHERE transaction_id IS NOT NULL AND rn = 1 " +
+                "ON CONFLICT DO NOTHING RETURNING provider, transaction_id, status), " +
+                "inserted AS (INSERT INTO purchases (" + PURCHASE_COLUMNS + ") SELECT " + PURCHASE_COLUMNS +
+                " FROM candidates c WHERE c.transaction_id IS NULL OR (c.rn = 1 AND EXISTS (SELECT 1 FROM claimed k " +
+                "WHERE k.provider = c.provider AND k.transaction_id = c.transaction_id AND k.status = c.status)) " +
+                "RETURNING product_id, currency, price, purchased_at, " + REVENUE_SIGN + " AS sign), " +
+                "rolled_up AS (INSERT INTO revenue_daily (product_id, currency, purchase_day, purchases, revenue) " +
+                "SELECT COALESCE(product_id, ''), COALESCE(currency, ''), CAST(purchased_at AS DATE), SUM(sign), " +
+                "COALESCE(SUM(sign * price), 0) FROM inserted WHERE sign <> 0 GROUP BY 1, 2, 3 " +
+                "ON CONFLICT (product_id, currency, purchase_day) DO UPDATE SET " +
+                "purchases = revenue_daily.purchases + EXCLUDED.purchases, revenue = revenue_daily.revenue + EXCLUDED.revenue) " +
+                "SELECT COUNT(*) FROM inserted";
+    }
+
+    // H2 não aceita INSERT dentro de WITH: reserva das transações, batch de INSERTs e consolidação das que entraram
+    private int appendAllH2(List<Purchase> purchases) {
+        List<Purchase> withTransaction = purchases.stream().filter(p -> p.getTransactionId() != null).toList();
+        Set<Purchase> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+        int index = 0;
+        for (int[] batch : jdbcTemplate.batchUpdate(CLAIM_TRANSACTION_H2, withTransaction, withTransaction.size(),
+                (ps, p) -> {
+                    ps.setString(1, p.getProvider().name());
+                    ps.setString(2, p.getTransactionId());
+                    ps.setString(3, p.getStatus().name());
+                })) {
+            for (int count : batch) {
+                Purchase purchase = withTransaction.get(index++);
+                if (count == 0) rejected.add(purchase);
+            }
+        }
+        List<Purchase> accepted = purchases.stream().filter(p -> !rejected.contains(p)).toList();
+        if (accepted.isEmpty()) return 0;
+
+        jdbcTemplate.batchUpdate(INSERT, accepted, accepted.size(), (ps, p) -> bind(ps, 0, p));
+
+        Map<RollupKey, RollupTotal> totals = new LinkedHashMap<>();
+        for (Purchase purchase : accepted) {
+            int sign = purchase.getStatus().revenueSign();
+            if (sign == 0) continue;
+            RollupKey key = new RollupKey(nonNull(purchase.getProductId()), nonNull(purchase.getCurrency()),
+                    toUtc(purchase.getPurchasedAt()).toLocalDate());
+            RollupTotal total = totals.computeIfAbsent(key, k -> new RollupTotal());
+            total.purchases += sign;
+            if (purchase.getPrice() != null) total.revenue = total.revenue.add(purchase.getPrice().multiply(BigDecimal.valueOf(sign)));
+        }
+        if (!totals.isEmpty()) {
+            jdbcTemplate.batchUpdate(ROLLUP_MERGE_H2, new ArrayList<>(totals.entrySet()), totals.size(), (ps, entry) -> {
+                ps.setString(1, entry.getKey().productId());
+                ps.setString(2, entry.getKey().currency());
+                ps.setObject(3, entry.getKey().day());
+                ps.setLong(4, entry.getValue().purchases);
+                ps.setBigDecimal(5, entry.getValue().revenue);
+            });
+        }
+        return accepted.size();
+    }
+
+    @Override
+    public List<DailyRevenue> revenueByDay(LocalDate from, LocalDate to, String productId, String currency) {
+        StringBuilder sql = new StringBuilder("SELECT purchase_day, product_id, currency, purchases, revenue FROM revenue_daily " +
+                "WHERE purchase_day >= ? AND purchase_day <= ?");
+        List<Object> args = new ArrayList<>(List.of(from, to));
+        if (productId != null) {
+            sql.append(" AND product_id = ?");
+            args.add(productId);
+        }
+        if (currency != null) {
+            sql.append(" AND currency = ?");
+            args.add(currency);
+        }
+        sql.append(" ORDER BY purchase_day, product_id, currency");
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new DailyRevenue(
+                rs.getObject("purchase_day", LocalDate.class),
+                emptyToNull(rs.getString("product_id")),
+                emptyToNull(rs.getString("currency")),
+                rs.getLong("purchases"),
+                rs.getBigDecimal("revenue")), args.toArray());
+    }
+
+    // Chave primária não aceita NULL: produto/moeda ausentes são guardados como ''
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    @Override
+    public void createMonthlyPartition(YearMonth month) {
+        if (!sqlDialect.isPostgres()) return;
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF purchases " +
+                "FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    @Override
+    public List<String> detachPartitionsBefore(YearMonth month) {
+        if (!sqlDialect.isPostgres()) return List.of();
+        String limit = partitionName(month);
+        // Os nomes purchases_pAAAA_MM ordenam como as datas; a partição default fica de fora
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = 'purchases' AND c.relname LIKE 'purchases\\_p____\\___' ORDER BY c.relname",
+                String.class);
+        List<String> detached = new ArrayList<>();
+        for (String partition : partitions) {
+            if (partition.compareTo(limit) >= 0) break;
+            jdbcTemplate.execute("ALTER TABLE purchases DETACH PARTITION " + partition);
+            detached.add(partition);
+        }
+        return detached;
+    }
+
+    static String partitionName(YearMonth month) {
+        return "purchases_p" + month.format(PARTITION_SUFFIX);
+    }
+
+    private static void bind(PreparedStatement ps, int offset, Purchase p) throws SQLException {
+        ps.setLong(offset + 1, p.getSubscriberId());
+        ps.setString(offset + 2, p.getEmail());
+        ps.setString(offset + 3, p.getProvider().name());
+        ps.setString(offset + 4, p.getProductId());
+        ps.setString(offset + 5, p.getProductName());
+        ps.setString(offset + 6, p.getTransactionId());
+        if (p.getPrice() == null) ps.setNull(offset + 7, Types.NUMERIC);
+        else ps.setBigDecimal(offset + 7, p.getPrice());
+        ps.setString(offset + 8, p.getCurrency());
+        ps.setObject(offset + 9, toUtc(p.getPurchasedAt()), Types.TIMESTAMP);
+        ps.setObject(offset + 10, toUtc(p.getReceivedAt()), Types.TIMESTAMP);
+        ps.setString(offset + 11, p.getStatus().name());
+    }
+
+    // Mesma convenção do Hibernate (hibernate.jdbc.time_zone=UTC) para colunas TIMESTAMP sem fuso
+    private static LocalDateTime toUtc(Instant instant) {
+        return instant == null ? null : LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+}
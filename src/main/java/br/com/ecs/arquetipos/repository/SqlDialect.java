@@ -0,0 +1,35 @@
+package br.com.ecs.arquetipos.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Identifica o banco em uso para as consultas nativas que não são portáveis
+ * (ex.: INSERT ... ON CONFLICT no PostgreSQL x MERGE no H2 usado nos testes).
+ */
+@Component
+@Slf4j
+public class SqlDialect {
+
+    private final boolean postgres;
+
+    public SqlDialect(DataSource dataSource) {
+        String product;
+        try (Connection connection = dataSource.getConnection()) {
+            product = connection.getMetaData().getDatabaseProductName();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Não foi possível identificar o banco de dados", e);
+        }
+        this.postgres = product.toLowerCase(Locale.ROOT).contains("postgres");
+        log.info("Banco de dados detectado: {}", product);
+    }
+
+    public boolean isPostgres() {
+        return postgres;
+    }
+}
@@ -0,0 +1,149 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.PurchaseStatus;
+import br.com.ecs.arquetipos.model.Subscriber;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Carga em massa exclusiva do PostgreSQL: envia as linhas via COPY FROM STDIN para uma tabela
+ * temporária e aplica tudo em dois comandos set-based, um upsert em subscribers (por email, o último
+ * valor não nulo de cada campo vence) e um INSERT em purchases para as linhas com dados de compra,
+ * somado em revenue_daily no mesmo comando. Em outros bancos a importação usa o caminho em blocos
+ * de {@link SubscriberRepositoryCustom#upsertAll}; quem chama escolhe por {@link SqlDialect}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SubscriberCopyLoader {
+
+    // Colunas da tabela temporária do COPY (mais o número da linha e o status da compra); provider e created_at vêm da carga
+    private static final List<SubscriberRepositoryImpl.Column> STAGED = SubscriberRepositoryImpl.COLUMNS.stream()
+            .filter(c -> !c.name().equals("fingerprint") && !c.name().equals("created_at") && !c.name().equals("provider"))
+            .toList();
+
+    private static final List<String> PURCHASE_COLUMNS =
+            List.of("product_id", "product_name", "transaction_id", "price", "currency", "purchase_date");
+
+    // Dados cadastrais levados a subscribers; a compra vai para purchases
+    private static final List<String> IDENTITY = STAGED.stream()
+            .map(SubscriberRepositoryImpl.Column::name)
+            .filter(name -> !name.equals("email") && !PURCHASE_COLUMNS.contains(name))
+            .toList();
+
+    private static final String STAGING_TABLE = "subscriber_import_staging";
+
+    private static final String STAGING_DDL = "CREATE TEMP TABLE " + STAGING_TABLE + " (line BIGSERIAL, " +
+            STAGED.stream().map(c -> c.name() + " " + c.h2Type()).collect(Collectors.joining(", ")) +
+            ", status VARCHAR(20)) ON COMMIT DROP";
+
+    private static final String COPY_SQL = "COPY " + STAGING_TABLE + " (" +
+            STAGED.stream().map(SubscriberRepositoryImpl.Column::name).collect(Collectors.joining(", ")) +
+            ", status) FROM STDIN WITH (FORMAT csv)";
+
+    // Por email, o último valor não nulo de cada campo, como se as linhas fossem aplicadas em ordem
+    private static final String MERGE_SUBSCRIBERS_PG =
+            "INSERT INTO subscribers (email, created_at, provider, " + String.join(", ", IDENTITY) + ") " +
+            "SELECT email, ?, ?, " +
+            IDENTITY.stream().map(c -> "(array_agg(" + c + " ORDER BY line DESC) FILTER (WHERE " + c + " IS NOT NULL))[1]")
+                    .collect(Collectors.joining(", ")) +
+            " FROM " + STAGING_TABLE + " GROUP BY email" +
+            " ON CONFLICT (email) DO UPDATE SET " + SubscriberRepositoryImpl.UPDATE_SET_PG +
+            " WHERE " + SubscriberRepositoryImpl.UPDATE_CONDITION_PG;
+
+    private static final String MERGE_PURCHASES_PG = PurchaseRepositoryImpl.appendWithRevenueRollup(
+            "SELECT s.id, st.email, CAST(? AS VARCHAR), st.product_id, st.product_name, st.transaction_id, st.price, " +
+            "st.currency, COALESCE(st.purchase_date, CAST(? AS TIMESTAMP)), CAST(? AS TIMESTAMP), " +
+            "COALESCE(st.status, 'APPROVED') FROM " + STAGING_TABLE +
+            " st JOIN subscribers s ON s.email = st.email " +
+            "WHERE st.product_id IS NOT NULL OR st.transaction_id IS NOT NULL OR st.price IS NOT NULL");
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlDialect sqlDialect;
+
+    /**
+     * Executa a carga. Deve rodar dentro de uma transação; a tabela temporária some no commit.
+     *
+     * @param rows candidatos na ordem do arquivo, com os dados de compra nos campos de compra
+     * @throws IllegalStateException se o banco não for PostgreSQL
+     */
+    public CopyResult copyAndMerge(Iterator<Row> rows, Provider provider) {
+        if (!sqlDialect.isPostgres()) {
+            throw new IllegalStateException("COPY só está disponível no PostgreSQL");
+        }
+        jdbcTemplate.execute(STAGING_DDL);
+        Long staged = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            try {
+                // Envia em blocos de ~64KB: a memória não cresce com o tamanho do arquivo
+                StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+                while (rows.hasNext()) {
+                    appendCsv(buffer, rows.next());
+                    if (buffer.length() >= COPY_BUFFER_SIZE) flush(copy, buffer);
+                }
+                flush(copy, buffer);
+                return copy.endCopy();
+            } finally {
+                if (copy.isActive()) copy.cancelCopy();
+            }
+        });
+
+        LocalDateTime now = SubscriberRepositoryImpl.toUtc(Instant.now());
+        int subscribers = jdbcTemplate.update(MERGE_SUBSCRIBERS_PG, now, provider.name());
+        Long purchases = jdbcTemplate.queryForObject(MERGE_PURCHASES_PG, Long.class, provider.name(), now, now);
+        return new CopyResult(staged != null ? staged : 0, subscribers, purchases != null ? purchases : 0);
+    }
+
+
+    /**
+     * Linha do arquivo: cadastro e compra no subscriber, mais o status da compra (nulo vira APPROVED).
+     */
+    public record Row(Subscriber subscriber, PurchaseStatus status) {
+    }
+
+    public record CopyResult(long staged, long subscribers, long purchases) {
+    }
+
+    private static void flush(CopyIn copy, StringBuilder buffer) throws SQLException {
+        if (buffer.isEmpty()) return;
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    // FORMAT csv: campo vazio sem aspas é NULL; texto sempre entre aspas para distinguir '' de NULL
+    private static void appendCsv(StringBuilder buffer, Row row) {
+        for (SubscriberRepositoryImpl.Column column : STAGED) {
+            appendValue(buffer, column.value().apply(row.subscriber()));
+            buffer.append(',');
+        }
+        if (row.status() != null) appendValue(buffer, row.status().name());
+        buffer.append('\n');
+    }
+
+    private static void appendValue(StringBuilder buffer, Object value) {
+        if (value == null) return;
+        if (value instanceof BigDecimal decimal) {
+            buffer.append(decimal.toPlainString());
+        } else if (value instanceof LocalDateTime timestamp) {
+            buffer.append(timestamp);
+        } else {
+            buffer.append('"').append(value.toString().replace("\"", "\"\"")).append('"');
+        }
+    }
+}
@@ -2,12 +2,22 @@ package br.com.ecs.arquetipos.repository;
 
 import br.com.ecs.arquetipos.model.Subscriber;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface SubscriberRepository extends JpaRepository<Subscriber, Long> {
+public interface SubscriberRepository extends JpaRepository<Subscriber, Long>, SubscriberRepositoryCustom {
     Optional<Subscriber> findByEmail(String email);
+
+    List<Subscriber> findByEmailIn(Collection<String> emails);
+
+    // Resolve um lote inteiro com um único WHERE email IN (...), trazendo só a coluna necessária
+    @Query("select s.email from Subscriber s where s.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
 }
 
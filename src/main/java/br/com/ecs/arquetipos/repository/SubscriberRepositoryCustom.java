@@ -0,0 +1,82 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.dto.SubscriberSummary;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.Subscriber;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface SubscriberRepositoryCustom {
+
+    /**
+     * Insere o subscriber ou, se o email já existir (ux_subscribers_email), atualiza apenas os campos
+     * não nulos do candidato que diferem do registro atual. O provider é sempre sobrescrito e o
+     * created_at original é preservado. Nada é reescrito quando não há diferença.
+     *
+     * @return o registro resultante e se ele foi inserido por este comando
+     */
+    Upserted upsert(Subscriber candidate);
+
+    /**
+     * Mesmo que {@link #upsert}, para várias linhas por comando multi-row (em blocos, para caber no
+     * limite de parâmetros). As linhas são gravadas em ordem de email, a mesma em todos os nós.
+     * Os emails devem ser distintos entre si.
+     *
+     * @return os registros resultantes, na mesma ordem dos candidatos
+     */
+    List<Upserted> upsertAll(List<Subscriber> candidates);
+
+    /**
+     * Resultado de um upsert. {@code inserted} é falso quando o email já existia, mesmo que nada
+     * tenha mudado, e também quando outra transação inseriu a linha antes deste comando.
+     */
+    record Upserted(Subscriber subscriber, boolean inserted) {
+    }
+
+    /**
+     * Aplica ao registro {@code current} (já conhecido, sem recarregá-lo) só as colunas em que o
+     * candidato traz um valor diferente, em um UPDATE parcial por id; o fingerprint do candidato
+     * acompanha a alteração. Sem diferenças, nada é executado e {@code current} é devolvido.
+     *
+     * @return o registro resultante, ou vazio se a linha não existe mais
+     */
+    Optional<Subscriber> updateChanged(Subscriber current, Subscriber candidate);
+
+    /**
+     * Percorre os subscribers que atendem ao filtro, em ordem de id, com um cursor no servidor:
+     * as linhas chegam em blocos de {@code fetchSize} e são entregues ao {@code consumer} uma a uma,
+     * sem passar pelo contexto de persistência. No PostgreSQL o cursor só existe dentro de uma
+     * transação (autocommit desligado); fora dela o driver traz o resultado inteiro.
+     */
+    void streamAll(ExportFilter filter, int fetchSize, Consumer<Subscriber> consumer);
+
+    /**
+     * Filtros da exportação; {@code null} não filtra. {@code productId} seleciona quem tem ao menos
+     * uma compra do produto em purchases; o intervalo de {@code createdAt} é [from, to).
+     */
+    record ExportFilter(Provider provider, String productId, Instant createdFrom, Instant createdTo) {
+
+        public static final ExportFilter NONE = new ExportFilter(null, null, null, null);
+    }
+
+    /**
+     * Página de subscribers em ordem decrescente de (created_at, id), a partir da posição
+     * {@code (afterCreatedAt, afterId)} exclusive (nula na primeira página). Seek direto nos
+     * índices ix_subscribers_*_created_at_id, sem OFFSET.
+     */
+    List<SubscriberSummary> findPage(SearchFilter filter, Instant afterCreatedAt, Long afterId, int limit);
+
+    /**
+     * Filtros de {@link #findPage}; {@code null} não filtra. Produto e período de compra
+     * selecionam quem tem ao menos uma compra em purchases que atenda a ambos, com período [from, to).
+     */
+    record SearchFilter(Provider provider, String productId, Instant purchasedFrom, Instant purchasedTo) {
+
+        boolean filtersPurchases() {
+            return productId != null || purchasedFrom != null || purchasedTo != null;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.dto.SubscriberSummary;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.Subscriber;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class SubscriberRepositoryImpl implements SubscriberRepositoryCustom {
+
+    record Column(String name, int sqlType, String h2Type, Function<Subscriber, Object> value) {
+    }
+
+    // Ordem dos parâmetros nos dois dialetos
+    static final List<Column> COLUMNS = List.of(
+            new Column("name", Types.VARCHAR, "VARCHAR", Subscriber::getName),
+            new Column("email", Types.VARCHAR, "VARCHAR", Subscriber::getEmail),
+            new Column("created_at", Types.TIMESTAMP, "TIMESTAMP", s -> toUtc(s.getCreatedAt())),
+            new Column("provider", Types.VARCHAR, "VARCHAR", s -> s.getProvider().name()),
+            new Column("first_name", Types.VARCHAR, "VARCHAR", Subscriber::getFirstName),
+            new Column("last_name", Types.VARCHAR, "VARCHAR", Subscriber::getLastName),
+            new Column("phone", Types.VARCHAR, "VARCHAR", Subscriber::getPhone),
+            new Column("document", Types.VARCHAR, "VARCHAR", Subscriber::getDocument),
+            new Column("zipcode", Types.VARCHAR, "VARCHAR", Subscriber::getZipcode),
+            new Column("city", Types.VARCHAR, "VARCHAR", Subscriber::getCity),
+            new Column("state", Types.VARCHAR, "VARCHAR", Subscriber::getState),
+            new Column("country", Types.VARCHAR, "VARCHAR", Subscriber::getCountry),
+            new Column("product_id", Types.VARCHAR, "VARCHAR", Subscriber::getProductId),
+            new Column("product_name", Types.VARCHAR, "VARCHAR", Subscriber::getProductName),
+            new Column("transaction_id", Types.VARCHAR, "VARCHAR", Subscriber::getTransactionId),
+            new Column("price", Types.NUMERIC, "NUMERIC(19,4)", Subscriber::getPrice),
+            new Column("currency", Types.VARCHAR, "VARCHAR", Subscriber::getCurrency),
+            new Column("purchase_date", Types.TIMESTAMP, "TIMESTAMP", s -> toUtc(s.getPurchaseDate())),
+            new Column("fingerprint", Types.BIGINT, "BIGINT", Subscriber::getFingerprint)
+    );
+
+    private static final Column FINGERPRINT = COLUMNS.get(COLUMNS.size() - 1);
+
+    // Linhas por upsert: cada uma usa COLUMNS.size() + 1 parâmetros (valores e o IN do PostgreSQL),
+    // bem abaixo do limite de 65535 do protocolo qualquer que seja o tamanho do lote de quem chama
+    static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    // Campos atualizados quando o email já existe: valor novo se informado, senão mantém o atual
+    private static final List<String> MERGED = COLUMNS.stream()
+            .map(Column::name)
+            .filter(name -> !name.equals("email") && !name.equals("created_at") && !name.equals("provider")
+                    && !name.equals("fingerprint"))
+            .toList();
+
+    // Colunas que o UPDATE parcial pode alterar
+    private static final List<Column> UPDATABLE = COLUMNS.stream()
+            .filter(c -> MERGED.contains(c.name()) || c.name().equals("provider"))
+            .toList();
+
+    private static final String COLUMN_LIST = COLUMNS.stream().map(Column::name).collect(Collectors.joining(", "));
+
+    // O mesmo fingerprint (reentrega do mesmo payload) dispensa a comparação campo a campo
+    static final String UPDATE_CONDITION_PG =
+            "(EXCLUDED.fingerprint IS NULL OR EXCLUDED.fingerprint IS DISTINCT FROM subscribers.fingerprint) AND (" +
+            MERGED.stream().map(c -> "(EXCLUDED." + c + " IS NOT NULL AND EXCLUDED." + c + " IS DISTINCT FROM subscribers." + c + ")")
+                    .collect(Collectors.joining(" OR ")) +
+            " OR EXCLUDED.provider IS DISTINCT FROM subscribers.provider)";
+
+    static final String UPDATE_SET_PG =
+            MERGED.stream().map(c -> c + " = COALESCE(EXCLUDED." + c + ", subscribers." + c + ")").collect(Collectors.joining(", ")) +
+            ", provider = EXCLUDED.provider, fingerprint = EXCLUDED.fingerprint";
+
+    private static final String UPDATE_CONDITION_H2 =
+            "(s.fingerprint IS NULL OR s.fingerprint IS DISTINCT FROM t.fingerprint) AND (" +
+            MERGED.stream().map(c -> "(s." + c + " IS NOT NULL AND s." + c + " IS DISTINCT FROM t." + c + ")")
+                    .collect(Collectors.joining(" OR ")) +
+            " OR s.provider IS DISTINCT FROM t.provider)";
+
+    private static final String UPDATE_SET_H2 =
+            MERGED.stream().map(c -> c + " = COALESCE(s." + c + ", t." + c + ")").collect(Collectors.joining(", ")) +
+            ", provider = s.provider, fingerprint = s.fingerprint";
+
+    private static final String H2_ROW =
+            "(" + COLUMNS.stream().map(c -> "CAST(? AS " + c.h2Type() + ")").collect(Collectors.joining(", ")) + ")";
+
+    private static final String PG_ROW = "(" + String.join(", ", Collections.nCopies(COLUMNS.size(), "?")) + ")";
+
+    private static final RowMapper<Subscriber> ROW_MAPPER = SubscriberRepositoryImpl::mapRow;
+
+    private static final RowMapper<Upserted> UPSERTED_MAPPER =
+            (rs, rowNum) -> new Upserted(mapRow(rs, rowNum), rs.getBoolean("inserted"));
+
+    private static final RowMapper<SubscriberSummary> SUMMARY_MAPPER = (rs, rowNum) -> new SubscriberSummary(
+            rs.getLong("id"),
+            rs.getString("name"),
+            rs.getString("email"),
+            Provider.valueOf(rs.getString("provider")),
+            fromUtc(rs.getObject("created_at", LocalDateTime.class)),
+            rs.getString("first_name"),
+            rs.getString("last_name"),
+            rs.getString("city"),
+            rs.getString("state"),
+            rs.getString("country"));
+
+    private static final String SUMMARY_COLUMNS =
+            "s.id, s.name, s.email, s.provider, s.created_at, s.first_name, s.last_name, s.city, s.state, s.country";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlDialect sqlDialect;
+
+    @Override
+    public Upserted upsert(Subscriber candidate) {
+        return upsertAll(List.of(candidate)).get(0);
+    }
+
+    @Override
+    public List<Upserted> upsertAll(List<Subscriber> candidates) {
+        if (candidates.isEmpty()) return List.of();
+        if (candidates.stream().map(Subscriber::getEmail).distinct().count() != candidates.size()) {
+            throw new IllegalArgumentException("Emails must be unique within a single upsert statement");
+        }
+
+        // Linhas travadas sempre na mesma ordem: lotes sobrepostos em nós diferentes esperam em vez de
+        // entrar em deadlock
+        List<Subscriber> sorted = candidates.stream().sorted(Comparator.comparing(Subscriber::getEmail)).toList();
+        Map<String, Upserted> byEmail = new HashMap<>();
+        for (int from = 0; from < sorted.size(); from += MAX_ROWS_PER_STATEMENT) {
+            upsertChunk(sorted.subList(from, Math.min(sorted.size(), from + MAX_ROWS_PER_STATEMENT)), byEmail);
+        }
+
+        List<Upserted> result = new ArrayList<>(candidates.size());
+        for (Subscriber candidate : candidates) {
+            Upserted row = byEmail.get(candidate.getEmail());
+            if (row == null) throw new IllegalStateException("Subscriber not found after upsert: " + candidate.getEmail());
+            result.add(row);
+        }
+        return result;
+    }
+
+    private void upsertChunk(List<Subscriber> candidates, Map<String, Upserted> byEmail) {
+        List<String> emails = candidates.stream().map(Subscriber::getEmail).toList();
+        if (sqlDialect.isPostgres()) {
+            jdbcTemplate.query(postgresUpsert(candidates.size()), ps -> {
+                int index = 1;
+                for (Subscriber candidate : candidates) {
+                    index = bind(ps, index, candidate);
+                }
+                for (String email : emails) ps.setString(index++, email);
+            }, UPSERTED_MAPPER).forEach(row -> byEmail.put(row.subscriber().getEmail(), row));
+        } else {
+            // O MERGE do H2 não informa se a linha foi inserida: os emails que já existiam são lidos antes
+            Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(
+                    "SELECT email FROM subscribers WHERE email IN (" + placeholders(emails.size()) + ")",
+                    String.class, emails.toArray()));
+            jdbcTemplate.query(h2Upsert(candidates.size()), ps -> {
+                int index = 1;
+                for (Subscriber candidate : candidates) {
+                    index = bind(ps, index, candidate);
+                }
+            }, ROW_MAPPER).forEach(row -> byEmail.put(row.getEmail(), new Upserted(row, !existing.contains(row.getEmail()))));
+        }
+
+        // Sem alteração no H2, ou inserção concorrente ainda invisível ao snapshot no PostgreSQL
+        List<String> missing = emails.stream().filter(email -> !byEmail.containsKey(email)).toList();
+        if (!missing.isEmpty()) {
+            jdbcTemplate.query("SELECT * FROM subscribers WHERE email IN (" + placeholders(missing.size()) + ")",
+                            ROW_MAPPER, missing.toArray())
+                    .forEach(row -> byEmail.put(row.getEmail(), new Upserted(row, false)));
+        }
+    }
+
+    @Override
+    public Optional<Subscriber> updateChanged(Subscriber current, Subscriber candidate) {
+        List<Column> changed = new ArrayList<>();
+        for (Column column : UPDATABLE) {
+            Object value = column.value().apply(candidate);
+            if (value != null && !sameValue(value, column.value().apply(current))) changed.add(column);
+        }
+        if (changed.isEmpty()) return Optional.of(current);
+        changed.add(FINGERPRINT);
+
+        String update = "UPDATE subscribers SET " +
+                changed.stream().map(c -> c.name() + " = ?").collect(Collectors.joining(", ")) +
+                " WHERE id = ?";
+        String sql = sqlDialect.isPostgres() ? update + " RETURNING *" : "SELECT * FROM FINAL TABLE (" + update + ")";
+        List<Subscriber> rows = jdbcTemplate.query(sql, ps -> {
+            int index = 1;
+            for (Column column : changed) {
+                Object value = column.value().apply(candidate);
+                if (value == null) ps.setNull(index++, column.sqlType());
+                else ps.setObject(index++, value, column.sqlType());
+            }
+            ps.setLong(index, current.getId());
+        }, ROW_MAPPER);
+        return rows.stream().findFirst();
+    }
+
+    @Override
+    public void streamAll(ExportFilter filter, int fetchSize, Consumer<Subscriber> consumer) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM subscribers s WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (filter.provider() != null) {
+            sql.append(" AND s.provider = ?");
+            args.add(filter.provider().name());
+        }
+        if (filter.createdFrom() != null) {
+            sql.append(" AND s.created_at >= ?");
+            args.add(toUtc(filter.createdFrom()));
+        }
+        if (filter.createdTo() != null) {
+            sql.append(" AND s.created_at < ?");
+            args.add(toUtc(filter.createdTo()));
+        }
+        if (filter.productId() != null) {
+            sql.append(" AND EXISTS (SELECT 1 FROM purchases p WHERE p.subscriber_id = s.id AND p.product_id = ?)");
+            args.add(filter.productId());
+        }
+        sql.append(" ORDER BY s.id");
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) ps.setObject(i + 1, args.get(i));
+            return ps;
+        }, rs -> {
+            consumer.accept(mapRow(rs, rs.getRow()));
+        });
+    }
+
+    @Override
+    public List<SubscriberSummary> findPage(SearchFilter filter, Instant afterCreatedAt, Long afterId, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT " + SUMMARY_COLUMNS + " FROM subscribers s WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (filter.provider() != null) {
+            sql.append(" AND s.provider = ?");
+            args.add(filter.provider().name());
+        }
+        if (afterCreatedAt != null && afterId != null) {
+            // Comparação de linha: o índice (created_at, id) posiciona direto no fim da página anterior
+            sql.append(" AND (s.created_at, s.id) < (?, ?)");
+            args.add(toUtc(afterCreatedAt));
+            args.add(afterId);
+        }
+        if (filter.filtersPurchases()) {
+            sql.append(" AND EXISTS (SELECT 1 FROM purchases p WHERE p.subscriber_id = s.id");
+            if (filter.productId() != null) {
+                sql.append(" AND p.product_id = ?");
+                args.add(filter.productId());
+            }
+            if (filter.purchasedFrom() != null) {
+                sql.append(" AND p.purchased_at >= ?");
+                args.add(toUtc(filter.purchasedFrom()));
+            }
+            if (filter.purchasedTo() != null) {
+                sql.append(" AND p.purchased_at < ?");
+                args.add(toUtc(filter.purchasedTo()));
+            }
+            sql.append(")");
+        }
+        sql.append(" ORDER BY s.created_at DESC, s.id DESC LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), SUMMARY_MAPPER, args.toArray());
+    }
+
+    // NUMERIC volta com a escala da coluna: 150.6 e 150.6000 são o mesmo preço
+    private static boolean sameValue(Object candidate, Object current) {
+        if (candidate instanceof BigDecimal a && current instanceof BigDecimal b) return a.compareTo(b) == 0;
+        return Objects.equals(candidate, current);
+    }
+
+    /*
+     * PostgreSQL: o DO UPDATE só reescreve as linhas em que algum campo muda; as demais não voltam
+     * no RETURNING e o SELECT externo (snapshot do início do comando) devolve o registro existente.
+     * xmax = 0 só na versão criada por um INSERT (o DO UPDATE grava o xid da transação em xmax).
+     * Tudo em um único round trip, qualquer que seja o número de linhas.
+     */
+    private static String postgresUpsert(int rows) {
+        return "WITH upserted AS (" +
+                "INSERT INTO subscribers (" + COLUMN_LIST + ") VALUES " + String.join(", ", Collections.nCopies(rows, PG_ROW)) +
+                " ON CONFLICT (email) DO UPDATE SET " + UPDATE_SET_PG + " WHERE " + UPDATE_CONDITION_PG +
+                " RETURNING *, (xmax = 0) AS inserted) " +
+                "SELECT * FROM upserted UNION ALL " +
+                "SELECT *, false AS inserted FROM subscribers WHERE email IN (" + placeholders(rows) + ")" +
+                " AND email NOT IN (SELECT email FROM upserted)";
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    // H2 (testes) não suporta ON CONFLICT ... DO UPDATE; MERGE + FINAL TABLE devolve as linhas afetadas
+    private static String h2Upsert(int rows) {
+        return "SELECT * FROM FINAL TABLE (MERGE INTO subscribers t USING (VALUES " +
+                String.join(", ", Collections.nCopies(rows, H2_ROW)) +
+                ") s(" + COLUMN_LIST + ") ON t.email = s.email " +
+                "WHEN MATCHED AND (" + UPDATE_CONDITION_H2 + ") THEN UPDATE SET " + UPDATE_SET_H2 + " " +
+                "WHEN NOT MATCHED THEN INSERT (" + COLUMN_LIST + ") VALUES (" +
+                COLUMNS.stream().map(c -> "s." + c.name()).collect(Collectors.joining(", ")) + "))";
+    }
+
+    private static int bind(PreparedStatement ps, int index, Subscriber candidate) throws SQLException {
+        for (Column column : COLUMNS) {
+            Object value = column.value().apply(candidate);
+            if (value == null) ps.setNull(index, column.sqlType());
+            else ps.setObject(index, value, column.sqlType());
+            index++;
+        }
+        return index;
+    }
+
+    private static Subscriber mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return Subscriber.builder()
+                .id(rs.getLong("id"))
+                .name(rs.getString("name"))
+                .email(rs.getString("email"))
+                .createdAt(fromUtc(rs.getObject("created_at", LocalDateTime.class)))
+                .provider(Provider.valueOf(rs.getString("provider")))
+                .firstName(rs.getString("first_name"))
+                .lastName(rs.getString("last_name"))
+                .phone(rs.getString("phone"))
+                .document(rs.getString("document"))
+                .zipcode(rs.getString("zipcode"))
+                .city(rs.getString("city"))
+                .state(rs.getString("state"))
+                .country(rs.getString("country"))
+                .productId(rs.getString("product_id"))
+                .productName(rs.getString("product_name"))
+                .transactionId(rs.getString("transaction_id"))
+                .price(rs.getBigDecimal("price"))
+                .currency(rs.getString("currency"))
+                .purchaseDate(fromUtc(rs.getObject("purchase_date", LocalDateTime.class)))
+                .fingerprint(rs.getObject("fingerprint", Long.class))
+                .build();
+    }
+
+    // Mesma convenção do Hibernate (hibernate.jdbc.time_zone=UTC) para colunas TIMESTAMP sem fuso
+    static LocalDateTime toUtc(Instant instant) {
+        return instant == null ? null : LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    private static Instant fromUtc(LocalDateTime value) {
+        return value == null ? null : value.toInstant(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,28 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.model.WebhookInboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WebhookInboxRepository extends JpaRepository<WebhookInboxMessage, Long> {
+
+    // SKIP LOCKED: workers concorrentes (inclusive em outras instâncias) pegam lotes disjuntos sem esperar
+    @Query(value = "SELECT * FROM webhook_inbox"
+            + " WHERE (status = 'PENDING' AND next_attempt_at <= :now)"
+            + " OR (status = 'PROCESSING' AND locked_until < :now)"
+            + " ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<WebhookInboxMessage> lockNextBatch(@Param("now") Instant now, @Param("limit") int limit);
+
+    long countByStatus(WebhookInboxMessage.Status status);
+
+    @Query("select min(m.receivedAt) from WebhookInboxMessage m where m.status in :statuses")
+    Optional<Instant> findOldestReceivedAt(@Param("statuses") Collection<WebhookInboxMessage.Status> statuses);
+}
@@ -0,0 +1,184 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.model.ClubSyncCheckpoint;
+import br.com.ecs.arquetipos.repository.ClubMemberRepository;
+import br.com.ecs.arquetipos.repository.ClubSyncCheckpointRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sincroniza periodicamente os membros do Club da Hotmart (subdomínio configurado) para a tabela
+ * club_members, que o EmailValidationService consulta antes de ir à Hotmart.
+ * Cada página é gravada junto com o checkpoint na mesma transação: uma execução interrompida
+ * retoma da última página confirmada, e linhas cujo status não mudou não são reescritas.
+ * Ao fim de uma execução completa, membros que não apareceram na listagem são marcados como INACTIVE.
+ * Roda em thread própria: a execução bloqueia a cada página e não pode ocupar o TaskScheduler
+ * compartilhado pelas demais tarefas @Scheduled.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(value = {"hotmart.enabled", "hotmart.sync.enabled"}, havingValue = "true")
+public class ClubMemberSyncService {
+
+    private final HotmartClient hotmartClient;
+    private final ClubMemberRepository clubMemberRepository;
+    private final ClubSyncCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String subdomain;
+    private final int pageSize;
+    private final Duration initialDelay;
+    private final Duration interval;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private ScheduledExecutorService scheduler;
+
+    public ClubMemberSyncService(HotmartClient hotmartClient,
+                                 ClubMemberRepository clubMemberRepository,
+                                 ClubSyncCheckpointRepository checkpointRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${hotmart.subdomain}") String subdomain,
+                                 @Value("${hotmart.sync.page-size:500}") int pageSize,
+                                 @Value("${hotmart.sync.initial-delay:PT1M}") Duration initialDelay,
+                                 @Value("${hotmart.sync.interval:PT30M}") Duration interval) {
+        this.hotmartClient = hotmartClient;
+        this.clubMemberRepository = clubMemberRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.subdomain = subdomain;
+        this.pageSize = pageSize;
+        this.initialDelay = initialDelay;
+        this.interval = interval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "club-member-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::scheduledSync, initialDelay.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        // Página interrompida não é confirmada; a próxima execução retoma do checkpoint
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    void scheduledSync() {
+        try {
+            sync();
+        } catch (Exception e) {
+            // O checkpoint já guarda a última página confirmada; a próxima execução continua dali
+            log.error("Falha no sync de membros do Club (subdomain={}): {}", subdomain, e.getMessage());
+        }
+    }
+
+    /**
+     * Executa (ou retoma) uma passada completa pela listagem de usuários do Club.
+     *
+     * @return quantidade de membros inseridos, com status alterado ou desativados nesta execução
+     */
+    public int sync() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Sync de membros do Club já em andamento, ignorando disparo");
+            return 0;
+        }
+        try {
+            ClubSyncCheckpoint checkpoint = checkpointRepository.findById(subdomain)
+                    .orElseGet(() -> ClubSyncCheckpoint.builder().subdomain(subdomain).build());
+
+            if (checkpoint.getNextPageToken() == null) {
+                checkpoint.setRunStartedAt(Instant.now());
+                checkpoint.setPagesSynced(0);
+                checkpoint.setMembersSynced(0);
+            } else {
+                log.info("Retomando sync de membros do Club a partir da página {}", checkpoint.getPagesSynced() + 1);
+            }
+
+            int changed = 0;
+            int deactivated = 0;
+            String pageToken = checkpoint.getNextPageToken();
+            do {
+                JsonNode page = hotmartClient.getClubUsersPage(pageToken, pageSize).block();
+                Map<String, String> statusByEmail = extractStatuses(page);
+                pageToken = nextPageToken(page);
+
+                checkpoint.setNextPageToken(pageToken);
+                checkpoint.setPagesSynced(checkpoint.getPagesSynced() + 1);
+                checkpoint.setMembersSynced(checkpoint.getMembersSynced() + statusByEmail.size());
+                if (pageToken == null) {
+                    checkpoint.setLastCompletedAt(checkpoint.getRunStartedAt());
+                }
+
+                boolean lastPage = pageToken == null;
+                int[] pageCounts = transactionTemplate.execute(status -> {
+                    Instant now = Instant.now();
+                    int count = clubMemberRepository.upsertStatuses(subdomain, statusByEmail, checkpoint.getRunStartedAt(), now);
+                    int removed = lastPage ? deactivateMissing(checkpoint, now) : 0;
+                    checkpointRepository.save(checkpoint);
+                    return new int[]{count, removed};
+                });
+                if (pageCounts != null) {
+                    changed += pageCounts[0];
+                    deactivated += pageCounts[1];
+                }
+            } while (pageToken != null);
+
+            log.info("Sync de membros do Club concluído: {} páginas, {} membros, {} alterados, {} desativados",
+                    checkpoint.getPagesSynced(), checkpoint.getMembersSynced(), changed, deactivated);
+            return changed + deactivated;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // Roda na transação da última página, junto com o lastCompletedAt do checkpoint
+    private int deactivateMissing(ClubSyncCheckpoint checkpoint, Instant now) {
+        if (checkpoint.getMembersSynced() == 0) {
+            // Listagem vazia de ponta a ponta é mais provável falha da API do que um Club sem membros
+            log.warn("Sync de membros do Club terminou sem nenhum membro; desativação ignorada");
+            return 0;
+        }
+        return clubMemberRepository.deactivateNotSeenSince(subdomain, checkpoint.getRunStartedAt(), now);
+    }
+
+    private Map<String, String> extractStatuses(JsonNode page) {
+        Map<String, String> statusByEmail = new LinkedHashMap<>();
+        if (page == null || !page.has("items")) return statusByEmail;
+
+        for (JsonNode user : page.get("items")) {
+            String email = user.path("email").asText(null);
+            String status = user.path("status").asText(null);
+            if (email == null || email.isBlank() || status == null) continue;
+            statusByEmail.put(ValidationResultCache.normalize(email), status);
+        }
+        return statusByEmail;
+    }
+
+    private String nextPageToken(JsonNode page) {
+        if (page == null) return null;
+        String token = page.path("page_info").path("next_page_token").asText(null);
+        return token == null || token.isBlank() ? null : token;
+    }
+}
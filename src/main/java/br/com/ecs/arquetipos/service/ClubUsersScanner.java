@@ -0,0 +1,114 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.ClubMembership;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Lê a resposta de /club/api/v1/users token a token, sem montar a árvore JSON, e para de
+ * interpretar assim que encontra um item com {@code "status": "ACTIVE"}. Recebe os pedaços do
+ * corpo conforme chegam da rede (parser não bloqueante); uma instância por resposta.
+ */
+class ClubUsersScanner {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // Profundidades: 1 = objeto raiz, 2 = array items, 3 = cada usuário
+    private static final int ROOT = 1;
+    private static final int ITEMS = 2;
+    private static final int USER = 3;
+
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+
+    private int depth;
+    private boolean itemsFieldSeen;
+    private boolean inItems;
+    private boolean statusFieldSeen;
+    private int entriesScanned;
+    private boolean active;
+
+    ClubUsersScanner() {
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Consome mais um pedaço do corpo.
+     *
+     * @return {@code true} quando o resultado já está decidido e o restante pode ser descartado
+     */
+    boolean feed(ByteBuffer chunk) {
+        if (active) return true;
+        try {
+            feeder.feedInput(chunk);
+            return drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    ClubMembership finish() {
+        try {
+            if (!active) {
+                feeder.endOfInput();
+                drain();
+            }
+            parser.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new ClubMembership(active, entriesScanned);
+    }
+
+    private boolean drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (onToken(token)) {
+                active = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean onToken(JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT, START_ARRAY -> {
+                depth++;
+                if (itemsFieldSeen && depth == ITEMS && token == JsonToken.START_ARRAY) {
+                    inItems = true;
+                } else if (inItems && depth == USER && token == JsonToken.START_OBJECT) {
+                    entriesScanned++;
+                }
+                itemsFieldSeen = false;
+                statusFieldSeen = false;
+            }
+            case END_OBJECT, END_ARRAY -> {
+                depth--;
+                if (depth < ITEMS) inItems = false;
+            }
+            case FIELD_NAME -> {
+                itemsFieldSeen = depth == ROOT && "items".equals(parser.currentName());
+                statusFieldSeen = inItems && depth == USER && "status".equals(parser.currentName());
+            }
+            default -> {
+                boolean found = statusFieldSeen && token == JsonToken.VALUE_STRING && "ACTIVE".equals(parser.getText());
+                itemsFieldSeen = false;
+                statusFieldSeen = false;
+                return found;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.EduzzWebhookPayload;
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.PurchaseStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+
+@Component
+public class EduzzWebhookAdapter implements WebhookProviderAdapter<EduzzWebhookPayload> {
+
+    @Value("${webhook.providers.eduzz.signature-header:X-Eduzz-Signature}")
+    private String signatureHeader = "X-Eduzz-Signature";
+
+    @Override
+    public Provider provider() {
+        return Provider.EDUZZ;
+    }
+
+    @Override
+    public String signatureHeader() {
+        return signatureHeader;
+    }
+
+    @Override
+    public Class<EduzzWebhookPayload> payloadType() {
+        return EduzzWebhookPayload.class;
+    }
+
+    @Override
+    public WebhookRequest toRequest(EduzzWebhookPayload payload) {
+        if (payload == null) throw new IllegalArgumentException("Email not found in webhook payload");
+
+        EduzzWebhookPayload.Invoice invoice = payload.getData();
+        EduzzWebhookPayload.Buyer buyer = invoice != null && invoice.getBuyer() != null ? invoice.getBuyer() : payload.getCustomer();
+        String email = buyer != null && buyer.getEmail() != null ? buyer.getEmail() : payload.getEmail();
+        String name = buyer != null && buyer.getName() != null ? buyer.getName() : payload.getName();
+
+        // Mesmas regras do endpoint genérico: nome obrigatório e email em formato válido
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Name is required");
+        }
+        if (email == null || email.isBlank()) {
+            throw new IllegalArgumentException("Email not found in webhook payload");
+        }
+        if (!WebhookProviderAdapter.isValidEmail(email)) {
+            throw new IllegalArgumentException("Invalid email format");
+        }
+
+        WebhookRequest req = new WebhookRequest();
+        req.setEmail(email);
+        req.setName(name);
+        req.setFirstName(buyer != null && buyer.getFirstName() != null ? buyer.getFirstName() : payload.getFirstName());
+        req.setLastName(buyer != null && buyer.getLastName() != null ? buyer.getLastName() : payload.getLastName());
+        if (buyer != null) {
+            req.setPhone(buyer.getCellphone() != null ? buyer.getCellphone() : buyer.getPhone());
+            req.setDocument(buyer.getDocument());
+            EduzzWebhookPayload.Address addr = buyer.getAddress();
+            if (addr != null) {
+                req.setZipcode(addr.getZipCode());
+                req.setCity(addr.getCity());
+                req.setState(addr.getState());
+                req.setCountry(addr.getCountry());
+            }
+        }
+        req.setPurchaseStatus(purchaseStatus(invoice != null ? invoice.getStatus() : null, payload.getEvent()));
+        if (invoice != null) {
+            req.setTransactionId(invoice.getId());
+            req.setPurchaseDate(invoice.getPaidAt());
+            List<EduzzWebhookPayload.Item> items = invoice.getItems();
+            if (items != null && !items.isEmpty()) {
+                req.setProductId(items.get(0).getProductId());
+                req.setProductName(items.get(0).getName());
+            }
+            EduzzWebhookPayload.Price price = invoice.getPrice();
+            if (price != null) {
+                req.setPrice(price.getValue());
+                req.setCurrency(price.getCurrency());
+            }
+        }
+        return req;
+    }
+
+    // Status da fatura quando presente, senão o sufixo do evento (myeduzz.invoice_<status>)
+    public static PurchaseStatus purchaseStatus(String invoiceStatus, String event) {
+        String status = invoiceStatus;
+        if ((status == null || status.isBlank()) && event != null) {
+            int separator = event.lastIndexOf("invoice_");
+            status = separator >= 0 ? event.substring(separator + "invoice_".length()) : null;
+        }
+        if (status == null || status.isBlank()) return PurchaseStatus.APPROVED;
+        return switch (status.toLowerCase(Locale.ROOT)) {
+            case "paid", "approved" -> PurchaseStatus.APPROVED;
+            case "refunded" -> PurchaseStatus.REFUNDED;
+            case "chargeback" -> PurchaseStatus.CHARGEBACK;
+            case "canceled", "cancelled", "expired" -> PurchaseStatus.CANCELED;
+            default -> PurchaseStatus.PENDING;
+        };
+    }
+}
@@ -1,51 +1,231 @@
 package br.com.ecs.arquetipos.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import lombok.RequiredArgsConstructor;
+import br.com.ecs.arquetipos.dto.ClubMembership;
+import br.com.ecs.arquetipos.dto.EmailValidationResult;
+import br.com.ecs.arquetipos.exception.HotmartAPIException;
+import br.com.ecs.arquetipos.exception.HotmartRateLimitedException;
+import br.com.ecs.arquetipos.exception.HotmartUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import br.com.ecs.arquetipos.model.ClubMember;
+import br.com.ecs.arquetipos.repository.ClubMemberRepository;
 import br.com.ecs.arquetipos.repository.SubscriberRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class EmailValidationService {
 
-    private final Optional<HotmartClient> hotmartClient;
+    private static final String ACTIVE = "ACTIVE";
+
+    private final Optional<HotmartLookupCoalescer> hotmartLookups;
     private final SubscriberRepository subscriberRepository;
+    private final ClubMemberRepository clubMemberRepository;
+    private final ValidationResultCache resultCache;
+    private final Scheduler jdbcScheduler;
+    // Máximo de consultas simultâneas à Hotmart por requisição de validação em lote
+    private final int batchConcurrency;
+    // Subdomínio do Club sincronizado em club_members pelo ClubMemberSyncService
+    private final String subdomain;
 
+    public EmailValidationService(Optional<HotmartLookupCoalescer> hotmartLookups,
+                                  SubscriberRepository subscriberRepository,
+                                  ClubMemberRepository clubMemberRepository,
+                                  ValidationResultCache resultCache,
+                                  Scheduler jdbcScheduler,
+                                  @Value("${validation.batch.concurrency:8}") int batchConcurrency,
+                                  @Value("${hotmart.subdomain:}") String subdomain) {
+        this.hotmartLookups = hotmartLookups;
+        this.subscriberRepository = subscriberRepository;
+        this.clubMemberRepository = clubMemberRepository;
+        this.resultCache = resultCache;
+        this.jdbcScheduler = jdbcScheduler;
+        this.batchConcurrency = batchConcurrency;
+        this.subdomain = subdomain;
+    }
+
+    // Variante bloqueante mantida por compatibilidade; não chamar a partir de threads do Reactor
     public boolean isUserActiveStudent(String email) {
+        return Boolean.TRUE.equals(checkActiveStudent(email).block());
+    }
+
+    public Mono<Boolean> checkActiveStudent(String email) {
+        return validate(email).map(result -> Boolean.TRUE.equals(result.getStudent()));
+    }
+
+    /**
+     * Pipeline não bloqueante: cache em memória, depois o banco local (isolado no scheduler JDBC)
+     * e, por fim, a Hotmart. Nenhuma thread fica presa aguardando a resposta HTTP.
+     * Se a Hotmart estiver indisponível (circuit breaker aberto), devolve o último resultado
+     * conhecido marcado como stale.
+     */
+    public Mono<EmailValidationResult> validate(String email) {
+        if (email == null || email.isBlank()) return Mono.just(EmailValidationResult.success(email, false));
+
+        return Mono.defer(() -> {
+            // Resultados recentes (positivos, negativos e erros) são servidos do cache
+            ValidationResultCache.Entry cached = resultCache.get(email);
+            if (cached != null) {
+                return Mono.fromCallable(() -> EmailValidationResult.success(email, cached.resolve()));
+            }
+
+            long cacheVersion = resultCache.version();
+            return lookup(email)
+                    .doOnNext(active -> resultCache.put(email, active, cacheVersion))
+                    .doOnError(e -> isCacheableError(e), e -> resultCache.putError(email, (RuntimeException) e, cacheVersion))
+                    .map(active -> EmailValidationResult.success(email, active))
+                    .onErrorResume(HotmartUnavailableException.class, e -> fallbackToLastKnown(email, e));
+        });
+    }
+
+    /**
+     * Validação em lote: respostas em cache saem primeiro, os demais emails são resolvidos no banco
+     * com uma única consulta IN e apenas os que faltarem vão à Hotmart, com concorrência limitada.
+     * Cada resultado é emitido assim que fica pronto; falhas individuais não interrompem o lote.
+     */
+    public Flux<EmailValidationResult> checkActiveStudents(List<String> emails) {
+        return Flux.defer(() -> {
+            List<EmailValidationResult> cachedResults = new ArrayList<>();
+            List<String> pending = new ArrayList<>();
+            for (String email : new LinkedHashSet<>(emails)) {
+                if (email == null || email.isBlank()) continue;
+                ValidationResultCache.Entry cached = resultCache.get(email);
+                if (cached == null) {
+                    pending.add(email);
+                } else if (cached.outcome() == ValidationResultCache.Outcome.ERROR) {
+                    cachedResults.add(EmailValidationResult.error(email, errorCode(cached.error())));
+                } else {
+                    cachedResults.add(EmailValidationResult.success(email, cached.resolve()));
+                }
+            }
+            if (pending.isEmpty()) {
+                return Flux.fromIterable(cachedResults);
+            }
+
+            long cacheVersion = resultCache.version();
+            Flux<EmailValidationResult> resolved = Mono
+                    .fromCallable(() -> resolveLocally(pending))
+                    .subscribeOn(jdbcScheduler)
+                    .flatMapMany(local -> Flux.concat(
+                            Flux.fromIterable(pending)
+                                    .filter(local::containsKey)
+                                    .map(email -> {
+                                        boolean active = local.get(email);
+                                        resultCache.put(email, active, cacheVersion);
+                                        return EmailValidationResult.success(email, active);
+                                    }),
+                            Flux.fromIterable(pending)
+                                    .filter(email -> !local.containsKey(email))
+                                    .flatMap(email -> checkRemote(email, cacheVersion)
+                                            .map(active -> EmailValidationResult.success(email, active))
+                                            .onErrorResume(HotmartUnavailableException.class, e -> fallbackToLastKnown(email, e))
+                                            .onErrorResume(e -> {
+                                                log.warn("Falha ao validar email {} no lote: {}", email, e.getMessage());
+                                                return Mono.just(EmailValidationResult.error(email, errorCode(e)));
+                                            }), batchConcurrency)
+                    ));
+            return Flux.concat(Flux.fromIterable(cachedResults), resolved);
+        });
+    }
+
+    private Mono<Boolean> lookup(String email) {
         // Primeiro verifica no nosso banco de dados local
-        if (email == null || email.isBlank()) return false;
+        return Mono.fromCallable(() -> resolveLocally(email))
+                .subscribeOn(jdbcScheduler)
+                .flatMap(local -> local.map(Mono::just).orElseGet(() -> checkHotmart(email)));
+    }
 
+    /**
+     * Resposta definitiva a partir do banco local, se houver: membro ativo do Club ou subscriber
+     * conhecido => true; membro sincronizado porém inativo => false; caso contrário, vazio
+     * (o email precisa ser consultado na Hotmart).
+     */
+    private Optional<Boolean> resolveLocally(String email) {
+        Optional<String> memberStatus = clubMemberRepository.findStatus(subdomain, ValidationResultCache.normalize(email));
+        if (memberStatus.filter(ACTIVE::equals).isPresent()) {
+            return Optional.of(true);
+        }
         if (subscriberRepository.findByEmail(email).isPresent()) {
-            return true;
+            return Optional.of(true);
         }
+        return memberStatus.map(status -> false);
+    }
 
-        // Se não houver HotmartClient (ex.: em testes de integração simples), retornamos false
-        if (hotmartClient.isEmpty()) return false;
+    // Mesma regra de resolveLocally, com uma consulta IN por tabela para o lote inteiro
+    private Map<String, Boolean> resolveLocally(List<String> emails) {
+        Map<String, String> memberStatus = new HashMap<>();
+        List<String> normalized = emails.stream().map(ValidationResultCache::normalize).distinct().toList();
+        for (ClubMember member : clubMemberRepository.findBySubdomainAndEmailIn(subdomain, normalized)) {
+            memberStatus.put(member.getEmail(), member.getStatus());
+        }
 
-        try {
-            JsonNode result = hotmartClient.get().getClubUsers(email).block();
+        Map<String, Boolean> resolved = new HashMap<>();
+        List<String> remaining = new ArrayList<>();
+        for (String email : emails) {
+            if (ACTIVE.equals(memberStatus.get(ValidationResultCache.normalize(email)))) resolved.put(email, true);
+            else remaining.add(email);
+        }
+        if (remaining.isEmpty()) return resolved;
 
-            if (result == null || !result.has("items")) {
-                return false;
-            }
+        Set<String> subscribers = new HashSet<>(subscriberRepository.findExistingEmails(remaining));
+        for (String email : remaining) {
+            if (subscribers.contains(email)) resolved.put(email, true);
+            else if (memberStatus.containsKey(ValidationResultCache.normalize(email))) resolved.put(email, false);
+        }
+        return resolved;
+    }
 
-            ArrayNode users = (ArrayNode) result.get("items");
-            if (users.isEmpty()) {
-                return false;
-            }
+    private Mono<Boolean> checkRemote(String email, long cacheVersion) {
+        return checkHotmart(email)
+                .doOnNext(active -> resultCache.put(email, active, cacheVersion))
+                .doOnError(e -> isCacheableError(e), e -> resultCache.putError(email, (RuntimeException) e, cacheVersion));
+    }
 
-            for (JsonNode user : users) {
-                if (user.has("status") && "ACTIVE".equals(user.get("status").asText())) {
-                    return true;
-                }
-            }
+    // Rejeições locais (breaker aberto/bulkhead cheio/rate limiter sem ficha) não são cacheadas: falham rápido
+    // por si só, e cachear a de rate limit prenderia o email no erro depois que a cota voltasse
+    private boolean isCacheableError(Throwable e) {
+        return e instanceof RuntimeException
+                && !(e instanceof HotmartUnavailableException)
+                && !(e instanceof HotmartRateLimitedException);
+    }
+
+    private Mono<EmailValidationResult> fallbackToLastKnown(String email, HotmartUnavailableException e) {
+        Boolean lastKnown = resultCache.lastKnownGood(email);
+        if (lastKnown == null) {
+            return Mono.error(e);
+        }
+        log.warn("Hotmart indisponível, respondendo {} com o último resultado conhecido", email);
+        return Mono.just(EmailValidationResult.stale(email, lastKnown));
+    }
+
+    private Mono<Boolean> checkHotmart(String email) {
+        // Se não houver HotmartClient (ex.: em testes de integração simples), retornamos false
+        if (hotmartLookups.isEmpty()) return Mono.just(false);
+
+        // Chamadas concorrentes para o mesmo email compartilham uma única requisição à Hotmart
+        return hotmartLookups.get().getClubMembership(email)
+                .map(ClubMembership::active)
+                .defaultIfEmpty(false);
+    }
 
-            return false;
-        } catch (Exception e) {
-            throw e;
+    // Mesmos códigos usados pelo GlobalExceptionHandler nas respostas individuais
+    private String errorCode(Throwable e) {
+        if (e instanceof HotmartAPIException hotmartError) {
+            return hotmartError.getStatus() == HttpStatus.TOO_MANY_REQUESTS ? "RATE_LIMIT" : "HOTMART_API_ERROR";
         }
+        return "INTERNAL_ERROR";
     }
-}
\ No newline at end of file
+}
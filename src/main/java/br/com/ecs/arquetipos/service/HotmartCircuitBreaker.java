@@ -0,0 +1,151 @@
+package br.com.ecs.arquetipos.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker baseado em contagem para as chamadas à Hotmart.
+ * Abre quando a taxa de falhas nas últimas N chamadas passa do limite, rejeita chamadas enquanto
+ * aberto e, após o tempo de espera, libera uma única chamada de teste (meio-aberto).
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(value = "hotmart.enabled", havingValue = "true")
+public class HotmartCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final LongSupplier nanoClock;
+
+    // Janela circular com o resultado das últimas chamadas (true = falha)
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInProgress;
+
+    @Autowired
+    public HotmartCircuitBreaker(@Value("${hotmart.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+                                 @Value("${hotmart.circuit-breaker.sliding-window-size:20}") int slidingWindowSize,
+                                 @Value("${hotmart.circuit-breaker.minimum-calls:10}") int minimumCalls,
+                                 @Value("${hotmart.circuit-breaker.open-duration:30s}") Duration openDuration,
+                                 MeterRegistry meterRegistry) {
+        this(failureRateThreshold, slidingWindowSize, minimumCalls, openDuration, System::nanoTime);
+        Gauge.builder("hotmart.circuit_breaker.state", this, cb -> cb.getState().ordinal())
+                .description("Estado do circuit breaker da Hotmart (0=fechado, 1=aberto, 2=meio-aberto)")
+                .register(meterRegistry);
+    }
+
+    HotmartCircuitBreaker(int failureRateThreshold, int slidingWindowSize, int minimumCalls,
+                          Duration openDuration, LongSupplier nanoClock) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.window = new boolean[slidingWindowSize];
+        this.minimumCalls = Math.min(minimumCalls, slidingWindowSize);
+        this.openDurationNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Solicita permissão para uma chamada. Quando liberada, o chamador deve informar o desfecho com
+     * {@link #onSuccess()}, {@link #onFailure()} ou {@link #onIgnored()}.
+     */
+    public synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nanoClock.getAsLong() - openedAt < openDurationNanos) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                trialInProgress = true;
+                return true;
+            default:
+                if (trialInProgress) {
+                    return false;
+                }
+                trialInProgress = true;
+                return true;
+        }
+    }
+
+    // Segundos restantes até a próxima tentativa (usado como Retry-After)
+    public synchronized int secondsUntilRetry() {
+        if (state != State.OPEN) return 0;
+        long remaining = openDurationNanos - (nanoClock.getAsLong() - openedAt);
+        return (int) Math.max(1, Duration.ofNanos(remaining).toSeconds());
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record(true);
+        if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    // Chamada cancelada ou encerrada por erro que não indica falha da Hotmart (ex.: 4xx)
+    public synchronized void onIgnored() {
+        trialInProgress = false;
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) windowFailures--;
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) windowFailures++;
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(State newState) {
+        if (state != newState) {
+            log.warn("Circuit breaker da Hotmart: {} -> {}", state, newState);
+        }
+        state = newState;
+        trialInProgress = false;
+        if (newState == State.OPEN) {
+            openedAt = nanoClock.getAsLong();
+        }
+        if (newState == State.CLOSED) {
+            windowIndex = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+    }
+}
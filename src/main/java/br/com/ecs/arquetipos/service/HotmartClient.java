@@ -1,21 +1,39 @@
 package br.com.ecs.arquetipos.service;
 
 
+import br.com.ecs.arquetipos.dto.ClubMembership;
 import br.com.ecs.arquetipos.exception.HotmartAPIException;
+import br.com.ecs.arquetipos.exception.HotmartRateLimitedException;
+import br.com.ecs.arquetipos.exception.HotmartUnavailableException;
 import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
@@ -27,28 +45,105 @@ public class HotmartClient {
     private final String authUrl;
     private final String basicAuth;
     private final String subdomain;
+    private final Duration refreshAhead;
+    private final HotmartCircuitBreaker circuitBreaker;
+    private final HotmartRateLimiter rateLimiter;
+    private final Retry retrySpec;
+    // Bulkhead: limita as chamadas simultâneas à Hotmart; excedentes falham na hora
+    private final Semaphore bulkhead;
 
-    // Cache para o Access Token
-    private String accessToken;
-    private Instant tokenExpiresAt = Instant.MIN;
+    // Token atual, trocado atomicamente: leitores nunca veem token e expiração inconsistentes
+    private final AtomicReference<AccessToken> currentToken = new AtomicReference<>();
+    // Renovação em andamento, compartilhada por todos que encontrarem o token expirado
+    private final AtomicReference<Mono<AccessToken>> refreshInFlight = new AtomicReference<>();
 
-    public HotmartClient(WebClient.Builder webClientBuilder,
+    public HotmartClient(WebClient hotmartWebClient,
+                         HotmartCircuitBreaker circuitBreaker,
+                         HotmartRateLimiter rateLimiter,
+                         MeterRegistry meterRegistry,
                          @Value("${hotmart.api-url}") String apiUrl,
                          @Value("${hotmart.auth-url}") String authUrl,
                          @Value("${hotmart.basic-auth}") String basicAuth,
-                         @Value("${hotmart.subdomain}") String subdomain) {
-        this.webClient = webClientBuilder.build();
+                         @Value("${hotmart.subdomain}") String subdomain,
+                         @Value("${hotmart.token.refresh-ahead:5m}") Duration refreshAhead,
+                         @Value("${hotmart.retry.max-attempts:2}") int retryMaxAttempts,
+                         @Value("${hotmart.retry.min-backoff:200ms}") Duration retryMinBackoff,
+                         @Value("${hotmart.retry.max-backoff:2s}") Duration retryMaxBackoff,
+                         @Value("${hotmart.bulkhead.max-concurrent-calls:20}") int maxConcurrentCalls) {
+        this.webClient = hotmartWebClient;
         this.apiUrl = apiUrl;
         this.authUrl = authUrl;
         this.basicAuth = basicAuth;
         this.subdomain = subdomain;
+        this.refreshAhead = refreshAhead;
+        this.circuitBreaker = circuitBreaker;
+        this.rateLimiter = rateLimiter;
+        // Backoff exponencial com jitter, apenas para GETs (idempotentes) com 5xx ou falha de I/O
+        this.retrySpec = Retry.backoff(retryMaxAttempts, retryMinBackoff)
+                .maxBackoff(retryMaxBackoff)
+                .jitter(0.5)
+                .filter(HotmartClient::isTransientFailure)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        Gauge.builder("hotmart.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("Chamadas simultâneas à Hotmart ainda disponíveis no bulkhead")
+                .register(meterRegistry);
+    }
+
+    private record AccessToken(String value, Instant expiresAt) {
+        boolean isValidAt(Instant instant) {
+            return instant.isBefore(expiresAt);
+        }
     }
 
     private Mono<String> getAccessToken() {
-        if (accessToken != null && Instant.now().isBefore(tokenExpiresAt)) {
-            return Mono.just(accessToken);
+        AccessToken token = currentToken.get();
+        if (token != null && token.isValidAt(Instant.now())) {
+            return Mono.just(token.value());
+        }
+        return refreshToken().map(AccessToken::value);
+    }
+
+    /**
+     * Renova o token em segundo plano antes da expiração, para que nenhuma requisição de usuário
+     * precise esperar pelo round trip do OAuth. Também obtém o primeiro token logo na inicialização.
+     * Só dispara a renovação (compartilhada com quem precisar do token nesse meio tempo): a thread
+     * do scheduler não fica presa esperando a Hotmart.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${hotmart.token.renewal-check-interval:PT30S}")
+    public void renewTokenIfNeeded() {
+        AccessToken token = currentToken.get();
+        if (token != null && token.isValidAt(Instant.now().plus(refreshAhead))) {
+            return;
         }
+        // Mantém o token atual (se ainda válido) em caso de falha; a próxima execução tenta de novo
+        refreshToken().subscribe(
+                renewed -> log.debug("Token da Hotmart renovado em segundo plano"),
+                e -> log.warn("Falha ao renovar token da Hotmart em segundo plano: {}", e.getMessage()));
+    }
+
+    // Single-flight: apenas uma requisição ao /security/oauth/token por vez
+    private Mono<AccessToken> refreshToken() {
+        return Mono.defer(() -> {
+            while (true) {
+                Mono<AccessToken> inFlight = refreshInFlight.get();
+                if (inFlight != null) {
+                    return inFlight;
+                }
+                AtomicReference<Mono<AccessToken>> self = new AtomicReference<>();
+                Mono<AccessToken> call = requestAccessToken()
+                        .doOnNext(currentToken::set)
+                        .doFinally(signal -> refreshInFlight.compareAndSet(self.get(), null))
+                        .cache();
+                self.set(call);
+                if (refreshInFlight.compareAndSet(null, call)) {
+                    return call;
+                }
+            }
+        });
+    }
 
+    private Mono<AccessToken> requestAccessToken() {
         String url = authUrl + "/security/oauth/token";
         MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
         formData.add("grant_type", "client_credentials");
@@ -69,34 +164,143 @@ public class HotmartClient {
                 )
                 .bodyToMono(JsonNode.class)
                 .map(tokenData -> {
-                    this.accessToken = tokenData.get("access_token").asText();
+                    String value = tokenData.get("access_token").asText();
                     long expiresIn = tokenData.get("expires_in").asLong(3600);
-                    this.tokenExpiresAt = Instant.now().plusSeconds(expiresIn - 60); // 60s de margem
+                    Instant expiresAt = Instant.now().plusSeconds(expiresIn - 60); // 60s de margem
                     log.info("Successfully retrieved new Hotmart access token.");
-                    return this.accessToken;
+                    return new AccessToken(value, expiresAt);
                 });
     }
 
-    public Mono<JsonNode> getClubUsers(String email) {
-        return getAccessToken().flatMap(token -> {
-
-            return webClient.get()
-                    .uri(apiUrl, uriBuilder -> uriBuilder
-                            .path("/club/api/v1/users")
-                            .queryParam("subdomain", subdomain)
-                            .queryParam("email", email)
-                            .build())
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
-                    .retrieve()
-                    .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(), response ->
-                            response.bodyToMono(String.class)
-                                    .flatMap(body -> Mono.error(new HotmartAPIException(
-                                            "Hotmart API error on getClubUsers: " + body,
-                                            HttpStatus.valueOf(response.statusCode().value()),
-                                            body
-                                    )))
-                    )
-                    .bodyToMono(JsonNode.class);
+    /**
+     * Consulta as associações de um email ao Club. O corpo é lido em streaming pelo
+     * {@link ClubUsersScanner}, que para de interpretar no primeiro item ativo; os pedaços restantes
+     * são apenas liberados (sem cancelar a resposta), para que a conexão volte ao pool.
+     */
+    public Mono<ClubMembership> getClubMembership(String email) {
+        return guarded(() -> getAccessToken().flatMap(token -> rateLimited(() ->
+                webClient.get()
+                        .uri(apiUrl, uriBuilder -> uriBuilder
+                                .path("/club/api/v1/users")
+                                .queryParam("subdomain", subdomain)
+                                .queryParam("email", email)
+                                .build())
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .retrieve()
+                        .onStatus(status -> status.value() == HttpStatus.TOO_MANY_REQUESTS.value(), this::rateLimitError)
+                        .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(), response ->
+                                response.bodyToMono(String.class)
+                                        .flatMap(body -> Mono.error(new HotmartAPIException(
+                                                "Hotmart API error on getClubUsers: " + body,
+                                                HttpStatus.valueOf(response.statusCode().value()),
+                                                body
+                                        )))
+                        )
+                        .bodyToFlux(DataBuffer.class)
+                        .as(HotmartClient::scanClubUsers)
+        ).retryWhen(retrySpec)));
+    }
+
+    static Mono<ClubMembership> scanClubUsers(Flux<DataBuffer> body) {
+        return Mono.defer(() -> {
+            ClubUsersScanner scanner = new ClubUsersScanner();
+            return body
+                    .doOnNext(buffer -> {
+                        try (DataBuffer.ByteBufferIterator chunks = buffer.readableByteBuffers()) {
+                            while (chunks.hasNext() && !scanner.feed(chunks.next())) {
+                                // continua até decidir ou esgotar o pedaço
+                            }
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(scanner::finish));
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Página da listagem completa de usuários do Club (usada pelo sync em lote).
+     * A resposta traz {@code items} e {@code page_info.next_page_token}.
+     */
+    public Mono<JsonNode> getClubUsersPage(String pageToken, int maxResults) {
+        return guarded(() -> getAccessToken().flatMap(token -> rateLimited(() ->
+                webClient.get()
+                        .uri(apiUrl, uriBuilder -> {
+                            uriBuilder.path("/club/api/v1/users")
+                                    .queryParam("subdomain", subdomain)
+                                    .queryParam("max_results", maxResults);
+                            if (pageToken != null) uriBuilder.queryParam("page_token", pageToken);
+                            return uriBuilder.build();
+                        })
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .retrieve()
+                        .onStatus(status -> status.value() == HttpStatus.TOO_MANY_REQUESTS.value(), this::rateLimitError)
+                        .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(), response ->
+                                response.bodyToMono(String.class)
+                                        .flatMap(body -> Mono.error(new HotmartAPIException(
+                                                "Hotmart API error on getClubUsersPage: " + body,
+                                                HttpStatus.valueOf(response.statusCode().value()),
+                                                body
+                                        )))
+                        )
+                        .bodyToMono(JsonNode.class)
+        ).retryWhen(retrySpec)));
+    }
+
+    /**
+     * Consome uma ficha do rate limiter antes de cada requisição (inclusive retries). Sem ficha,
+     * falha localmente com 429 e o retryAfter exato, sem gastar cota numa chamada fadada a falhar.
+     */
+    private <T> Mono<T> rateLimited(Supplier<Mono<T>> request) {
+        return Mono.defer(() -> {
+            int waitSeconds = rateLimiter.tryAcquire();
+            if (waitSeconds > 0) {
+                return Mono.error(new HotmartRateLimitedException("Hotmart rate limit reached (local)", waitSeconds));
+            }
+            return request.get();
+        });
+    }
+
+    // 429 da Hotmart: pausa o rate limiter pelo Retry-After e repassa o tempo ao chamador
+    private Mono<? extends Throwable> rateLimitError(ClientResponse response) {
+        int retryAfter = rateLimiter.onRateLimited(response.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        return response.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .map(body -> new HotmartAPIException("Hotmart API rate limit: " + body,
+                        HttpStatus.TOO_MANY_REQUESTS, body, retryAfter));
+    }
+
+    /**
+     * Aplica bulkhead e circuit breaker a uma chamada. Rejeições locais viram
+     * {@link HotmartUnavailableException} sem enviar nada à Hotmart.
+     */
+    private <T> Mono<T> guarded(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            if (!bulkhead.tryAcquire()) {
+                return Mono.error(new HotmartUnavailableException("Hotmart bulkhead is full", 1));
+            }
+            if (!circuitBreaker.tryAcquirePermission()) {
+                bulkhead.release();
+                return Mono.error(new HotmartUnavailableException("Hotmart circuit breaker is open",
+                        circuitBreaker.secondsUntilRetry()));
+            }
+            return call.get()
+                    .doOnSuccess(value -> circuitBreaker.onSuccess())
+                    .doOnError(e -> {
+                        if (isTransientFailure(e)) circuitBreaker.onFailure();
+                        else circuitBreaker.onIgnored();
+                    })
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) circuitBreaker.onIgnored();
+                        bulkhead.release();
+                    });
+        });
+    }
+
+    // Falhas que indicam indisponibilidade da Hotmart: 5xx, timeouts e erros de conexão
+    private static boolean isTransientFailure(Throwable e) {
+        if (e instanceof HotmartUnavailableException) return false;
+        if (e instanceof HotmartAPIException hotmartError) return hotmartError.getStatus().is5xxServerError();
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+}
@@ -0,0 +1,74 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.ClubMembership;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Agrupa consultas concorrentes ao endpoint de usuários do Club por email normalizado:
+ * enquanto houver uma chamada em andamento para o mesmo email, os demais chamadores
+ * recebem o mesmo resultado em vez de disparar uma nova requisição à Hotmart.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(value = "hotmart.enabled", havingValue = "true")
+public class HotmartLookupCoalescer {
+
+    private final HotmartClient hotmartClient;
+    private final ConcurrentMap<String, Mono<ClubMembership>> inFlight = new ConcurrentHashMap<>();
+    private final Counter outboundCalls;
+    private final Counter coalescedCalls;
+
+    public HotmartLookupCoalescer(HotmartClient hotmartClient, MeterRegistry meterRegistry) {
+        this.hotmartClient = hotmartClient;
+        this.outboundCalls = Counter.builder("hotmart.club.lookups")
+                .description("Consultas de usuários do Club por tipo de atendimento")
+                .tag("type", "outbound")
+                .register(meterRegistry);
+        this.coalescedCalls = Counter.builder("hotmart.club.lookups")
+                .description("Consultas de usuários do Club por tipo de atendimento")
+                .tag("type", "coalesced")
+                .register(meterRegistry);
+        Gauge.builder("hotmart.club.lookups.in_flight", inFlight, ConcurrentMap::size)
+                .description("Consultas à Hotmart em andamento")
+                .register(meterRegistry);
+    }
+
+    public Mono<ClubMembership> getClubMembership(String email) {
+        String key = ValidationResultCache.normalize(email);
+        return Mono.defer(() -> join(key));
+    }
+
+    private Mono<ClubMembership> join(String key) {
+        Mono<ClubMembership> existing = inFlight.get(key);
+        if (existing != null) {
+            coalescedCalls.increment();
+            return existing;
+        }
+
+        // cache() compartilha o resultado (inclusive erro) entre todos que aguardam a mesma chamada;
+        // a entrada sai do mapa ao terminar, então a próxima consulta volta a ir à Hotmart
+        AtomicReference<Mono<ClubMembership>> self = new AtomicReference<>();
+        Mono<ClubMembership> call = hotmartClient.getClubMembership(key)
+                .doFinally(signal -> inFlight.remove(key, self.get()))
+                .cache();
+        self.set(call);
+
+        Mono<ClubMembership> raced = inFlight.putIfAbsent(key, call);
+        if (raced != null) {
+            coalescedCalls.increment();
+            return raced;
+        }
+        outboundCalls.increment();
+        return call;
+    }
+}
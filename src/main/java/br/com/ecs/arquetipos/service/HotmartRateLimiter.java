@@ -0,0 +1,123 @@
+package br.com.ecs.arquetipos.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket dimensionado pela cota da API da Hotmart. Cada requisição consome uma ficha;
+ * sem fichas, a chamada é rejeitada localmente com o tempo exato de espera. Após um 429, o balde
+ * fica pausado pelo tempo informado no Retry-After.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(value = "hotmart.enabled", havingValue = "true")
+public class HotmartRateLimiter {
+
+    private final double capacity;
+    private final double permitsPerNano;
+    private final Duration defaultRetryAfter;
+    private final LongSupplier nanoClock;
+    private final Counter rejections;
+
+    private double availablePermits;
+    private long lastRefill;
+    private long pausedUntil;
+
+    @Autowired
+    public HotmartRateLimiter(@Value("${hotmart.rate-limit.requests-per-minute:500}") int requestsPerMinute,
+                              @Value("${hotmart.rate-limit.burst:50}") int burst,
+                              @Value("${hotmart.rate-limit.default-retry-after:60s}") Duration defaultRetryAfter,
+                              MeterRegistry meterRegistry) {
+        this(requestsPerMinute, burst, defaultRetryAfter, meterRegistry, System::nanoTime);
+    }
+
+    HotmartRateLimiter(int requestsPerMinute, int burst, Duration defaultRetryAfter, MeterRegistry meterRegistry,
+                       LongSupplier nanoClock) {
+        this.capacity = burst;
+        this.permitsPerNano = requestsPerMinute / (double) Duration.ofMinutes(1).toNanos();
+        this.defaultRetryAfter = defaultRetryAfter;
+        this.nanoClock = nanoClock;
+        this.rejections = Counter.builder("hotmart.rate_limit.rejections")
+                .description("Chamadas à Hotmart rejeitadas localmente pelo rate limiter")
+                .register(meterRegistry);
+        this.availablePermits = burst;
+        this.lastRefill = nanoClock.getAsLong();
+        this.pausedUntil = lastRefill;
+    }
+
+    /**
+     * Tenta consumir uma ficha.
+     *
+     * @return {@code 0} se a chamada pode seguir; caso contrário, os segundos até a próxima ficha
+     */
+    public synchronized int tryAcquire() {
+        long now = nanoClock.getAsLong();
+        if (now - pausedUntil < 0) {
+            return rejected(pausedUntil - now);
+        }
+        availablePermits = Math.min(capacity, availablePermits + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+        if (availablePermits >= 1) {
+            availablePermits -= 1;
+            return 0;
+        }
+        return rejected((long) Math.ceil((1 - availablePermits) / permitsPerNano));
+    }
+
+    /**
+     * Registra um 429 da Hotmart: esvazia o balde e o pausa pelo Retry-After informado.
+     *
+     * @return segundos de espera aplicados
+     */
+    public synchronized int onRateLimited(String retryAfterHeader) {
+        Duration wait = parseRetryAfter(retryAfterHeader, defaultRetryAfter);
+        long now = nanoClock.getAsLong();
+        long until = now + wait.toNanos();
+        if (until - pausedUntil > 0) {
+            pausedUntil = until;
+        }
+        availablePermits = 0;
+        lastRefill = pausedUntil;
+        log.warn("Hotmart retornou 429; pausando chamadas por {}s", wait.toSeconds());
+        return toSeconds(pausedUntil - now);
+    }
+
+    // Retry-After aceita segundos ("120") ou data HTTP ("Wed, 21 Oct 2026 07:28:00 GMT")
+    static Duration parseRetryAfter(String value, Duration fallback) {
+        if (value == null || value.isBlank()) return fallback;
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException ignored) {
+            // não é um número: tenta como data HTTP
+        }
+        try {
+            Instant at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            Duration wait = Duration.between(Instant.now(), at);
+            return wait.isNegative() ? Duration.ZERO : wait;
+        } catch (DateTimeParseException e) {
+            return fallback;
+        }
+    }
+
+    private int rejected(long waitNanos) {
+        rejections.increment();
+        return toSeconds(waitNanos);
+    }
+
+    private static int toSeconds(long nanos) {
+        return (int) Math.max(1, (nanos + 999_999_999L) / 1_000_000_000L);
+    }
+}
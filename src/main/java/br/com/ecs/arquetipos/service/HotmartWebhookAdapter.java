@@ -0,0 +1,108 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.HotmartWebhookPayload;
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.PurchaseStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+@Component
+public class HotmartWebhookAdapter implements WebhookProviderAdapter<HotmartWebhookPayload> {
+
+    // A Hotmart envia o hottok configurado no produto em todas as notificações
+    @Value("${webhook.providers.hotmart.signature-header:X-Hotmart-Hottok}")
+    private String signatureHeader = "X-Hotmart-Hottok";
+
+    @Override
+    public Provider provider() {
+        return Provider.HOTMART;
+    }
+
+    @Override
+    public String signatureHeader() {
+        return signatureHeader;
+    }
+
+    @Override
+    public Class<HotmartWebhookPayload> payloadType() {
+        return HotmartWebhookPayload.class;
+    }
+
+    @Override
+    public WebhookRequest toRequest(HotmartWebhookPayload payload) {
+        WebhookRequest req = new WebhookRequest();
+        if (payload == null) return req;
+        req.setPurchaseStatus(purchaseStatus(payload.getEvent()));
+
+        HotmartWebhookPayload.DataNode data = payload.getData();
+        if (data != null) {
+            HotmartWebhookPayload.Buyer buyer = data.getBuyer();
+            if (buyer != null) {
+                req.setEmail(buyer.getEmail());
+                req.setName(buyer.getName() != null ? buyer.getName() : buyer.getFirst_name());
+                req.setFirstName(buyer.getFirst_name());
+                req.setLastName(buyer.getLast_name());
+                String phone = buyer.getCheckout_phone();
+                String code = buyer.getCheckout_phone_code();
+                if (phone != null) {
+                    if (code != null) req.setPhone("+" + code + " " + phone);
+                    else req.setPhone(phone);
+                }
+                req.setDocument(buyer.getDocument());
+                HotmartWebhookPayload.Address addr = buyer.getAddress();
+                if (addr != null) {
+                    req.setZipcode(addr.getZipcode());
+                    req.setCity(addr.getCity());
+                    req.setState(addr.getState());
+                    req.setCountry(addr.getCountry_iso() != null ? addr.getCountry_iso() : addr.getCountry());
+                }
+            }
+
+            HotmartWebhookPayload.Product product = data.getProduct();
+            if (product != null) {
+                if (product.getId() != null) req.setProductId(String.valueOf(product.getId()));
+                req.setProductName(product.getName());
+            }
+
+            HotmartWebhookPayload.Purchase purchase = data.getPurchase();
+            if (purchase != null) {
+                req.setTransactionId(purchase.getTransaction());
+                HotmartWebhookPayload.Price price = purchase.getPrice();
+                if (price != null) {
+                    req.setCurrency(price.getCurrency_value());
+                    if (price.getValue() != null) req.setPrice(price.getValue());
+                }
+                if (purchase.getApproved_date() != null) {
+                    try { req.setPurchaseDate(Instant.ofEpochMilli(purchase.getApproved_date())); } catch (Exception ignored) {}
+                }
+            }
+        }
+
+        // Fallbacks mínimos
+        if (req.getEmail() == null || req.getEmail().isBlank()) {
+            throw new IllegalArgumentException("Email not found in webhook payload");
+        }
+        if (req.getName() == null || req.getName().isBlank()) {
+            String local = req.getEmail().split("@")[0];
+            req.setName(local);
+        }
+
+        return req;
+    }
+
+    /** Situação da compra para o evento da Hotmart; sem evento, vale como aprovada (payloads antigos). */
+    public static PurchaseStatus purchaseStatus(String event) {
+        if (event == null || event.isBlank()) return PurchaseStatus.APPROVED;
+        return switch (event) {
+            case "PURCHASE_APPROVED", "PURCHASE_COMPLETE" -> PurchaseStatus.APPROVED;
+            case "PURCHASE_REFUNDED" -> PurchaseStatus.REFUNDED;
+            case "PURCHASE_CHARGEBACK" -> PurchaseStatus.CHARGEBACK;
+            case "PURCHASE_CANCELED", "PURCHASE_EXPIRED", "SUBSCRIPTION_CANCELLATION" -> PurchaseStatus.CANCELED;
+            // Boleto impresso, pagamento atrasado, disputa aberta etc.: nada entrou (nem saiu) ainda
+            default -> PurchaseStatus.PENDING;
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.repository.PurchaseRepository;
+import br.com.ecs.arquetipos.repository.SqlDialect;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Mantém as partições mensais de purchases (PostgreSQL): cria os próximos meses com antecedência,
+ * para que as compras nunca caiam na partição default, e desanexa as que passaram da retenção.
+ * Partições desanexadas saem das consultas sem custo de DELETE e podem ser arquivadas.
+ */
+@Service
+@Slf4j
+public class PurchasePartitionMaintainer {
+
+    private final PurchaseRepository purchaseRepository;
+    private final SqlDialect sqlDialect;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public PurchasePartitionMaintainer(PurchaseRepository purchaseRepository,
+                                       SqlDialect sqlDialect,
+                                       @Value("${purchases.partitions.months-ahead:3}") int monthsAhead,
+                                       @Value("${purchases.partitions.retention-months:0}") int retentionMonths) {
+        this.purchaseRepository = purchaseRepository;
+        this.sqlDialect = sqlDialect;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainSafely();
+    }
+
+    @Scheduled(cron = "${purchases.partitions.cron:0 15 3 * * *}", zone = "UTC")
+    public void scheduledMaintenance() {
+        maintainSafely();
+    }
+
+    private void maintainSafely() {
+        if (!sqlDialect.isPostgres()) return;
+        try {
+            maintain();
+        } catch (Exception e) {
+            // Ainda restam meses criados com antecedência; a próxima execução tenta de novo
+            log.error("Falha na manutenção das partições de purchases: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Cria as partições do mês corrente até {@code months-ahead} meses à frente e, com
+     * {@code retention-months} > 0, desanexa as anteriores à janela de retenção.
+     *
+     * @return partições desanexadas nesta execução
+     */
+    public List<String> maintain() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (int i = 0; i <= monthsAhead; i++) {
+            purchaseRepository.createMonthlyPartition(current.plusMonths(i));
+        }
+        if (retentionMonths <= 0) return List.of();
+
+        List<String> detached = purchaseRepository.detachPartitionsBefore(current.minusMonths(retentionMonths));
+        if (!detached.isEmpty()) {
+            log.info("Partições de purchases desanexadas (retenção de {} meses): {}", retentionMonths, detached);
+        }
+        return detached;
+    }
+}
@@ -0,0 +1,73 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.RevenueReport;
+import br.com.ecs.arquetipos.dto.RevenueReport.DailyRevenue;
+import br.com.ecs.arquetipos.dto.RevenueReport.ProductRevenue;
+import br.com.ecs.arquetipos.repository.PurchaseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Relatórios de receita a partir de revenue_daily, mantida incrementalmente a cada compra nova:
+ * nenhuma consulta percorre purchases ou subscribers.
+ */
+@Service
+public class RevenueAnalyticsService {
+
+    private record ProductKey(String productId, String currency) {
+    }
+
+    private final PurchaseRepository purchaseRepository;
+    private final int defaultDays;
+    private final int maxDays;
+
+    public RevenueAnalyticsService(PurchaseRepository purchaseRepository,
+                                   @Value("${analytics.revenue.default-days:30}") int defaultDays,
+                                   @Value("${analytics.revenue.max-days:366}") int maxDays) {
+        this.purchaseRepository = purchaseRepository;
+        this.defaultDays = defaultDays;
+        this.maxDays = maxDays;
+    }
+
+    /**
+     * Receita diária e total por produto/moeda em [from, to]. Sem {@code to}, vale o dia atual (UTC);
+     * sem {@code from}, os últimos {@code analytics.revenue.default-days} dias até {@code to}.
+     *
+     * @throws IllegalArgumentException se o período for invertido ou maior que o máximo permitido
+     */
+    public RevenueReport report(LocalDate from, LocalDate to, String productId, String currency) {
+        LocalDate end = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+        LocalDate start = from != null ? from : end.minusDays(defaultDays - 1L);
+        if (start.isAfter(end)) throw new IllegalArgumentException("from must not be after to");
+        if (ChronoUnit.DAYS.between(start, end) + 1 > maxDays) {
+            throw new IllegalArgumentException("Period longer than " + maxDays + " days");
+        }
+
+        List<DailyRevenue> days = purchaseRepository.revenueByDay(start, end, productId, currency);
+
+        Map<ProductKey, ProductRevenue> byProduct = new LinkedHashMap<>();
+        for (DailyRevenue day : days) {
+            byProduct.merge(new ProductKey(day.productId(), day.currency()),
+                    new ProductRevenue(day.productId(), day.currency(), day.purchases(), day.revenue()),
+                    (a, b) -> new ProductRevenue(a.productId(), a.currency(),
+                            a.purchases() + b.purchases(), a.revenue().add(b.revenue())));
+        }
+        List<ProductRevenue> totals = new ArrayList<>(byProduct.values());
+        // Maior receita primeiro; empate por produto para uma ordem estável
+        totals.sort(Comparator.comparing(ProductRevenue::revenue).reversed()
+                .thenComparing(ProductRevenue::productId, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(total -> Objects.toString(total.currency(), "")));
+
+        return new RevenueReport(start, end, days, totals);
+    }
+}
@@ -0,0 +1,168 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.ImportReport;
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.Subscriber;
+import br.com.ecs.arquetipos.repository.SqlDialect;
+import br.com.ecs.arquetipos.repository.SubscriberCopyLoader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.InputStream;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Importação de históricos de vendas (CSV ou NDJSON) em streaming. No PostgreSQL as linhas vão
+ * por COPY para uma tabela temporária e são aplicadas com um upsert set-based; em outros bancos
+ * (H2 nos testes) o arquivo é lido em blocos e gravado por {@link SubscriberService#importAll}.
+ * Em ambos os casos só um bloco do arquivo fica em memória.
+ */
+@Service
+@Slf4j
+public class SubscriberBulkImportService {
+
+    private final SubscriberCopyLoader copyLoader;
+    private final SubscriberService subscriberService;
+    private final ValidationResultCache validationResultCache;
+    private final SubscriberFingerprints fingerprints;
+    private final SubscriberResponseCache responseCache;
+    private final TransactionTemplate transactionTemplate;
+    private final SqlDialect sqlDialect;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxReportedRejects;
+    private final Counter importedRows;
+    private final Counter rejectedRows;
+    private final Timer duration;
+
+    public SubscriberBulkImportService(SubscriberCopyLoader copyLoader,
+                                       SubscriberService subscriberService,
+                                       ValidationResultCache validationResultCache,
+                                       SubscriberFingerprints fingerprints,
+                                       SubscriberResponseCache responseCache,
+                                       TransactionTemplate transactionTemplate,
+                                       SqlDialect sqlDialect,
+                                       ObjectMapper objectMapper,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${subscriber.import.chunk-size:1000}") int chunkSize,
+                                       @Value("${subscriber.import.max-reported-rejects:100}") int maxReportedRejects) {
+        this.copyLoader = copyLoader;
+        this.subscriberService = subscriberService;
+        this.validationResultCache = validationResultCache;
+        this.fingerprints = fingerprints;
+        this.responseCache = responseCache;
+        this.transactionTemplate = transactionTemplate;
+        this.sqlDialect = sqlDialect;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxReportedRejects = maxReportedRejects;
+        this.importedRows = Counter.builder("subscriber.import.rows")
+                .description("Linhas importadas em massa")
+                .tag("result", "imported")
+                .register(meterRegistry);
+        this.rejectedRows = Counter.builder("subscriber.import.rows")
+                .description("Linhas importadas em massa")
+                .tag("result", "rejected")
+                .register(meterRegistry);
+        this.duration = Timer.builder("subscriber.import.duration")
+                .description("Duração de cada importação em massa")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Importa o conteúdo de {@code in}; o formato vem do content type ou do nome do arquivo
+     * ({@code csv}, {@code ndjson}/{@code jsonl}). O stream não é fechado aqui.
+     *
+     * @throws IllegalArgumentException se o formato não for suportado
+     */
+    public ImportReport importFrom(InputStream in, String contentTypeOrFileName, Provider provider) {
+        SubscriberImportReader reader = new SubscriberImportReader(in,
+                SubscriberImportReader.formatOf(contentTypeOrFileName), objectMapper, maxReportedRejects);
+        long start = System.nanoTime();
+
+        long written = sqlDialect.isPostgres() ? copy(reader, provider) : importInChunks(reader, provider);
+
+        long elapsedNanos = System.nanoTime() - start;
+        duration.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        importedRows.increment(reader.accepted());
+        rejectedRows.increment(reader.rejected());
+
+        long rows = reader.accepted() + reader.rejected();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        double rowsPerSecond = elapsedNanos > 0 ? rows * 1_000_000_000d / elapsedNanos : rows;
+        log.info("Importação em massa de {} concluída: {} linhas ({} aceitas, {} rejeitadas), {} subscribers gravados em {} ms ({} linhas/s)",
+                provider, rows, reader.accepted(), reader.rejected(), written, elapsedMillis, Math.round(rowsPerSecond));
+        return new ImportReport(rows, reader.accepted(), reader.rejected(), written, elapsedMillis, rowsPerSecond,
+                List.copyOf(reader.rejects()));
+    }
+
+    // Arquivo inteiro em uma transação: ou a carga entra toda, ou nada muda
+    private long copy(SubscriberImportReader reader, Provider provider) {
+        Iterator<SubscriberCopyLoader.Row> rows = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return reader.hasNext();
+            }
+
+            @Override
+            public SubscriberCopyLoader.Row next() {
+                return toRow(reader.next());
+            }
+        };
+        SubscriberCopyLoader.CopyResult result = transactionTemplate.execute(status -> copyLoader.copyAndMerge(rows, provider));
+        // O estado gravado mudou fora do caminho normal de escrita
+        validationResultCache.invalidateAll();
+        fingerprints.invalidateAll();
+        responseCache.invalidateAll();
+        if (result == null) return 0;
+        log.debug("COPY: {} linhas na tabela temporária, {} compras registradas", result.staged(), result.purchases());
+        return result.subscribers();
+    }
+
+    private long importInChunks(SubscriberImportReader reader, Provider provider) {
+        long written = 0;
+        List<WebhookRequest> chunk = new ArrayList<>(chunkSize);
+        while (reader.hasNext()) {
+            chunk.add(reader.next());
+            if (chunk.size() == chunkSize) {
+                written += subscriberService.importAll(chunk, provider);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) written += subscriberService.importAll(chunk, provider);
+        return written;
+    }
+
+    // Cadastro e compra da mesma linha; o repositório separa o que vai para subscribers e purchases
+    private static SubscriberCopyLoader.Row toRow(WebhookRequest req) {
+        return new SubscriberCopyLoader.Row(Subscriber.builder()
+                .name(req.getName())
+                .email(req.getEmail())
+                .firstName(req.getFirstName())
+                .lastName(req.getLastName())
+                .phone(req.getPhone())
+                .document(req.getDocument())
+                .zipcode(req.getZipcode())
+                .city(req.getCity())
+                .state(req.getState())
+                .country(req.getCountry())
+                .productId(req.getProductId())
+                .productName(req.getProductName())
+                .transactionId(req.getTransactionId())
+                .price(req.getPrice())
+                .currency(req.getCurrency())
+                .purchaseDate(req.getPurchaseDate() != null ? req.getPurchaseDate().truncatedTo(ChronoUnit.MICROS) : null)
+                .build(), req.getPurchaseStatus());
+    }
+}
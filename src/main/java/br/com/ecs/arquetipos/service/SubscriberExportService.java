@@ -0,0 +1,154 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.model.Subscriber;
+import br.com.ecs.arquetipos.repository.SubscriberRepository;
+import br.com.ecs.arquetipos.repository.SubscriberRepositoryCustom.ExportFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Exporta a base de subscribers em NDJSON ou CSV direto no stream de saída, linha a linha, a partir
+ * de um cursor no banco: a memória usada não depende do tamanho da base. O CSV usa os mesmos nomes
+ * de coluna aceitos por {@code POST /subscribers/import}.
+ */
+@Service
+@Slf4j
+public class SubscriberExportService {
+
+    public enum Format {
+        NDJSON,
+        CSV;
+
+        public static Format of(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private record Field(String json, String csv, Function<Subscriber, Object> value) {
+    }
+
+    private static final List<Field> FIELDS = List.of(
+            new Field("id", "id", Subscriber::getId),
+            new Field("name", "name", Subscriber::getName),
+            new Field("email", "email", Subscriber::getEmail),
+            new Field("createdAt", "created_at", Subscriber::getCreatedAt),
+            new Field("provider", "provider", Subscriber::getProvider),
+            new Field("firstName", "first_name", Subscriber::getFirstName),
+            new Field("lastName", "last_name", Subscriber::getLastName),
+            new Field("phone", "phone", Subscriber::getPhone),
+            new Field("document", "document", Subscriber::getDocument),
+            new Field("zipcode", "zipcode", Subscriber::getZipcode),
+            new Field("city", "city", Subscriber::getCity),
+            new Field("state", "state", Subscriber::getState),
+            new Field("country", "country", Subscriber::getCountry)
+    );
+
+    private final SubscriberRepository repository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int fetchSize;
+
+    public SubscriberExportService(SubscriberRepository repository,
+                                   ObjectMapper objectMapper,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${subscriber.export.fetch-size:1000}") int fetchSize) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        // O cursor do PostgreSQL exige autocommit desligado: a leitura inteira roda em uma transação
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Escreve os subscribers do filtro em {@code out} (que não é fechado) e devolve quantos foram
+     * exportados.
+     */
+    public long export(ExportFilter filter, Format format, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        long[] rows = {0};
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        try (JsonGenerator json = format == Format.NDJSON ? objectMapper.getFactory().createGenerator(writer) : null) {
+            if (json != null) {
+                // Um objeto por linha: a quebra é escrita por writeJson, sem o separador padrão (espaço)
+                json.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                json.setRootValueSeparator(null);
+            }
+            if (format == Format.CSV) writeCsvHeader(writer);
+            readOnlyTransaction.executeWithoutResult(status -> repository.streamAll(filter, fetchSize, subscriber -> {
+                try {
+                    if (json != null) writeJson(json, subscriber);
+                    else writeCsv(writer, subscriber);
+                } catch (IOException e) {
+                    // Cliente desconectou: interrompe o cursor
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+
+        log.info("Exportação {} concluída: {} subscribers em {} ms", format, rows[0], (System.nanoTime() - start) / 1_000_000);
+        return rows[0];
+    }
+
+    // Campos nulos ficam de fora do objeto
+    private static void writeJson(JsonGenerator json, Subscriber subscriber) throws IOException {
+        json.writeStartObject();
+        for (Field field : FIELDS) {
+            Object value = field.value().apply(subscriber);
+            if (value == null) continue;
+            if (value instanceof Long number) json.writeNumberField(field.json(), number);
+            else json.writeStringField(field.json(), value.toString());
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private static void writeCsvHeader(Writer writer) throws IOException {
+        for (int i = 0; i < FIELDS.size(); i++) {
+            if (i > 0) writer.write(',');
+            writer.write(FIELDS.get(i).csv());
+        }
+        writer.write("\r\n");
+    }
+
+    // RFC 4180: campos com separador, aspas ou quebra de linha vão entre aspas; nulo é campo vazio
+    private static void writeCsv(Writer writer, Subscriber subscriber) throws IOException {
+        for (int i = 0; i < FIELDS.size(); i++) {
+            if (i > 0) writer.write(',');
+            Object value = FIELDS.get(i).value().apply(subscriber);
+            if (value == null) continue;
+            String text = value.toString();
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(text.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(text);
+            }
+        }
+        writer.write("\r\n");
+    }
+}
@@ -0,0 +1,138 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.Subscriber;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+/**
+ * Fingerprint (hash de 64 bits dos campos normalizados do {@link WebhookRequest}) e o último
+ * estado conhecido de cada subscriber gravado por este nó. Um payload com o mesmo fingerprint do
+ * último aplicado é respondido com o estado em memória, sem consultar nem escrever no banco.
+ */
+@Component
+public class SubscriberFingerprints {
+
+    public enum Outcome {
+        UNCHANGED,
+        PARTIAL_UPDATE,
+        UPSERT
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Cache<String, Subscriber> known;
+    private final Counter unchanged;
+    private final Counter partialUpdates;
+    private final Counter upserts;
+
+    public SubscriberFingerprints(MeterRegistry meterRegistry,
+                                  @Value("${subscriber.fingerprint.cache-size:100000}") long cacheSize,
+                                  @Value("${subscriber.fingerprint.cache-ttl:10m}") Duration cacheTtl) {
+        // TTL curto: outro nó pode ter alterado o registro desde a última gravação vista aqui
+        this.known = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+        this.unchanged = outcomeCounter(meterRegistry, Outcome.UNCHANGED);
+        this.partialUpdates = outcomeCounter(meterRegistry, Outcome.PARTIAL_UPDATE);
+        this.upserts = outcomeCounter(meterRegistry, Outcome.UPSERT);
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, Outcome outcome) {
+        return Counter.builder("subscriber.fingerprint.writes")
+                .description("Gravações de subscriber por caminho (sem alteração, UPDATE parcial, upsert)")
+                .tag("outcome", outcome.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hash dos campos que o webhook grava; o email é a chave e fica de fora. Preço sem zeros à
+     * direita e datas na precisão da coluna, para que o mesmo valor gere o mesmo hash.
+     */
+    public static long of(WebhookRequest req, Provider provider) {
+        long h = FNV_OFFSET;
+        h = mix(h, provider != null ? provider.name() : null);
+        h = mix(h, req.getName());
+        h = mix(h, req.getFirstName());
+        h = mix(h, req.getLastName());
+        h = mix(h, req.getPhone());
+        h = mix(h, req.getDocument());
+        h = mix(h, req.getZipcode());
+        h = mix(h, req.getCity());
+        h = mix(h, req.getState());
+        h = mix(h, req.getCountry());
+        h = mix(h, req.getProductId());
+        h = mix(h, req.getProductName());
+        h = mix(h, req.getTransactionId());
+        BigDecimal price = req.getPrice();
+        h = mix(h, price != null ? price.stripTrailingZeros().toPlainString() : null);
+        h = mix(h, req.getCurrency());
+        Instant purchaseDate = req.getPurchaseDate();
+        h = mix(h, purchaseDate != null ? purchaseDate.truncatedTo(ChronoUnit.MICROS).toString() : null);
+        // O reembolso repete os dados da compra: sem o status, cairia no atalho de payload repetido
+        h = mix(h, req.getPurchaseStatus() != null ? req.getPurchaseStatus().name() : null);
+        return h;
+    }
+
+    // FNV-1a; nulo e vazio têm marcadores distintos e cada campo termina com um separador
+    private static long mix(long h, String value) {
+        if (value == null) {
+            h = (h ^ 0x01) * FNV_PRIME;
+        } else {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                h = (h ^ (c & 0xff)) * FNV_PRIME;
+                h = (h ^ (c >>> 8)) * FNV_PRIME;
+            }
+        }
+        return (h ^ 0x1f) * FNV_PRIME;
+    }
+
+    // Cópia: o estado em cache nunca é compartilhado com quem chama (a entidade é mutável)
+    public Optional<Subscriber> lookup(String email) {
+        return Optional.ofNullable(known.getIfPresent(email)).map(SubscriberFingerprints::copyOf);
+    }
+
+    /** Guarda (uma cópia do) estado resultante de uma gravação com o fingerprint do payload aplicado. */
+    public void remember(Subscriber saved, long fingerprint, Outcome outcome) {
+        Subscriber state = copyOf(saved);
+        state.setFingerprint(fingerprint);
+        known.put(state.getEmail(), state);
+        record(outcome);
+    }
+
+    private static Subscriber copyOf(Subscriber subscriber) {
+        return subscriber.toBuilder().build();
+    }
+
+    // Depois de uma gravação que falhou no meio: o próximo payload do email vai ao banco
+    public void forget(String email) {
+        known.invalidate(email);
+    }
+
+    public void record(Outcome outcome) {
+        switch (outcome) {
+            case UNCHANGED -> unchanged.increment();
+            case PARTIAL_UPDATE -> partialUpdates.increment();
+            case UPSERT -> upserts.increment();
+        }
+    }
+
+    // Gravações por outros caminhos (importação em massa) tornam os estados em memória obsoletos
+    public void invalidateAll() {
+        known.invalidateAll();
+    }
+}
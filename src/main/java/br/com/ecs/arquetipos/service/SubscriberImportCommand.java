@@ -0,0 +1,57 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.ImportReport;
+import br.com.ecs.arquetipos.model.Provider;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Importação pela linha de comando: {@code --subscriber.import.file=vendas.csv.gz
+ * --subscriber.import.provider=HOTMART}. O formato vem da extensão (.csv, .ndjson, .jsonl,
+ * opcionalmente .gz); ao terminar, a aplicação encerra com código 0, ou 1 se houve rejeições.
+ */
+@Component
+@ConditionalOnProperty("subscriber.import.file")
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriberImportCommand implements ApplicationRunner {
+
+    private final SubscriberBulkImportService bulkImportService;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${subscriber.import.file}")
+    private Path file;
+
+    @Value("${subscriber.import.provider:UNKNOWN}")
+    private Provider provider;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        String name = file.getFileName().toString();
+        boolean gzip = name.endsWith(".gz");
+        log.info("Importando {} ({})", file, provider);
+
+        ImportReport report;
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+             InputStream in = gzip ? new GZIPInputStream(raw, 64 * 1024) : raw) {
+            report = bulkImportService.importFrom(in, gzip ? name.substring(0, name.length() - 3) : name, provider);
+        }
+        report.rejects().forEach(reject -> log.warn("Linha {} rejeitada: {}", reject.line(), reject.reason()));
+
+        int exitCode = report.rejected() > 0 ? 1 : 0;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+}
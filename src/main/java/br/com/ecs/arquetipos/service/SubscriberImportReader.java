@@ -0,0 +1,259 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.ImportReport;
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Lê um export de vendas (CSV com cabeçalho ou NDJSON) registro a registro, sem carregar o
+ * arquivo: cada registro vira um {@link WebhookRequest} pelo mesmo binding Jackson dos webhooks.
+ * Registros inválidos são contados e os primeiros guardados com o número da linha.
+ */
+class SubscriberImportReader implements Iterator<WebhookRequest> {
+
+    enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader requestReader;
+    private final int maxReportedRejects;
+
+    private String[] header;
+    private char delimiter = ',';
+    // Linha física atual (registros CSV podem ocupar mais de uma linha)
+    private long line;
+    // Linha em que começa o registro atual, para o relatório de rejeições
+    private long recordLine;
+    private long accepted;
+    private long rejected;
+    private final List<ImportReport.Reject> rejects = new ArrayList<>();
+    private WebhookRequest next;
+    private boolean finished;
+
+    SubscriberImportReader(InputStream in, Format format, ObjectMapper objectMapper, int maxReportedRejects) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        this.format = format;
+        this.objectMapper = objectMapper;
+        // Exports costumam trazer colunas extras (status, afiliado...): ficam de fora
+        this.requestReader = objectMapper.readerFor(WebhookRequest.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.maxReportedRejects = maxReportedRejects;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) return true;
+        if (finished) return false;
+        try {
+            while (next == null) {
+                WebhookRequest candidate;
+                try {
+                    candidate = format == Format.CSV ? readCsv() : readNdjson();
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    reject(e instanceof JsonProcessingException jpe ? jpe.getOriginalMessage() : e.getMessage());
+                    continue;
+                }
+                if (candidate == null) {
+                    finished = true;
+                    return false;
+                }
+                String problem = validate(candidate);
+                if (problem != null) {
+                    reject(problem);
+                    continue;
+                }
+                accepted++;
+                next = candidate;
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public WebhookRequest next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        WebhookRequest current = next;
+        next = null;
+        return current;
+    }
+
+    long accepted() {
+        return accepted;
+    }
+
+    long rejected() {
+        return rejected;
+    }
+
+    List<ImportReport.Reject> rejects() {
+        return rejects;
+    }
+
+    private void reject(String reason) {
+        rejected++;
+        if (rejects.size() < maxReportedRejects) rejects.add(new ImportReport.Reject(recordLine, reason));
+    }
+
+    // Mesmas regras mínimas do parser do Hotmart: email válido obrigatório, nome cai para o email
+    private static String validate(WebhookRequest req) {
+        if (req.getEmail() == null || req.getEmail().isBlank()) return "Email not found";
+        req.setEmail(req.getEmail().trim());
+        if (!WebhookProviderAdapter.isValidEmail(req.getEmail())) return "Invalid email format";
+        if (req.getName() == null || req.getName().isBlank()) req.setName(req.getEmail().split("@")[0]);
+        return null;
+    }
+
+    private WebhookRequest readNdjson() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            if (text == null) return null;
+            line++;
+            if (line == 1) text = stripBom(text);
+        } while (text.isBlank());
+        recordLine = line;
+        return requestReader.readValue(text);
+    }
+
+    private WebhookRequest readCsv() throws IOException {
+        if (header == null) {
+            String first = reader.readLine();
+            if (first == null) return null;
+            line++;
+            first = stripBom(first);
+            // Exports do Excel em pt-BR usam ';'
+            delimiter = first.indexOf(';') >= 0 && first.indexOf(',') < 0 ? ';' : ',';
+            List<String> names = splitHeader(first);
+            header = new String[names.size()];
+            for (int i = 0; i < header.length; i++) header[i] = toProperty(names.get(i));
+        }
+
+        List<String> fields;
+        do {
+            recordLine = line + 1;
+            fields = readRecord();
+            if (fields == null) return null;
+        } while (fields.size() == 1 && fields.get(0) == null);
+
+        if (fields.size() > header.length) {
+            throw new IllegalArgumentException("Expected " + header.length + " columns but found " + fields.size());
+        }
+        ObjectNode node = objectMapper.createObjectNode();
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i) != null && header[i] != null) node.put(header[i], fields.get(i));
+        }
+        return requestReader.readValue(node);
+    }
+
+    // RFC 4180: aspas duplas delimitam campos com separador/quebra de linha; "" é uma aspa literal
+    private List<String> readRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        boolean any = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int n = reader.read();
+                    if (n == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (n != -1) reader.reset();
+                    }
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == delimiter) {
+                fields.add(value(field, wasQuoted));
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\n') {
+                line++;
+                fields.add(value(field, wasQuoted));
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!any) return null;
+        if (quoted) throw new IllegalArgumentException("Unterminated quoted field");
+        line++;
+        fields.add(value(field, wasQuoted));
+        return fields;
+    }
+
+    // Campo vazio sem aspas é ausente (mantém o valor atual no merge)
+    private static String value(StringBuilder field, boolean wasQuoted) {
+        return field.isEmpty() && !wasQuoted ? null : field.toString();
+    }
+
+    private List<String> splitHeader(String text) {
+        List<String> names = new ArrayList<>();
+        for (String name : text.split(String.valueOf(delimiter), -1)) {
+            names.add(name.trim().replace("\"", ""));
+        }
+        return names;
+    }
+
+    // Aceita o nome da propriedade (firstName) ou snake_case (first_name)
+    private static String toProperty(String column) {
+        if (column.isEmpty()) return null;
+        if (column.equals(column.toUpperCase(Locale.ROOT)) || column.matches(".*[_\\- ].*")) {
+            column = column.toLowerCase(Locale.ROOT);
+        }
+        StringBuilder property = new StringBuilder(column.length());
+        boolean upper = false;
+        for (int i = 0; i < column.length(); i++) {
+            char c = column.charAt(i);
+            if (c == '_' || c == '-' || c == ' ') {
+                upper = property.length() > 0;
+            } else {
+                property.append(upper ? Character.toUpperCase(c) : property.length() == 0 ? Character.toLowerCase(c) : c);
+                upper = false;
+            }
+        }
+        return property.toString();
+    }
+
+    private static String stripBom(String text) {
+        return !text.isEmpty() && text.charAt(0) == '﻿' ? text.substring(1) : text;
+    }
+
+    static Format formatOf(String contentTypeOrFileName) {
+        String value = contentTypeOrFileName == null ? "" : contentTypeOrFileName.toLowerCase(Locale.ROOT);
+        if (value.contains("csv")) return Format.CSV;
+        if (value.contains("ndjson") || value.contains("jsonl") || value.contains("json")) return Format.NDJSON;
+        throw new IllegalArgumentException("Unsupported import format: " + contentTypeOrFileName);
+    }
+}
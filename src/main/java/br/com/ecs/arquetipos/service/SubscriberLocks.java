@@ -0,0 +1,84 @@
+package br.com.ecs.arquetipos.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializa, neste nó, as gravações de um mesmo subscriber: o email normalizado escolhe uma
+ * entre {@code subscriber.lock.stripes} travas justas (FIFO), então eventos quase simultâneos do
+ * mesmo comprador (ex.: PURCHASE_APPROVED e PURCHASE_COMPLETE) são aplicados na ordem de chegada,
+ * enquanto emails de faixas diferentes seguem em paralelo.
+ */
+@Component
+public class SubscriberLocks {
+
+    private final ReentrantLock[] stripes;
+    private final Timer[] waitTimers;
+    private final Counter[] contended;
+
+    public SubscriberLocks(MeterRegistry meterRegistry,
+                           @Value("${subscriber.lock.stripes:64}") int stripeCount) {
+        // Potência de dois para escolher a faixa com máscara
+        int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        this.waitTimers = new Timer[size];
+        this.contended = new Counter[size];
+        for (int i = 0; i < size; i++) {
+            String stripe = String.valueOf(i);
+            stripes[i] = new ReentrantLock(true);
+            waitTimers[i] = Timer.builder("subscriber.lock.wait")
+                    .description("Espera pela trava do email antes de gravar o subscriber")
+                    .tag("stripe", stripe)
+                    .register(meterRegistry);
+            contended[i] = Counter.builder("subscriber.lock.contended")
+                    .description("Gravações que encontraram a faixa ocupada")
+                    .tag("stripe", stripe)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("subscriber.lock.queued", this, SubscriberLocks::queued)
+                .description("Threads aguardando alguma faixa")
+                .register(meterRegistry);
+    }
+
+    public <T> T withLock(String email, Supplier<T> action) {
+        int stripe = stripeOf(email);
+        ReentrantLock lock = stripes[stripe];
+        long start = System.nanoTime();
+        // tryLock ignora a fila; com alguém esperando, entra no fim dela para manter a ordem
+        if (lock.hasQueuedThreads() || !lock.tryLock()) {
+            contended[stripe].increment();
+            lock.lock();
+        }
+        waitTimers[stripe].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int stripeOf(String email) {
+        int h = email == null ? 0 : email.trim().toLowerCase(Locale.ROOT).hashCode();
+        h ^= h >>> 16;
+        return h & (stripes.length - 1);
+    }
+
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    private double queued() {
+        int total = 0;
+        for (ReentrantLock lock : stripes) total += lock.getQueueLength();
+        return total;
+    }
+}
@@ -0,0 +1,88 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.SubscriberPage;
+import br.com.ecs.arquetipos.dto.SubscriberSummary;
+import br.com.ecs.arquetipos.repository.SubscriberRepository;
+import br.com.ecs.arquetipos.service.SubscriberResponseCache.CachedResponse;
+import br.com.ecs.arquetipos.repository.SubscriberRepositoryCustom.SearchFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Consultas de leitura de subscribers para as ferramentas de suporte. A paginação é por keyset:
+ * o cursor guarda o (created_at, id) do último item entregue e a próxima página começa logo depois
+ * dele, com o mesmo custo em qualquer profundidade.
+ */
+@Service
+public class SubscriberQueryService {
+
+    private final SubscriberRepository repository;
+    private final SubscriberResponseCache responseCache;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public SubscriberQueryService(SubscriberRepository repository,
+                                  SubscriberResponseCache responseCache,
+                                  @Value("${subscriber.query.default-page-size:50}") int defaultPageSize,
+                                  @Value("${subscriber.query.max-page-size:500}") int maxPageSize) {
+        this.repository = repository;
+        this.responseCache = responseCache;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Representação JSON pronta (e seu ETag) do subscriber, vinda do cache; o banco só é consultado
+     * quando o id não está em memória.
+     */
+    public Optional<CachedResponse> findResponse(long id) {
+        return responseCache.get(id, repository::findById);
+    }
+
+    /**
+     * @param after cursor devolvido pela página anterior, ou nulo para a primeira
+     * @param limit tamanho da página; nulo usa o padrão e valores acima do máximo são limitados
+     * @throws IllegalArgumentException se o cursor for inválido ou o limite não for positivo
+     */
+    public SubscriberPage search(SearchFilter filter, String after, Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.min(limit, maxPageSize);
+        if (pageSize <= 0) throw new IllegalArgumentException("limit must be positive");
+
+        Cursor cursor = after == null || after.isBlank() ? null : Cursor.decode(after);
+        // Um item a mais indica se existe próxima página sem precisar de COUNT
+        List<SubscriberSummary> rows = repository.findPage(filter,
+                cursor != null ? cursor.createdAt() : null,
+                cursor != null ? cursor.id() : null,
+                pageSize + 1);
+
+        if (rows.size() <= pageSize) return new SubscriberPage(rows, null);
+        List<SubscriberSummary> items = rows.subList(0, pageSize);
+        SubscriberSummary last = items.get(pageSize - 1);
+        return new SubscriberPage(List.copyOf(items), new Cursor(last.createdAt(), last.id()).encode());
+    }
+
+    record Cursor(Instant createdAt, long id) {
+
+        String encode() {
+            String raw = createdAt + "_" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String value) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('_');
+                return new Cursor(Instant.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+            } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + value);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.SubscriberSummary;
+import br.com.ecs.arquetipos.model.Subscriber;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.LongFunction;
+
+/**
+ * Resposta pronta de GET /subscribers/{id}: o JSON já serializado e seu ETag forte. Preenchido na
+ * gravação pelo SubscriberService (substituindo a versão anterior) e na primeira leitura de um id
+ * ausente; polls repetidos não consultam o banco nem serializam de novo.
+ */
+@Component
+public class SubscriberResponseCache {
+
+    public record CachedResponse(byte[] body, String etag) {
+    }
+
+    private final Cache<Long, CachedResponse> cache;
+    private final ObjectMapper objectMapper;
+    private final Counter hits;
+    private final Counter misses;
+
+    public SubscriberResponseCache(ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${subscriber.response-cache.size:10000}") long size,
+                                   @Value("${subscriber.response-cache.ttl:5m}") Duration ttl) {
+        this.objectMapper = objectMapper;
+        // TTL curto: gravações feitas por outro nó só chegam aqui quando a entrada expira
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(ttl)
+                .build();
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("subscriber.response-cache.lookups")
+                .description("Leituras de GET /subscribers/{id} atendidas pelo cache ou pelo banco")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resposta do subscriber {@code id}; na ausência, {@code loader} busca o registro (vazio se não
+     * existe). Uma gravação concorrente espera o carregamento e o sobrescreve, nunca o contrário.
+     */
+    public Optional<CachedResponse> get(long id, LongFunction<Optional<Subscriber>> loader) {
+        CachedResponse cached = cache.getIfPresent(id);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+        return Optional.ofNullable(cache.get(id, key -> loader.apply(key).map(this::render).orElse(null)));
+    }
+
+    // Chamado depois que a gravação foi confirmada no banco
+    public void put(Subscriber subscriber) {
+        if (subscriber.getId() == null) return;
+        cache.put(subscriber.getId(), render(subscriber));
+    }
+
+    public void evict(long id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public static SubscriberSummary toSummary(Subscriber s) {
+        return new SubscriberSummary(s.getId(), s.getName(), s.getEmail(), s.getProvider(), s.getCreatedAt(),
+                s.getFirstName(), s.getLastName(), s.getCity(), s.getState(), s.getCountry());
+    }
+
+    private CachedResponse render(Subscriber subscriber) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(toSummary(subscriber));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize subscriber " + subscriber.getId(), e);
+        }
+        return new CachedResponse(body, etagOf(body));
+    }
+
+    // ETag forte: muda com qualquer byte da representação
+    static String etagOf(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
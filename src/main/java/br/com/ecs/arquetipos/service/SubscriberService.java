@@ -1,17 +1,30 @@
 package br.com.ecs.arquetipos.service;
 
+import br.com.ecs.arquetipos.model.Purchase;
+import br.com.ecs.arquetipos.model.PurchaseStatus;
 import br.com.ecs.arquetipos.model.Subscriber;
 import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.repository.PurchaseRepository;
 import br.com.ecs.arquetipos.repository.SubscriberRepository;
+import br.com.ecs.arquetipos.repository.SubscriberRepositoryCustom.Upserted;
 import br.com.ecs.arquetipos.dto.WebhookRequest;
 import lombok.RequiredArgsConstructor;
+import jakarta.persistence.EntityManager;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
@@ -19,6 +32,21 @@ import java.math.BigDecimal;
 public class SubscriberService {
 
     private final SubscriberRepository repository;
+    private final ValidationResultCache validationResultCache;
+    // Presente apenas com subscriber.batching.enabled=true
+    private final Optional<SubscriberUpsertBatcher> upsertBatcher;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final SubscriberLocks subscriberLocks;
+    private final SubscriberFingerprints fingerprints;
+    private final PurchaseRepository purchaseRepository;
+    private final SubscriberResponseCache responseCache;
+    // Última gravação enfileirada no batcher por email; só ela lembra o resultado
+    private final Map<String, CompletableFuture<Upserted>> latestBatched = new ConcurrentHashMap<>();
+
+    // Linhas por transação na importação em massa (múltiplo do hibernate.jdbc.batch_size)
+    @Value("${subscriber.import.chunk-size:1000}")
+    private int importChunkSize = 1000;
 
     // Mantém método antigo por compatibilidade (delegando)
     public Subscriber createOrUpdate(String name, String email, Provider provider) {
@@ -28,59 +56,25 @@ public class SubscriberService {
         return createOrUpdate(req, provider);
     }
 
+    /**
+     * Cria ou atualiza o subscriber em um único comando (upsert em ux_subscribers_email): campos não
+     * informados no webhook preservam o valor atual e a linha só é reescrita quando algo mudou.
+     * Gravações do mesmo email neste nó passam pela mesma trava e são aplicadas em ordem de chegada;
+     * com o batcher ligado, a trava não é mantida durante a espera pelo lote.
+     * Quando o estado atual já é conhecido (SubscriberFingerprints), um payload com o mesmo
+     * fingerprint não vai ao banco e um payload diferente vira um UPDATE só das colunas alteradas.
+     * Os dados da compra não passam pelo subscriber: viram uma linha nova em purchases. A resposta
+     * de GET /subscribers/{id} é renovada no SubscriberResponseCache a cada gravação efetiva.
+     */
     public Subscriber createOrUpdate(WebhookRequest req, Provider provider) {
         String email = req.getEmail();
-        Optional<Subscriber> existing = repository.findByEmail(email);
-        if (existing.isPresent()) {
-            Subscriber s = existing.get();
-            boolean changed = false;
-            if (req.getName() != null && !req.getName().equals(s.getName())) {
-                log.info("Atualizando nome do subscriber (email={}): {} -> {}", email, s.getName(), req.getName());
-                s.setName(req.getName());
-                changed = true;
-            }
-            if (req.getFirstName() != null && !req.getFirstName().equals(s.getFirstName())) {
-                s.setFirstName(req.getFirstName()); changed = true;
-            }
-            if (req.getLastName() != null && !req.getLastName().equals(s.getLastName())) {
-                s.setLastName(req.getLastName()); changed = true;
-            }
-            if (req.getPhone() != null && !req.getPhone().equals(s.getPhone())) { s.setPhone(req.getPhone()); changed = true; }
-            if (req.getDocument() != null && !req.getDocument().equals(s.getDocument())) { s.setDocument(req.getDocument()); changed = true; }
-            if (req.getZipcode() != null && !req.getZipcode().equals(s.getZipcode())) { s.setZipcode(req.getZipcode()); changed = true; }
-            if (req.getCity() != null && !req.getCity().equals(s.getCity())) { s.setCity(req.getCity()); changed = true; }
-            if (req.getState() != null && !req.getState().equals(s.getState())) { s.setState(req.getState()); changed = true; }
-            if (req.getCountry() != null && !req.getCountry().equals(s.getCountry())) { s.setCountry(req.getCountry()); changed = true; }
-
-            if (req.getProductId() != null && !req.getProductId().equals(s.getProductId())) { s.setProductId(req.getProductId()); changed = true; }
-            if (req.getProductName() != null && !req.getProductName().equals(s.getProductName())) { s.setProductName(req.getProductName()); changed = true; }
-            if (req.getTransactionId() != null && !req.getTransactionId().equals(s.getTransactionId())) { s.setTransactionId(req.getTransactionId()); changed = true; }
-            if (req.getPrice() != null && (s.getPrice() == null || req.getPrice().compareTo(s.getPrice()) != 0)) { s.setPrice(req.getPrice()); changed = true; }
-            if (req.getCurrency() != null && !req.getCurrency().equals(s.getCurrency())) { s.setCurrency(req.getCurrency()); changed = true; }
-            if (req.getPurchaseDate() != null && !req.getPurchaseDate().equals(s.getPurchaseDate())) { s.setPurchaseDate(req.getPurchaseDate()); changed = true; }
-
-            if (s.getProvider() != provider) {
-                s.setProvider(provider);
-                changed = true;
-            }
-            if (changed) {
-                log.info("Atualizando subscriber existente: {}", email);
-                try {
-                    return repository.save(s);
-                } catch (Exception ex) {
-                    // Tenta recuperar registro existente em caso de violação de integridade ou condição de corrida
-                    log.warn("Erro ao salvar atualização do subscriber (email={}), tentando recuperar registro existente: {}", email, ex.getMessage());
-                    return repository.findByEmail(email).orElseThrow(() -> unwrapOrRethrow(ex));
-                }
-            }
-            log.info("Retornando subscriber existente sem alterações: {}", email);
-            return s;
-        }
+        // Precisão de microssegundos, a mesma da coluna, para reconhecer a inserção pelo created_at
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
 
-        Subscriber subscriber = Subscriber.builder()
+        Subscriber candidate = Subscriber.builder()
                 .name(req.getName())
-                .email(req.getEmail())
-                .createdAt(Instant.now())
+                .email(email)
+                .createdAt(now)
                 .provider(provider)
                 .firstName(req.getFirstName())
                 .lastName(req.getLastName())
@@ -90,35 +84,235 @@ public class SubscriberService {
                 .city(req.getCity())
                 .state(req.getState())
                 .country(req.getCountry())
+                .fingerprint(SubscriberFingerprints.of(req, provider))
+                .build();
+        Purchase purchase = toPurchase(req, provider, now);
+
+        if (upsertBatcher.isPresent()) return writeBatched(candidate, purchase);
+        // Consulta ao estado conhecido, gravação e remember formam uma unidade por email
+        return subscriberLocks.withLock(email, () -> write(candidate, purchase));
+    }
+
+    // Gravação entregue ao batcher: sem pending, o payload repete o estado conhecido
+    private record BatchedWrite(Subscriber known, CompletableFuture<Upserted> pending) {
+    }
+
+    /*
+     * Com o batcher, a trava cobre só a consulta ao estado conhecido, o enfileiramento e o remember;
+     * a espera pelo lote fica fora dela, para que uma faixa não limite o lote a uma linha por vez nem
+     * faça outros emails da faixa esperarem o linger e o flush alheios. Gravações do mesmo email
+     * entram na fila em ordem e o batcher as aplica em rodadas, na mesma ordem; só a última
+     * enfileirada lembra o resultado.
+     */
+    private Subscriber writeBatched(Subscriber candidate, Purchase purchase) {
+        String email = candidate.getEmail();
+        long fingerprint = candidate.getFingerprint();
+
+        BatchedWrite write = subscriberLocks.withLock(email, () -> {
+            Optional<Subscriber> known = fingerprints.lookup(email);
+            if (known.isPresent() && known.get().getFingerprint() == fingerprint) {
+                return new BatchedWrite(known.get(), null);
+            }
+            // Até o lote gravar, o estado conhecido deixa de valer: nada de atalho UNCHANGED no meio
+            fingerprints.forget(email);
+            CompletableFuture<Upserted> pending = upsertBatcher.get().submit(candidate);
+            latestBatched.put(email, pending);
+            return new BatchedWrite(null, pending);
+        });
+        if (write.pending() == null) {
+            fingerprints.record(SubscriberFingerprints.Outcome.UNCHANGED);
+            log.debug("Payload repetido para {}, nada a gravar", email);
+            return write.known();
+        }
+
+        Upserted upserted;
+        try {
+            upserted = await(write.pending());
+            appendPurchase(upserted.subscriber(), purchase);
+        } catch (RuntimeException e) {
+            subscriberLocks.withLock(email, () -> {
+                latestBatched.remove(email, write.pending());
+                fingerprints.forget(email);
+                return null;
+            });
+            throw e;
+        }
+
+        Subscriber saved = upserted.subscriber();
+        if (upserted.inserted()) {
+            log.info("Novo subscriber criado: {}", email);
+            validationResultCache.invalidate(email);
+        } else {
+            log.info("Subscriber existente atualizado (ou sem alterações): {}", email);
+        }
+        subscriberLocks.withLock(email, () -> {
+            // Uma gravação mais nova do mesmo email ainda na fila lembra o resultado dela
+            if (latestBatched.remove(email, write.pending())) {
+                fingerprints.remember(saved, fingerprint, SubscriberFingerprints.Outcome.UPSERT);
+                responseCache.put(saved);
+            }
+            return null;
+        });
+        return saved;
+    }
+
+    private Subscriber write(Subscriber candidate, Purchase purchase) {
+        try {
+            return writeAndAppend(candidate, purchase);
+        } catch (RuntimeException e) {
+            // O estado em memória pode não refletir mais o banco: a reentrega segue o caminho completo
+            fingerprints.forget(candidate.getEmail());
+            throw e;
+        }
+    }
+
+    /*
+     * O fingerprint só é lembrado depois que subscriber e compra foram gravados: se a compra falhar,
+     * a reentrega do mesmo payload não cai no atalho UNCHANGED e a compra é gravada de novo.
+     */
+    private Subscriber writeAndAppend(Subscriber candidate, Purchase purchase) {
+        String email = candidate.getEmail();
+        long fingerprint = candidate.getFingerprint();
+
+        Optional<Subscriber> known = fingerprints.lookup(email);
+        if (known.isPresent()) {
+            if (known.get().getFingerprint() == fingerprint) {
+                fingerprints.record(SubscriberFingerprints.Outcome.UNCHANGED);
+                log.debug("Payload repetido para {}, nada a gravar", email);
+                return known.get();
+            }
+            Optional<Subscriber> updated = repository.updateChanged(known.get(), candidate);
+            if (updated.isPresent()) {
+                log.info("Subscriber existente atualizado (ou sem alterações): {}", email);
+                appendPurchase(updated.get(), purchase);
+                // Mesmo objeto de volta: nenhum campo informado difere do estado conhecido
+                boolean changed = updated.get() != known.get();
+                fingerprints.remember(updated.get(), fingerprint, changed
+                        ? SubscriberFingerprints.Outcome.PARTIAL_UPDATE
+                        : SubscriberFingerprints.Outcome.UNCHANGED);
+                if (changed) responseCache.put(updated.get());
+                return updated.get();
+            }
+            // A linha sumiu desde a última gravação: segue pelo upsert
+        }
+
+        Upserted upserted = repository.upsert(candidate);
+        Subscriber saved = upserted.subscriber();
+        if (upserted.inserted()) {
+            log.info("Novo subscriber criado: {}", email);
+            // Uma compra nova nunca deve ser respondida com um negativo antigo do cache de validação
+            validationResultCache.invalidate(email);
+        } else {
+            log.info("Subscriber existente atualizado (ou sem alterações): {}", email);
+        }
+        appendPurchase(saved, purchase);
+        fingerprints.remember(saved, fingerprint, SubscriberFingerprints.Outcome.UPSERT);
+        responseCache.put(saved);
+        return saved;
+    }
+
+    // Só quando o webhook traz dados de compra; sem data informada, vale o horário de recebimento
+    private static Purchase toPurchase(WebhookRequest req, Provider provider, Instant receivedAt) {
+        if (req.getProductId() == null && req.getTransactionId() == null && req.getPrice() == null) return null;
+        return Purchase.builder()
+                .email(req.getEmail())
+                .provider(provider)
                 .productId(req.getProductId())
                 .productName(req.getProductName())
                 .transactionId(req.getTransactionId())
                 .price(req.getPrice())
                 .currency(req.getCurrency())
-                .purchaseDate(req.getPurchaseDate())
+                .purchasedAt(req.getPurchaseDate() != null ? req.getPurchaseDate().truncatedTo(ChronoUnit.MICROS) : receivedAt)
+                .receivedAt(receivedAt)
+                .status(req.getPurchaseStatus() != null ? req.getPurchaseStatus() : PurchaseStatus.APPROVED)
                 .build();
+    }
 
-        // Revalida presença antes de tentar inserir para evitar condição de corrida
-        Optional<Subscriber> already = repository.findByEmail(email);
-        if (already.isPresent()) {
-            log.info("Subscriber encontrado na segunda checagem, retornando existente: {}", email);
-            return already.get();
+    private void appendPurchase(Subscriber subscriber, Purchase purchase) {
+        if (purchase == null) return;
+        purchase.setSubscriberId(subscriber.getId());
+        if (!purchaseRepository.append(purchase)) {
+            log.debug("Compra {} de {} já registrada", purchase.getTransactionId(), subscriber.getEmail());
         }
+    }
 
+    private static Upserted await(CompletableFuture<Upserted> pending) {
         try {
-            log.info("Criando novo subscriber: {}", email);
-            return repository.save(subscriber);
-        } catch (Exception ex) {
-            // Tenta recuperar registro existente em caso de violação de integridade ou condição de corrida
-            log.warn("Erro ao salvar novo subscriber (email={}), tentando recuperar registro existente: {}", email, ex.getMessage());
-            return repository.findByEmail(email).orElseThrow(() -> unwrapOrRethrow(ex));
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
         }
     }
 
-    private RuntimeException unwrapOrRethrow(Exception ex) {
-        if (ex instanceof RuntimeException) {
-            return (RuntimeException) ex;
+    /**
+     * Importação em massa (backfills): cada bloco de {@code subscriber.import.chunk-size} linhas usa
+     * uma consulta IN para achar os existentes e um saveAll em uma única transação, que o Hibernate
+     * envia em batches de INSERT/UPDATE graças aos IDs por sequence. O contexto de persistência é
+     * limpo a cada bloco para manter a memória constante.
+     *
+     * @return quantidade de linhas processadas (emails repetidos contam uma vez por bloco)
+     */
+    public int importAll(List<WebhookRequest> requests, Provider provider) {
+        int written = 0;
+        for (int from = 0; from < requests.size(); from += importChunkSize) {
+            List<WebhookRequest> chunk = requests.subList(from, Math.min(requests.size(), from + importChunkSize));
+            Integer count = transactionTemplate.execute(status -> importChunk(chunk, provider));
+            written += count != null ? count : 0;
+            // Compras novas não podem ser respondidas com negativos antigos do cache de validação
+            validationResultCache.invalidateAll();
+            fingerprints.invalidateAll();
+            responseCache.invalidateAll();
+        }
+        log.info("Importação em massa concluída: {} subscribers gravados", written);
+        return written;
+    }
+
+    private int importChunk(List<WebhookRequest> chunk, Provider provider) {
+        Map<String, Subscriber> byEmail = new LinkedHashMap<>();
+        List<String> emails = chunk.stream().map(WebhookRequest::getEmail).distinct().toList();
+        for (Subscriber existing : repository.findByEmailIn(emails)) {
+            byEmail.put(existing.getEmail(), existing);
+        }
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        for (WebhookRequest req : chunk) {
+            Subscriber subscriber = byEmail.computeIfAbsent(req.getEmail(), email -> Subscriber.builder()
+                    .email(email)
+                    .createdAt(now)
+                    .build());
+            applyTo(subscriber, req, provider);
         }
-        return new RuntimeException(ex);
+
+        repository.saveAll(byEmail.values());
+        entityManager.flush();
+
+        // IDs já atribuídos pela sequence; as compras do bloco vão em um batch JDBC na mesma transação
+        List<Purchase> purchases = new ArrayList<>();
+        for (WebhookRequest req : chunk) {
+            Purchase purchase = toPurchase(req, provider, now);
+            if (purchase == null) continue;
+            purchase.setSubscriberId(byEmail.get(req.getEmail()).getId());
+            purchases.add(purchase);
+        }
+        purchaseRepository.appendAll(purchases);
+
+        entityManager.clear();
+        return byEmail.size();
+    }
+
+    // Mesma regra do upsert: campos informados sobrescrevem, ausentes preservam o valor atual (compras vão para purchases)
+    private static void applyTo(Subscriber s, WebhookRequest req, Provider provider) {
+        if (req.getName() != null) s.setName(req.getName());
+        if (req.getFirstName() != null) s.setFirstName(req.getFirstName());
+        if (req.getLastName() != null) s.setLastName(req.getLastName());
+        if (req.getPhone() != null) s.setPhone(req.getPhone());
+        if (req.getDocument() != null) s.setDocument(req.getDocument());
+        if (req.getZipcode() != null) s.setZipcode(req.getZipcode());
+        if (req.getCity() != null) s.setCity(req.getCity());
+        if (req.getState() != null) s.setState(req.getState());
+        if (req.getCountry() != null) s.setCountry(req.getCountry());
+        s.setProvider(provider);
+        s.setFingerprint(SubscriberFingerprints.of(req, provider));
     }
 }
@@ -0,0 +1,166 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.model.Subscriber;
+import br.com.ecs.arquetipos.repository.SubscriberRepository;
+import br.com.ecs.arquetipos.repository.SubscriberRepositoryCustom.Upserted;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit dos upserts de subscribers: acumula as gravações por alguns milissegundos (ou até
+ * max-size linhas) e as envia em um único comando multi-row, pagando um commit por lote em vez de
+ * um por webhook. Cada chamador recebe o próprio registro pelo seu future.
+ * Todas as rodadas de um lote gravam na mesma transação, e os futures só são completados depois
+ * do commit: se ela desfizer, todos os chamadores do lote recebem a falha.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(value = "subscriber.batching.enabled", havingValue = "true")
+public class SubscriberUpsertBatcher {
+
+    private record Pending(Subscriber candidate, CompletableFuture<Upserted> result) {
+    }
+
+    private final SubscriberRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+    private final Duration linger;
+    private final BlockingQueue<Pending> queue;
+    private final DistributionSummary batchSizes;
+    private final Timer flushTimer;
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    public SubscriberUpsertBatcher(SubscriberRepository repository,
+                                   TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${subscriber.batching.max-size:100}") int maxBatchSize,
+                                   @Value("${subscriber.batching.linger:5ms}") Duration linger,
+                                   @Value("${subscriber.batching.queue-capacity:10000}") int queueCapacity) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxBatchSize = maxBatchSize;
+        this.linger = linger;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("subscriber.upsert.batch.max_size", () -> this.maxBatchSize)
+                .description("Tamanho máximo configurado para um lote de upserts")
+                .register(meterRegistry);
+        Gauge.builder("subscriber.upsert.batch.linger", () -> this.linger.toMillis())
+                .description("Tempo máximo configurado de espera por mais linhas antes do flush")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("subscriber.upsert.queue", queue, BlockingQueue::size)
+                .description("Upserts aguardando o próximo lote")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("subscriber.upsert.batch.size")
+                .description("Linhas gravadas por lote")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("subscriber.upsert.batch.flush")
+                .description("Duração da gravação de cada lote")
+                .register(meterRegistry);
+
+        this.flusher = new Thread(this::run, "subscriber-upsert-batcher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Enfileira o candidato para o próximo lote. Com a fila cheia, falha na hora em vez de
+     * acumular latência.
+     */
+    public CompletableFuture<Upserted> submit(Subscriber candidate) {
+        CompletableFuture<Upserted> result = new CompletableFuture<>();
+        if (!running || !queue.offer(new Pending(candidate, result))) {
+            result.completeExceptionally(new IllegalStateException("Subscriber upsert queue is full"));
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                List<Pending> batch = new ArrayList<>();
+                batch.add(first);
+                long deadline = System.nanoTime() + linger.toNanos();
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // stop(): sai do laço e grava o que restou na fila
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        List<Pending> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += maxBatchSize) {
+            flush(remaining.subList(i, Math.min(remaining.size(), i + maxBatchSize)));
+        }
+    }
+
+    void flush(List<Pending> batch) {
+        batchSizes.record(batch.size());
+        // O mesmo email não pode aparecer duas vezes no mesmo comando: repetições vão para rodadas seguintes, em ordem
+        List<List<Pending>> rounds = rounds(batch);
+        List<List<Upserted>> saved;
+        try {
+            saved = flushTimer.recordCallable(() -> transactionTemplate.execute(status -> rounds.stream()
+                    .map(round -> repository.upsertAll(round.stream().map(Pending::candidate).toList()))
+                    .toList()));
+        } catch (Exception e) {
+            log.error("Falha ao gravar lote de {} subscribers: {}", batch.size(), e.getMessage());
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+            return;
+        }
+        for (int r = 0; r < rounds.size(); r++) {
+            List<Pending> round = rounds.get(r);
+            for (int i = 0; i < round.size(); i++) {
+                round.get(i).result().complete(saved.get(r).get(i));
+            }
+        }
+    }
+
+    private static List<List<Pending>> rounds(List<Pending> batch) {
+        List<List<Pending>> rounds = new ArrayList<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (Pending pending : batch) {
+            int round = occurrences.merge(pending.candidate().getEmail(), 1, Integer::sum) - 1;
+            if (round == rounds.size()) rounds.add(new ArrayList<>());
+            rounds.get(round).add(pending);
+        }
+        return rounds;
+    }
+}
@@ -0,0 +1,143 @@
+package br.com.ecs.arquetipos.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache limitado por tamanho e com expiração por tipo de resultado para as validações de email.
+ * Resultados positivos vivem mais que os negativos; erros ficam apenas alguns segundos para
+ * absorver rajadas sem mascarar a recuperação da Hotmart.
+ */
+@Component
+@Slf4j
+public class ValidationResultCache {
+
+    public enum Outcome {
+        ACTIVE,
+        NOT_FOUND,
+        ERROR
+    }
+
+    public record Entry(Outcome outcome, RuntimeException error) {
+
+        // Devolve o resultado em cache, relançando o erro original quando for o caso
+        public boolean resolve() {
+            if (outcome == Outcome.ERROR) throw error;
+            return outcome == Outcome.ACTIVE;
+        }
+    }
+
+    private final Cache<String, Entry> cache;
+
+    // Último resultado válido (ativo/não encontrado) por email, usado quando a Hotmart está indisponível
+    private final Cache<String, Boolean> lastKnownGood;
+
+    // Incrementado a cada invalidação; consultas iniciadas antes dela não gravam no cache
+    private final AtomicLong version = new AtomicLong();
+
+    public ValidationResultCache(@Value("${validation.cache.max-size:10000}") long maxSize,
+                                 @Value("${validation.cache.active-ttl:10m}") Duration activeTtl,
+                                 @Value("${validation.cache.not-found-ttl:1m}") Duration notFoundTtl,
+                                 @Value("${validation.cache.error-ttl:5s}") Duration errorTtl,
+                                 @Value("${validation.cache.stale-max-size:100000}") long staleMaxSize,
+                                 @Value("${validation.cache.stale-ttl:7d}") Duration staleTtl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry value, long currentTime) {
+                        return ttlFor(value.outcome()).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry value, long currentTime, long currentDuration) {
+                        return ttlFor(value.outcome()).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    private Duration ttlFor(Outcome outcome) {
+                        return switch (outcome) {
+                            case ACTIVE -> activeTtl;
+                            case NOT_FOUND -> notFoundTtl;
+                            case ERROR -> errorTtl;
+                        };
+                    }
+                })
+                .build();
+        this.lastKnownGood = Caffeine.newBuilder()
+                .maximumSize(staleMaxSize)
+                .expireAfterWrite(staleTtl)
+                .build();
+    }
+
+    public static String normalize(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public Entry get(String email) {
+        return cache.getIfPresent(normalize(email));
+    }
+
+    /**
+     * Versão atual do cache. Deve ser lida antes da consulta e repassada em {@link #put}/{@link #putError}
+     * para que um resultado calculado antes de uma invalidação não sobrescreva dados mais novos.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public void put(String email, boolean active, long expectedVersion) {
+        if (store(email, new Entry(active ? Outcome.ACTIVE : Outcome.NOT_FOUND, null), expectedVersion)) {
+            lastKnownGood.put(normalize(email), active);
+        }
+    }
+
+    // Último resultado válido conhecido, mesmo que já expirado no cache principal; null se nunca houve
+    public Boolean lastKnownGood(String email) {
+        return lastKnownGood.getIfPresent(normalize(email));
+    }
+
+    public void putError(String email, RuntimeException error, long expectedVersion) {
+        store(email, new Entry(Outcome.ERROR, error), expectedVersion);
+    }
+
+    public void invalidate(String email) {
+        if (email == null) return;
+        version.incrementAndGet();
+        cache.invalidate(normalize(email));
+        lastKnownGood.invalidate(normalize(email));
+    }
+
+    public void invalidateAll() {
+        version.incrementAndGet();
+        cache.invalidateAll();
+        lastKnownGood.invalidateAll();
+    }
+
+    private boolean store(String email, Entry entry, long expectedVersion) {
+        if (version.get() != expectedVersion) {
+            log.debug("Descartando resultado de validação obtido antes de uma invalidação: {}", email);
+            return false;
+        }
+        String key = normalize(email);
+        cache.put(key, entry);
+        // Uma invalidação concorrente pode ter ocorrido entre a checagem e o put
+        if (version.get() != expectedVersion) {
+            cache.invalidate(key);
+            return false;
+        }
+        return true;
+    }
+}
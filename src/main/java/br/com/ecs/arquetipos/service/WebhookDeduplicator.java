@@ -0,0 +1,170 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.HotmartWebhookPayload;
+import br.com.ecs.arquetipos.model.ProcessedWebhookEvent;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.repository.ProcessedWebhookEventRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Reconhece reentregas de webhooks antes do SubscriberService. Uma janela em memória responde as
+ * reentregas recentes sem I/O; fora dela, a tabela processed_webhook_events (chave única
+ * provider + event_key) garante a mesma resposta mesmo após reinícios ou entre instâncias.
+ * <p>
+ * O evento é reservado na tabela antes do processamento ({@link #claim}): entre entregas
+ * simultâneas só uma ganha a reserva, e as demais recebem o evento como em andamento.
+ */
+@Service
+@Slf4j
+public class WebhookDeduplicator {
+
+    // Resultado do processamento original, devolvido às reentregas
+    public record ProcessedEvent(Long subscriberId, String email) {
+
+        static final ProcessedEvent IN_PROGRESS = new ProcessedEvent(null, null);
+
+        // Reservado por outra entrega que ainda não terminou (todo evento concluído grava o email)
+        public boolean inProgress() {
+            return email == null;
+        }
+    }
+
+    private final ProcessedWebhookEventRepository repository;
+    private final Cache<String, ProcessedEvent> recent;
+    private final Duration retention;
+    private final Duration claimTimeout;
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter inProgress;
+    private final Counter misses;
+
+    public WebhookDeduplicator(ProcessedWebhookEventRepository repository,
+                               MeterRegistry meterRegistry,
+                               @Value("${webhook.dedup.window-size:100000}") long windowSize,
+                               @Value("${webhook.dedup.window-ttl:24h}") Duration windowTtl,
+                               @Value("${webhook.dedup.retention:30d}") Duration retention,
+                               @Value("${webhook.dedup.claim-timeout:PT5M}") Duration claimTimeout) {
+        this.repository = repository;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(windowSize)
+                .expireAfterWrite(windowTtl)
+                .build();
+        this.retention = retention;
+        this.claimTimeout = claimTimeout;
+        this.memoryHits = lookupCounter(meterRegistry, "memory");
+        this.databaseHits = lookupCounter(meterRegistry, "database");
+        this.inProgress = lookupCounter(meterRegistry, "in_progress");
+        this.misses = lookupCounter(meterRegistry, "miss");
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("webhook.dedup.lookups")
+                .description("Verificações de reentrega de webhook por resultado")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Chave de idempotência de um webhook da Hotmart: o id do evento, que se repete nas reentregas;
+     * sem ele, a transação combinada com o tipo do evento (uma mesma compra gera vários eventos).
+     *
+     * @return a chave, ou {@code null} quando o payload não traz nenhum identificador
+     */
+    public static String hotmartEventKey(HotmartWebhookPayload payload) {
+        if (payload == null) return null;
+        if (payload.getId() != null && !payload.getId().isBlank()) {
+            return "event:" + payload.getId();
+        }
+        HotmartWebhookPayload.DataNode data = payload.getData();
+        String transaction = data != null && data.getPurchase() != null ? data.getPurchase().getTransaction() : null;
+        if (transaction == null || transaction.isBlank()) return null;
+        return "tx:" + transaction + ":" + (payload.getEvent() != null ? payload.getEvent() : "");
+    }
+
+    /**
+     * Reserva o evento para processamento. A reserva é a própria linha em processed_webhook_events
+     * (ainda sem email); só quem a grava processa. Reservas abandonadas (instância que caiu no meio)
+     * são assumidas depois de {@code webhook.dedup.claim-timeout}.
+     *
+     * @return vazio quando a reserva foi obtida (ou não há chave) e o evento deve ser processado;
+     * caso contrário o resultado já gravado, ou {@link ProcessedEvent#inProgress()} se outra entrega
+     * ainda está processando
+     */
+    public Optional<ProcessedEvent> claim(Provider provider, String eventKey) {
+        if (eventKey == null) return Optional.empty();
+        String cacheKey = cacheKey(provider, eventKey);
+        ProcessedEvent cached = recent.getIfPresent(cacheKey);
+        if (cached != null) {
+            memoryHits.increment();
+            return Optional.of(cached);
+        }
+
+        Instant now = Instant.now();
+        if (repository.insertIfAbsent(provider.name(), eventKey, null, null, now) == 1) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        Optional<ProcessedWebhookEvent> stored = repository.findById(new ProcessedWebhookEvent.Key(provider, eventKey));
+        if (stored.isPresent() && stored.get().getEmail() != null) {
+            ProcessedEvent processed = new ProcessedEvent(stored.get().getSubscriberId(), stored.get().getEmail());
+            databaseHits.increment();
+            recent.put(cacheKey, processed);
+            return Optional.of(processed);
+        }
+        if (stored.isPresent()
+                && repository.takeOverStaleClaim(provider.name(), eventKey, now.minus(claimTimeout), now) == 1) {
+            log.warn("Reserva abandonada do evento de webhook {} assumida após {}", eventKey, claimTimeout);
+            misses.increment();
+            return Optional.empty();
+        }
+        inProgress.increment();
+        return Optional.of(ProcessedEvent.IN_PROGRESS);
+    }
+
+    /** Grava o resultado de um evento reservado por {@link #claim}. */
+    public void complete(Provider provider, String eventKey, Long subscriberId, String email) {
+        if (eventKey == null) return;
+        try {
+            repository.complete(provider.name(), eventKey, subscriberId, email, Instant.now());
+        } catch (Exception e) {
+            // Não falha o webhook: a reserva expira e a reentrega passa de novo pelo upsert idempotente
+            log.warn("Falha ao registrar evento de webhook processado ({}): {}", eventKey, e.getMessage());
+        }
+        recent.put(cacheKey(provider, eventKey), new ProcessedEvent(subscriberId, email));
+    }
+
+    /** Desfaz a reserva de um evento cujo processamento falhou, para que a reentrega o processe. */
+    public void release(Provider provider, String eventKey) {
+        if (eventKey == null) return;
+        try {
+            repository.releaseClaim(provider.name(), eventKey);
+        } catch (Exception e) {
+            // A reserva expira sozinha depois de claim-timeout
+            log.warn("Falha ao liberar reserva do evento de webhook ({}): {}", eventKey, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${webhook.dedup.purge-interval:PT1H}", initialDelayString = "${webhook.dedup.purge-interval:PT1H}")
+    public void purgeExpired() {
+        int removed = repository.deleteProcessedBefore(Instant.now().minus(retention));
+        if (removed > 0) {
+            log.info("Removidos {} eventos de webhook processados há mais de {} dias", removed, retention.toDays());
+        }
+    }
+
+    private static String cacheKey(Provider provider, String eventKey) {
+        return provider.name() + "|" + eventKey;
+    }
+}
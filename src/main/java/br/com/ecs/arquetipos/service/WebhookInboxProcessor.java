@@ -0,0 +1,269 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.WebhookInboxMessage;
+import br.com.ecs.arquetipos.repository.WebhookInboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Workers do modo assíncrono de webhooks. Cada worker reserva um lote da webhook_inbox
+ * (FOR UPDATE SKIP LOCKED), processa as mensagens pelo SubscriberService e remove as concluídas.
+ * Falhas voltam para a fila com backoff exponencial; payloads ilegíveis ou que esgotam as
+ * tentativas ficam em DEAD para análise manual.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(value = "webhook.async.enabled", havingValue = "true")
+public class WebhookInboxProcessor {
+
+    private static final List<WebhookInboxMessage.Status> QUEUED =
+            List.of(WebhookInboxMessage.Status.PENDING, WebhookInboxMessage.Status.PROCESSING);
+
+    private final WebhookInboxRepository repository;
+    private final SubscriberService subscriberService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int workers;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration lockTimeout;
+    private final int maxAttempts;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+
+    private final Counter processed;
+    private final Counter retried;
+    private final Counter deadLettered;
+    private final AtomicLong depth = new AtomicLong();
+    private final AtomicLong dead = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private ExecutorService executor;
+
+    public WebhookInboxProcessor(WebhookInboxRepository repository,
+                                 SubscriberService subscriberService,
+                                 TransactionTemplate transactionTemplate,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${webhook.async.workers:4}") int workers,
+                                 @Value("${webhook.async.batch-size:50}") int batchSize,
+                                 @Value("${webhook.async.poll-interval:500ms}") Duration pollInterval,
+                                 @Value("${webhook.async.lock-timeout:5m}") Duration lockTimeout,
+                                 @Value("${webhook.async.retry.max-attempts:8}") int maxAttempts,
+                                 @Value("${webhook.async.retry.min-backoff:5s}") Duration minBackoff,
+                                 @Value("${webhook.async.retry.max-backoff:10m}") Duration maxBackoff) {
+        this.repository = repository;
+        this.subscriberService = subscriberService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.lockTimeout = lockTimeout;
+        this.maxAttempts = maxAttempts;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+
+        this.processed = outcomeCounter(meterRegistry, "success");
+        this.retried = outcomeCounter(meterRegistry, "retry");
+        this.deadLettered = outcomeCounter(meterRegistry, "dead");
+        Gauge.builder("webhook.inbox.depth", depth, AtomicLong::get)
+                .description("Webhooks aguardando processamento na webhook_inbox")
+                .register(meterRegistry);
+        Gauge.builder("webhook.inbox.dead", dead, AtomicLong::get)
+                .description("Webhooks em DEAD aguardando análise manual")
+                .register(meterRegistry);
+        Gauge.builder("webhook.inbox.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("Idade do webhook mais antigo ainda não processado")
+                .register(meterRegistry);
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("webhook.inbox.processed")
+                .description("Mensagens da webhook_inbox processadas por desfecho")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!running.compareAndSet(false, true)) return;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "webhook-inbox-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::workerLoop);
+        }
+        log.info("Processamento assíncrono de webhooks iniciado com {} workers", workers);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running.compareAndSet(true, false)) return;
+        executor.shutdown();
+        // Lotes não concluídos voltam à fila quando o locked_until vencer
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void workerLoop() {
+        while (running.get()) {
+            try {
+                if (drainOnce() == 0) {
+                    Thread.sleep(pollInterval.toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Erro no worker da webhook_inbox: {}", e.getMessage());
+                try {
+                    Thread.sleep(pollInterval.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reserva e processa um lote.
+     *
+     * @return quantidade de mensagens reservadas (0 quando a fila está vazia)
+     */
+    int drainOnce() {
+        List<WebhookInboxMessage> batch = claimBatch();
+        for (WebhookInboxMessage message : batch) {
+            process(message);
+        }
+        return batch.size();
+    }
+
+    /*
+     * Transação curta: apenas marca o lote como PROCESSING; o processamento ocorre fora dela.
+     * Cada reserva conta como tentativa: uma mensagem que derruba o worker (locked_until vence sem
+     * sucesso nem falha registrada) esgota as tentativas e vai para DEAD em vez de voltar para sempre.
+     */
+    private List<WebhookInboxMessage> claimBatch() {
+        List<WebhookInboxMessage> batch = transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            List<WebhookInboxMessage> locked = repository.lockNextBatch(now, batchSize);
+            List<WebhookInboxMessage> claimed = new ArrayList<>(locked.size());
+            for (WebhookInboxMessage message : locked) {
+                if (message.getAttempts() >= maxAttempts) {
+                    markDead(message, "Reserva expirou sem conclusão após " + message.getAttempts() + " tentativas");
+                    continue;
+                }
+                message.setAttempts(message.getAttempts() + 1);
+                message.setStatus(WebhookInboxMessage.Status.PROCESSING);
+                message.setLockedUntil(now.plus(lockTimeout));
+                claimed.add(message);
+            }
+            repository.saveAll(locked);
+            return claimed;
+        });
+        return batch != null ? batch : List.of();
+    }
+
+    private void process(WebhookInboxMessage message) {
+        WebhookRequest request;
+        try {
+            request = objectMapper.readValue(message.getPayload(), WebhookRequest.class);
+        } catch (JsonProcessingException e) {
+            deadLetter(message, "Payload ilegível: " + e.getOriginalMessage());
+            return;
+        }
+
+        try {
+            subscriberService.createOrUpdate(request, message.getProvider());
+            repository.delete(message);
+            processed.increment();
+        } catch (Exception e) {
+            // A tentativa já foi contada na reserva
+            int attempts = message.getAttempts();
+            if (attempts >= maxAttempts) {
+                deadLetter(message, e.getMessage());
+                return;
+            }
+            Duration backoff = backoff(attempts);
+            log.warn("Falha ao processar webhook da inbox (id={}, tentativa {}), nova tentativa em {}s: {}",
+                    message.getId(), attempts, backoff.toSeconds(), e.getMessage());
+            message.setStatus(WebhookInboxMessage.Status.PENDING);
+            message.setNextAttemptAt(Instant.now().plus(backoff));
+            message.setLockedUntil(null);
+            message.setLastError(truncate(e.getMessage()));
+            repository.save(message);
+            retried.increment();
+        }
+    }
+
+    private void deadLetter(WebhookInboxMessage message, String error) {
+        markDead(message, error);
+        repository.save(message);
+    }
+
+    private void markDead(WebhookInboxMessage message, String error) {
+        log.error("Webhook da inbox movido para DEAD (id={}, tentativas={}): {}", message.getId(), message.getAttempts(), error);
+        message.setStatus(WebhookInboxMessage.Status.DEAD);
+        message.setLockedUntil(null);
+        message.setLastError(truncate(error));
+        deadLettered.increment();
+    }
+
+    // Exponencial a partir de min-backoff, limitado a max-backoff
+    Duration backoff(int attempts) {
+        long factor = 1L << Math.min(attempts - 1, 20);
+        Duration delay = minBackoff.multipliedBy(factor);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    // Profundidade e atraso são amostrados periodicamente para não consultar o banco a cada scrape
+    @Scheduled(fixedDelayString = "${webhook.async.metrics-interval:PT15S}")
+    public void refreshMetrics() {
+        try {
+            depth.set(repository.countByStatus(WebhookInboxMessage.Status.PENDING)
+                    + repository.countByStatus(WebhookInboxMessage.Status.PROCESSING));
+            dead.set(repository.countByStatus(WebhookInboxMessage.Status.DEAD));
+            lagSeconds.set(repository.findOldestReceivedAt(QUEUED)
+                    .map(oldest -> Math.max(0, Duration.between(oldest, Instant.now()).toSeconds()))
+                    .orElse(0L));
+        } catch (Exception e) {
+            log.warn("Falha ao atualizar métricas da webhook_inbox: {}", e.getMessage());
+        }
+    }
+
+    private static String truncate(String error) {
+        if (error == null) return null;
+        return error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+}
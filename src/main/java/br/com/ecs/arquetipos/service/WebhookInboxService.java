@@ -0,0 +1,47 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.WebhookInboxMessage;
+import br.com.ecs.arquetipos.repository.WebhookInboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+/**
+ * Entrada do modo assíncrono de webhooks: grava o WebhookRequest já validado na tabela
+ * webhook_inbox (um único INSERT) para que o controller responda 202 sem esperar o processamento.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookInboxService {
+
+    private final WebhookInboxRepository repository;
+    private final ObjectMapper objectMapper;
+
+    public WebhookInboxMessage enqueue(WebhookRequest request, Provider provider) {
+        Instant now = Instant.now();
+        WebhookInboxMessage message = WebhookInboxMessage.builder()
+                .provider(provider)
+                .payload(toJson(request))
+                .receivedAt(now)
+                .nextAttemptAt(now)
+                .build();
+        WebhookInboxMessage saved = repository.save(message);
+        log.info("Webhook enfileirado para processamento assíncrono (id={}, email={})", saved.getId(), request.getEmail());
+        return saved;
+    }
+
+    private String toJson(WebhookRequest request) {
+        try {
+            return objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Webhook payload could not be serialized", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+
+import java.util.regex.Pattern;
+
+/**
+ * Adaptador de um provider de webhook: como reconhecê-lo pelos headers, em qual DTO o corpo é
+ * desserializado e como esse DTO vira um {@link WebhookRequest}. Cada implementação registrada
+ * como bean entra automaticamente no {@link WebhookProviderRegistry}.
+ *
+ * @param <P> tipo do payload do provider
+ */
+public interface WebhookProviderAdapter<P> {
+
+    Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
+
+    Provider provider();
+
+    /** Header que o provider sempre envia (token/assinatura); {@code null} se não houver. */
+    String signatureHeader();
+
+    Class<P> payloadType();
+
+    /**
+     * @throws IllegalArgumentException quando o payload não tem os dados mínimos (email/nome)
+     */
+    WebhookRequest toRequest(P payload);
+
+    // Pequena validação de email (não substitui validação robusta)
+    static boolean isValidEmail(String email) {
+        return email != null && EMAIL_PATTERN.matcher(email).matches();
+    }
+}
@@ -0,0 +1,87 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adaptadores de webhook indexados por {@link Provider}. A detecção consulta só os headers de
+ * assinatura conhecidos (um lookup por provider no {@link HttpHeaders}, que não diferencia
+ * maiúsculas) e o corpo é desserializado direto no DTO tipado do provider.
+ */
+@Component
+public class WebhookProviderRegistry {
+
+    private final ObjectMapper objectMapper;
+    private final Map<Provider, WebhookProviderAdapter<?>> adapters = new EnumMap<>(Provider.class);
+    private final Map<String, Provider> signatureHeaders = new LinkedHashMap<>();
+
+    public WebhookProviderRegistry(ObjectMapper objectMapper, List<WebhookProviderAdapter<?>> adapters) {
+        this.objectMapper = objectMapper;
+        for (WebhookProviderAdapter<?> adapter : adapters) {
+            if (this.adapters.putIfAbsent(adapter.provider(), adapter) != null) {
+                throw new IllegalStateException("Mais de um adaptador de webhook para " + adapter.provider());
+            }
+            if (adapter.signatureHeader() != null && !adapter.signatureHeader().isBlank()) {
+                signatureHeaders.put(adapter.signatureHeader(), adapter.provider());
+            }
+        }
+    }
+
+    /** Provider pelo header de assinatura; {@link Provider#UNKNOWN} quando nenhum está presente. */
+    public Provider detect(HttpHeaders headers) {
+        for (Map.Entry<String, Provider> entry : signatureHeaders.entrySet()) {
+            if (headers.containsKey(entry.getKey())) return entry.getValue();
+        }
+        return Provider.UNKNOWN;
+    }
+
+    public boolean supports(Provider provider) {
+        return adapters.containsKey(provider);
+    }
+
+    /** Desserializa o corpo no DTO do provider e converte para {@link WebhookRequest}. */
+    public WebhookRequest read(Provider provider, byte[] body) {
+        return toRequest(provider, readPayload(provider, body));
+    }
+
+    /** Desserializa o corpo no DTO tipado do provider, sem converter. */
+    public Object readPayload(Provider provider, byte[] body) {
+        return bind(adapter(provider), body);
+    }
+
+    /** Converte um payload já desserializado (endpoints com {@code @RequestBody} tipado). */
+    @SuppressWarnings("unchecked")
+    public <P> WebhookRequest toRequest(Provider provider, P payload) {
+        WebhookProviderAdapter<P> adapter = (WebhookProviderAdapter<P>) adapter(provider);
+        return adapter.toRequest(adapter.payloadType().cast(payload));
+    }
+
+    private <P> P bind(WebhookProviderAdapter<P> adapter, byte[] body) {
+        try {
+            return objectMapper.readValue(body, adapter.payloadType());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON payload", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private WebhookProviderAdapter<?> adapter(Provider provider) {
+        WebhookProviderAdapter<?> adapter = adapters.get(provider);
+        if (adapter == null) {
+            throw new IllegalArgumentException("No webhook adapter registered for provider " + provider);
+        }
+        return adapter;
+    }
+}
@@ -0,0 +1,3 @@
+-- Flyway migration: início da execução do sync em que o membro apareceu na listagem pela última vez.
+-- Ao fim de uma execução completa, quem não foi visto desde o seu início saiu do Club.
+ALTER TABLE club_members ADD COLUMN IF NOT EXISTS last_seen_at TIMESTAMP WITHOUT TIME ZONE;
@@ -0,0 +1,27 @@
+-- Flyway migration: chave de deduplicação das compras por (provider, transaction_id).
+-- O índice único de purchases precisa incluir purchased_at (chave de partição), que cai para o
+-- horário de recebimento quando o payload não traz a data: cada reentrega virava outra compra.
+CREATE TABLE IF NOT EXISTS purchase_transactions (
+    provider VARCHAR(50) NOT NULL,
+    transaction_id VARCHAR(200) NOT NULL,
+    PRIMARY KEY (provider, transaction_id)
+);
+
+-- Reentregas já gravadas: fica a primeira linha de cada transação
+DELETE FROM purchases p
+WHERE p.transaction_id IS NOT NULL
+  AND EXISTS (SELECT 1 FROM purchases o
+              WHERE o.provider = p.provider AND o.transaction_id = p.transaction_id AND o.id < p.id);
+
+INSERT INTO purchase_transactions (provider, transaction_id)
+SELECT DISTINCT provider, transaction_id FROM purchases WHERE transaction_id IS NOT NULL;
+
+DROP INDEX IF EXISTS ux_purchases_transaction;
+
+-- As duplicatas removidas também tinham somado em revenue_daily
+DELETE FROM revenue_daily;
+
+INSERT INTO revenue_daily (product_id, currency, purchase_day, purchases, revenue)
+SELECT COALESCE(product_id, ''), COALESCE(currency, ''), CAST(purchased_at AS DATE), COUNT(*), COALESCE(SUM(price), 0)
+FROM purchases
+GROUP BY COALESCE(product_id, ''), COALESCE(currency, ''), CAST(purchased_at AS DATE);
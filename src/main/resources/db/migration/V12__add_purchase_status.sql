@@ -0,0 +1,17 @@
+-- Flyway migration: situação da compra (aprovada, reembolsada, chargeback...). Reembolso e chargeback
+-- viram linhas próprias que estornam a receita; a deduplicação passa a considerar o status, senão o
+-- reembolso de uma transação seria descartado como reentrega da aprovação.
+ALTER TABLE purchases ADD COLUMN IF NOT EXISTS status VARCHAR(20) DEFAULT 'APPROVED' NOT NULL;
+
+-- Chave da V11 sem o status: recriada a partir das compras (todas aprovadas até aqui)
+DROP TABLE IF EXISTS purchase_transactions;
+
+CREATE TABLE purchase_transactions (
+    provider VARCHAR(50) NOT NULL,
+    transaction_id VARCHAR(200) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    PRIMARY KEY (provider, transaction_id, status)
+);
+
+INSERT INTO purchase_transactions (provider, transaction_id, status)
+SELECT DISTINCT provider, transaction_id, status FROM purchases WHERE transaction_id IS NOT NULL;
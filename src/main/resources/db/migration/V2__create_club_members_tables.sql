@@ -0,0 +1,20 @@
+-- Flyway migration: espelho local dos membros do Club da Hotmart (sync periódico)
+CREATE TABLE IF NOT EXISTS club_members (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    subdomain VARCHAR(150) NOT NULL,
+    email VARCHAR(320) NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    updated_at TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_club_members_subdomain_email ON club_members(subdomain, email);
+
+-- Checkpoint do sync: permite retomar a partir da última página confirmada
+CREATE TABLE IF NOT EXISTS club_sync_checkpoints (
+    subdomain VARCHAR(150) PRIMARY KEY,
+    next_page_token VARCHAR(1000),
+    run_started_at TIMESTAMP WITHOUT TIME ZONE,
+    last_completed_at TIMESTAMP WITHOUT TIME ZONE,
+    pages_synced INT NOT NULL DEFAULT 0,
+    members_synced BIGINT NOT NULL DEFAULT 0
+);
@@ -0,0 +1,15 @@
+-- Flyway migration: fila durável de webhooks recebidos no modo assíncrono
+CREATE TABLE IF NOT EXISTS webhook_inbox (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    provider VARCHAR(50) NOT NULL,
+    payload TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    received_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    next_attempt_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    locked_until TIMESTAMP WITHOUT TIME ZONE,
+    last_error VARCHAR(1000)
+);
+
+-- Usado pelos workers ao buscar o próximo lote pronto para processamento
+CREATE INDEX IF NOT EXISTS ix_webhook_inbox_status_next_attempt ON webhook_inbox(status, next_attempt_at);
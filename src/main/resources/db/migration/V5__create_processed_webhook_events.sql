@@ -0,0 +1,12 @@
+-- Flyway migration: eventos de webhook já processados, para reconhecer reentregas da Hotmart
+CREATE TABLE IF NOT EXISTS processed_webhook_events (
+    provider VARCHAR(50) NOT NULL,
+    event_key VARCHAR(300) NOT NULL,
+    subscriber_id BIGINT,
+    email VARCHAR(320),
+    processed_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (provider, event_key)
+);
+
+-- Usado pela limpeza periódica dos eventos antigos
+CREATE INDEX IF NOT EXISTS ix_processed_webhook_events_processed_at ON processed_webhook_events(processed_at);
@@ -0,0 +1,2 @@
+-- Flyway migration: hash do último payload de webhook aplicado a cada subscriber
+ALTER TABLE subscribers ADD COLUMN IF NOT EXISTS fingerprint BIGINT;
@@ -0,0 +1,7 @@
+-- Flyway migration: índices da paginação por keyset de GET /subscribers, ordenada por
+-- (created_at, id) decrescente. Cada página é um seek no índice, independente da profundidade.
+CREATE INDEX IF NOT EXISTS ix_subscribers_created_at_id ON subscribers(created_at, id);
+CREATE INDEX IF NOT EXISTS ix_subscribers_provider_created_at_id ON subscribers(provider, created_at, id);
+
+-- Filtros por produto/data de compra viram um EXISTS por subscriber resolvido só com o índice
+CREATE INDEX IF NOT EXISTS ix_purchases_subscriber_product ON purchases(subscriber_id, product_id, purchased_at);
@@ -0,0 +1,20 @@
+-- Flyway migration: receita consolidada por produto, moeda e dia (UTC) de purchased_at. Mantida
+-- incrementalmente na mesma transação de cada compra nova; relatórios leem só esta tabela.
+-- Produto/moeda ausentes viram '' para caber na chave primária.
+CREATE TABLE IF NOT EXISTS revenue_daily (
+    product_id VARCHAR(100) NOT NULL,
+    currency VARCHAR(10) NOT NULL,
+    purchase_day DATE NOT NULL,
+    purchases BIGINT NOT NULL,
+    revenue NUMERIC(19,4) NOT NULL,
+    PRIMARY KEY (product_id, currency, purchase_day)
+);
+
+-- Consultas de dashboard filtram só por período
+CREATE INDEX IF NOT EXISTS ix_revenue_daily_purchase_day ON revenue_daily(purchase_day);
+
+-- Compras já registradas (incluindo as migradas de subscribers na V7)
+INSERT INTO revenue_daily (product_id, currency, purchase_day, purchases, revenue)
+SELECT COALESCE(product_id, ''), COALESCE(currency, ''), CAST(purchased_at AS DATE), COUNT(*), COALESCE(SUM(price), 0)
+FROM purchases
+GROUP BY COALESCE(product_id, ''), COALESCE(currency, ''), CAST(purchased_at AS DATE);
@@ -2,6 +2,7 @@ package br.com.ecs.arquetipos;
 
 import br.com.ecs.arquetipos.controller.ValidationController;
 import br.com.ecs.arquetipos.dto.EmailRequest;
+import br.com.ecs.arquetipos.dto.EmailValidationResult;
 import br.com.ecs.arquetipos.exception.HotmartAPIException;
 import br.com.ecs.arquetipos.service.EmailValidationService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -12,9 +13,15 @@ import org.springframework.boot.test.mock.mockito.MockBean; // 1. Importar @Mock
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -42,12 +49,16 @@ class ValidationControllerTest {
         EmailRequest request = new EmailRequest();
         request.setEmail(userEmail);
 
-        when(emailValidationService.isUserActiveStudent(userEmail)).thenReturn(true);
+        when(emailValidationService.validate(userEmail)).thenReturn(Mono.just(EmailValidationResult.success(userEmail, true)));
 
         // WHEN & THEN
-        mockMvc.perform(post("/validate-email")
+        MvcResult result = mockMvc.perform(post("/validate-email")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.is_student").value(true));
     }
@@ -61,14 +72,67 @@ class ValidationControllerTest {
         EmailRequest request = new EmailRequest();
         request.setEmail(userEmail);
 
-        when(emailValidationService.isUserActiveStudent(anyString()))
-                .thenThrow(new HotmartAPIException("Erro no servidor da Hotmart", HttpStatus.INTERNAL_SERVER_ERROR));
+        when(emailValidationService.validate(anyString()))
+                .thenReturn(Mono.error(new HotmartAPIException("Erro no servidor da Hotmart", HttpStatus.INTERNAL_SERVER_ERROR)));
 
         // WHEN & THEN
-        mockMvc.perform(post("/validate-email")
+        MvcResult result = mockMvc.perform(post("/validate-email")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isInternalServerError())
                 .andExpect(jsonPath("$.code").value("HOTMART_API_ERROR"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenHotmartUnavailable_thenFlagsStaleResult() throws Exception {
+        String userEmail = "aluno@hotmart.com";
+        EmailRequest request = new EmailRequest();
+        request.setEmail(userEmail);
+
+        when(emailValidationService.validate(userEmail)).thenReturn(Mono.just(EmailValidationResult.stale(userEmail, true)));
+
+        MvcResult result = mockMvc.perform(post("/validate-email")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Validation-Stale", "true"))
+                .andExpect(jsonPath("$.is_student").value(true));
+    }
+
+    @Test
+    void whenBatchRequest_thenStreamsNdjsonResults() throws Exception {
+        when(emailValidationService.checkActiveStudents(List.of("a@x.com", "b@x.com")))
+                .thenReturn(Flux.just(
+                        EmailValidationResult.success("a@x.com", true),
+                        EmailValidationResult.error("b@x.com", "HOTMART_API_ERROR")));
+
+        MvcResult result = mockMvc.perform(post("/validate-emails")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"emails\":[\"a@x.com\",\"b@x.com\"]}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"email\":\"a@x.com\",\"status\":\"success\",\"is_student\":true}\n" +
+                        "{\"email\":\"b@x.com\",\"status\":\"error\",\"code\":\"HOTMART_API_ERROR\"}\n"));
+    }
+
+    @Test
+    void whenBatchContainsInvalidEmail_thenBadRequest() throws Exception {
+        mockMvc.perform(post("/validate-emails")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"emails\":[\"a@x.com\",\"invalido\"]}"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,74 @@
+package br.com.ecs.arquetipos.config;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import org.junit.jupiter.api.Test;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebClientConfigTest {
+
+    private final WebClientConfig config = new WebClientConfig();
+
+    @Test
+    void connectionProvider_isNamedAndBounded() {
+        ConnectionProvider provider = config.hotmartConnectionProvider(7, 20, Duration.ofSeconds(2),
+                Duration.ofSeconds(30), Duration.ofMinutes(5), Duration.ofSeconds(30));
+        try {
+            assertEquals("hotmart", provider.name());
+            assertEquals(7, provider.maxConnections());
+        } finally {
+            provider.dispose();
+        }
+    }
+
+    @Test
+    void httpClient_setsTimeoutsAndKeepAliveForTheActiveTransport() {
+        ConnectionProvider provider = ConnectionProvider.create("hotmart-test", 1);
+        try {
+            HttpClient client = WebClientConfig.hotmartHttpClient(provider, Duration.ofSeconds(2), Duration.ofSeconds(5),
+                    Duration.ofSeconds(60), Duration.ofSeconds(10), 3, false);
+            Map<ChannelOption<?>, ?> options = client.configuration().options();
+
+            assertEquals(2000, options.get(ChannelOption.CONNECT_TIMEOUT_MILLIS));
+            assertEquals(true, options.get(ChannelOption.SO_KEEPALIVE));
+            assertEquals(Duration.ofSeconds(5), client.configuration().responseTimeout());
+
+            if (Epoll.isAvailable()) {
+                assertEquals(60, options.get(EpollChannelOption.TCP_KEEPIDLE));
+                assertEquals(10, options.get(EpollChannelOption.TCP_KEEPINTVL));
+                assertEquals(3, options.get(EpollChannelOption.TCP_KEEPCNT));
+            } else {
+                // NioChannelOption não tem instância canônica: compara pelo nome da opção
+                Map<String, Object> byName = options.entrySet().stream()
+                        .collect(Collectors.toMap(e -> e.getKey().name(), Map.Entry::getValue));
+                assertEquals(60, byName.get("TCP_KEEPIDLE"));
+                assertEquals(10, byName.get("TCP_KEEPINTERVAL"));
+                assertEquals(3, byName.get("TCP_KEEPCOUNT"));
+            }
+        } finally {
+            provider.dispose();
+        }
+    }
+
+    @Test
+    void http2_isNegotiatedWithHttp11Fallback() {
+        ConnectionProvider provider = ConnectionProvider.create("hotmart-test", 1);
+        try {
+            HttpClient client = WebClientConfig.hotmartHttpClient(provider, Duration.ofSeconds(2), Duration.ofSeconds(5),
+                    Duration.ofSeconds(60), Duration.ofSeconds(10), 3, true);
+
+            assertArrayEquals(new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}, client.configuration().protocols());
+        } finally {
+            provider.dispose();
+        }
+    }
+}
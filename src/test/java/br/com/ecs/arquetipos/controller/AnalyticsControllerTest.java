@@ -0,0 +1,69 @@
+package br.com.ecs.arquetipos.controller;
+
+import br.com.ecs.arquetipos.dto.RevenueReport;
+import br.com.ecs.arquetipos.dto.RevenueReport.DailyRevenue;
+import br.com.ecs.arquetipos.repository.PurchaseRepository;
+import br.com.ecs.arquetipos.service.RevenueAnalyticsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AnalyticsController.class)
+@Import(RevenueAnalyticsService.class)
+class AnalyticsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private PurchaseRepository purchaseRepository;
+
+    @Test
+    void revenue_returnsDailyRowsAndTotalsByProduct() throws Exception {
+        LocalDate from = LocalDate.of(2026, 5, 1);
+        LocalDate to = LocalDate.of(2026, 5, 3);
+        when(purchaseRepository.revenueByDay(from, to, null, null)).thenReturn(List.of(
+                new DailyRevenue(from, "P1", "BRL", 2, new BigDecimal("194.00")),
+                new DailyRevenue(from, "P2", "BRL", 1, new BigDecimal("297.00")),
+                new DailyRevenue(to, "P1", "BRL", 3, new BigDecimal("291.00"))));
+
+        mockMvc.perform(get("/analytics/revenue").param("from", "2026-05-01").param("to", "2026-05-03"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.from").value("2026-05-01"))
+                .andExpect(jsonPath("$.days.length()").value(3))
+                .andExpect(jsonPath("$.totals[0].productId").value("P1"))
+                .andExpect(jsonPath("$.totals[0].purchases").value(5))
+                .andExpect(jsonPath("$.totals[0].revenue").value(485.00))
+                .andExpect(jsonPath("$.totals[1].productId").value("P2"));
+    }
+
+    @Test
+    void revenue_defaultsToLastThirtyDaysAndRejectsLongPeriods() throws Exception {
+        when(purchaseRepository.revenueByDay(any(), any(), eq("P1"), isNull())).thenReturn(List.of());
+
+        mockMvc.perform(get("/analytics/revenue").param("to", "2026-05-30").param("productId", "P1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.from").value("2026-05-01"))
+                .andExpect(jsonPath("$.totals.length()").value(0));
+
+        mockMvc.perform(get("/analytics/revenue").param("from", "2024-01-01").param("to", "2026-01-01"))
+                .andExpect(status().isBadRequest());
+        verify(purchaseRepository, never()).revenueByDay(eq(LocalDate.of(2024, 1, 1)), any(), any(), any());
+    }
+}
@@ -0,0 +1,239 @@
+package br.com.ecs.arquetipos.controller;
+
+import br.com.ecs.arquetipos.dto.SubscriberPage;
+import br.com.ecs.arquetipos.dto.SubscriberSummary;
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.Purchase;
+import br.com.ecs.arquetipos.model.Subscriber;
+import br.com.ecs.arquetipos.repository.PurchaseRepository;
+import br.com.ecs.arquetipos.repository.SubscriberRepository;
+import br.com.ecs.arquetipos.service.SubscriberService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Contexto completo (H2): a exportação percorre o cursor real do banco
+@SpringBootTest(properties = "subscriber.export.fetch-size=2")
+@AutoConfigureMockMvc
+class SubscriberControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SubscriberRepository repository;
+
+    @Autowired
+    private SubscriberService subscriberService;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        for (int i = 0; i < 5; i++) {
+            // 3 e 4 empatam no created_at: o id desempata a ordem e o cursor
+            repository.upsert(Subscriber.builder()
+                    .name(i == 0 ? "Silva, Ana" : "Aluno " + i)
+                    .email("export" + i + "@example.com")
+                    .createdAt(base.plusSeconds(86_400L * Math.min(i, 3)))
+                    .provider(i % 2 == 0 ? Provider.HOTMART : Provider.EDUZZ)
+                    .build());
+        }
+        Subscriber buyer = repository.findByEmail("export2@example.com").orElseThrow();
+        purchaseRepository.append(Purchase.builder()
+                .subscriberId(buyer.getId()).email(buyer.getEmail()).provider(Provider.HOTMART)
+                .productId("P1").transactionId("HP-EXP").purchasedAt(base).receivedAt(base)
+                .build());
+        Subscriber other = repository.findByEmail("export4@example.com").orElseThrow();
+        purchaseRepository.append(Purchase.builder()
+                .subscriberId(other.getId()).email(other.getEmail()).provider(Provider.HOTMART)
+                .productId("P1").transactionId("HP-EXP-2").purchasedAt(base.plusSeconds(86_400L * 30)).receivedAt(base)
+                .build());
+    }
+
+    @AfterEach
+    void cleanup() {
+        purchaseRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM purchase_transactions");
+        repository.deleteAll();
+    }
+
+    @Test
+    void export_streamsNdjsonOrderedById() throws Exception {
+        MvcResult result = mockMvc.perform(get("/subscribers/export"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-ndjson"))
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":"));
+        assertTrue(lines[0].contains("\"email\":\"export0@example.com\""));
+        assertTrue(lines[0].contains("\"createdAt\":\"2025-01-01T00:00:00Z\""));
+        assertFalse(lines[0].contains("\"city\""));
+        assertTrue(lines[4].contains("export4@example.com"));
+    }
+
+    @Test
+    void export_appliesFiltersAndWritesCsv() throws Exception {
+        String csv = mockMvc.perform(get("/subscribers/export")
+                        .param("format", "csv")
+                        .param("provider", "HOTMART")
+                        .param("createdFrom", "2025-01-01T00:00:00Z")
+                        .param("createdTo", "2025-01-04T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = csv.split("\r\n");
+        assertEquals("id,name,email,created_at,provider,first_name,last_name,phone,document,zipcode,city,state,country", lines[0]);
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].contains(",\"Silva, Ana\",export0@example.com,2025-01-01T00:00:00Z,HOTMART,"));
+        assertTrue(lines[2].contains("export2@example.com"));
+
+        String byProduct = mockMvc.perform(get("/subscribers/export").param("productId", "P1"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertEquals(2, byProduct.split("\n").length);
+        assertTrue(byProduct.contains("export2@example.com"));
+    }
+
+    @Test
+    void export_compressesWhenClientAcceptsGzip() throws Exception {
+        MvcResult result = mockMvc.perform(get("/subscribers/export").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+
+        byte[] compressed = result.getResponse().getContentAsByteArray();
+        String text;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertEquals(5, text.split("\n").length);
+    }
+
+    @Test
+    void export_rejectsUnknownFormat() throws Exception {
+        mockMvc.perform(get("/subscribers/export").param("format", "xlsx"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void list_pagesNewestFirstWithKeysetCursor() throws Exception {
+        List<String> emails = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            var request = get("/subscribers").param("limit", "2");
+            if (after != null) request.param("after", after);
+            SubscriberPage page = objectMapper.readValue(mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8), SubscriberPage.class);
+            page.items().forEach(item -> emails.add(item.email()));
+            after = page.nextCursor();
+            pages++;
+        } while (after != null);
+
+        assertEquals(3, pages);
+        assertEquals(List.of("export4@example.com", "export3@example.com", "export2@example.com",
+                "export1@example.com", "export0@example.com"), emails);
+    }
+
+    @Test
+    void list_filtersByProviderAndPurchase() throws Exception {
+        SubscriberPage eduzz = objectMapper.readValue(mockMvc.perform(get("/subscribers").param("provider", "EDUZZ"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8), SubscriberPage.class);
+        assertEquals(List.of("export3@example.com", "export1@example.com"),
+                eduzz.items().stream().map(SubscriberSummary::email).toList());
+        assertNull(eduzz.nextCursor());
+
+        SubscriberPage january = objectMapper.readValue(mockMvc.perform(get("/subscribers")
+                        .param("productId", "P1")
+                        .param("purchasedFrom", "2025-01-01T00:00:00Z")
+                        .param("purchasedTo", "2025-01-15T00:00:00Z"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8), SubscriberPage.class);
+        assertEquals(1, january.items().size());
+        SubscriberSummary item = january.items().get(0);
+        assertEquals("export2@example.com", item.email());
+        assertEquals(Provider.HOTMART, item.provider());
+        assertEquals(Instant.parse("2025-01-03T00:00:00Z"), item.createdAt());
+    }
+
+    @Test
+    void list_rejectsInvalidCursor() throws Exception {
+        mockMvc.perform(get("/subscribers").param("after", "nao-e-um-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void get_servesCachedBodyWithEtagAndNotModified() throws Exception {
+        WebhookRequest req = new WebhookRequest();
+        req.setName("Helena");
+        req.setEmail("helena@example.com");
+        req.setCity("Curitiba");
+        Subscriber saved = subscriberService.createOrUpdate(req, Provider.HOTMART);
+
+        MvcResult first = mockMvc.perform(get("/subscribers/{id}", saved.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(jsonPath("$.email").value("helena@example.com"))
+                .andExpect(jsonPath("$.city").value("Curitiba"))
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+
+        mockMvc.perform(get("/subscribers/{id}", saved.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"outro\", " + etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().bytes(new byte[0]));
+
+        // A gravação substitui a resposta em cache: o ETag antigo deixa de valer
+        req.setCity("Londrina");
+        subscriberService.createOrUpdate(req, Provider.HOTMART);
+        MvcResult updated = mockMvc.perform(get("/subscribers/{id}", saved.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.city").value("Londrina"))
+                .andReturn();
+        assertNotEquals(etag, updated.getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void get_loadsMissingEntriesAndReturnsNotFound() throws Exception {
+        Subscriber seeded = repository.findByEmail("export1@example.com").orElseThrow();
+        mockMvc.perform(get("/subscribers/{id}", seeded.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Aluno 1"))
+                .andExpect(jsonPath("$.provider").value("EDUZZ"));
+
+        mockMvc.perform(get("/subscribers/{id}", Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -3,20 +3,32 @@ package br.com.ecs.arquetipos.controller;
 import br.com.ecs.arquetipos.dto.WebhookRequest;
 import br.com.ecs.arquetipos.model.Subscriber;
 import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.WebhookInboxMessage;
+import br.com.ecs.arquetipos.service.EduzzWebhookAdapter;
+import br.com.ecs.arquetipos.service.HotmartWebhookAdapter;
 import br.com.ecs.arquetipos.service.SubscriberService;
+import br.com.ecs.arquetipos.service.WebhookDeduplicator;
+import br.com.ecs.arquetipos.service.WebhookInboxService;
+import br.com.ecs.arquetipos.service.WebhookProviderRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.Instant;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -25,6 +37,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @Deprecated
 @SuppressWarnings({"deprecation","unused"})
 @WebMvcTest(WebhookController.class)
+@Import({WebhookProviderRegistry.class, HotmartWebhookAdapter.class, EduzzWebhookAdapter.class})
 public class WebhookControllerTest {
 
     @Autowired
@@ -33,6 +46,15 @@ public class WebhookControllerTest {
     @MockBean
     private SubscriberService subscriberService;
 
+    @MockBean
+    private WebhookInboxService webhookInboxService;
+
+    @MockBean
+    private WebhookDeduplicator webhookDeduplicator;
+
+    @Autowired
+    private WebhookController controller;
+
     @Test
     void whenValidRequest_thenReturnsCreated() throws Exception {
         Subscriber s = Subscriber.builder()
@@ -42,7 +64,7 @@ public class WebhookControllerTest {
                 .createdAt(Instant.now())
                 .build();
 
-        when(subscriberService.createOrUpdate("Fulano", "fulano@example.com", Provider.HOTMART)).thenReturn(s);
+        when(subscriberService.createOrUpdate(any(WebhookRequest.class), eq(Provider.HOTMART))).thenReturn(s);
 
         mockMvc.perform(post("/webhook")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -153,4 +175,198 @@ public class WebhookControllerTest {
         assertEquals(0, captured.getPrice().compareTo(new java.math.BigDecimal("150.6")));
         assertNotNull(captured.getPurchaseDate());
     }
+
+    @Test
+    void whenAsyncIntakeEnabled_thenQueuedAndAccepted() throws Exception {
+        ReflectionTestUtils.setField(controller, "asyncIntake", true);
+        try {
+            when(webhookInboxService.enqueue(any(WebhookRequest.class), eq(Provider.HOTMART)))
+                    .thenReturn(WebhookInboxMessage.builder().id(7L).build());
+
+            mockMvc.perform(post("/webhook")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Fulano\",\"email\":\"fulano@example.com\"}"))
+                    .andExpect(status().isAccepted())
+                    .andExpect(jsonPath("$.status").value("accepted"))
+                    .andExpect(jsonPath("$.id").value(7))
+                    .andExpect(jsonPath("$.email").value("fulano@example.com"));
+
+            verify(subscriberService, never()).createOrUpdate(any(WebhookRequest.class), any());
+        } finally {
+            ReflectionTestUtils.setField(controller, "asyncIntake", false);
+        }
+    }
+
+    @Test
+    void whenUnsignedPayloadWithUnknownProvider_thenSyncAndAsyncStoreTheSameRequest() throws Exception {
+        String payload = "{\"name\":\"Fulano\",\"email\":\"fulano@example.com\",\"city\":\"Recife\",\"phone\":\"81999990000\"}";
+        ArgumentCaptor<WebhookRequest> sync = ArgumentCaptor.forClass(WebhookRequest.class);
+        when(subscriberService.createOrUpdate(sync.capture(), eq(Provider.HOTMART))).thenReturn(Subscriber.builder()
+                .id(1L).name("Fulano").email("fulano@example.com").createdAt(Instant.now()).build());
+
+        mockMvc.perform(post("/webhook").contentType(MediaType.APPLICATION_JSON).content(payload))
+                .andExpect(status().isCreated());
+
+        ReflectionTestUtils.setField(controller, "asyncIntake", true);
+        try {
+            ArgumentCaptor<WebhookRequest> async = ArgumentCaptor.forClass(WebhookRequest.class);
+            when(webhookInboxService.enqueue(async.capture(), eq(Provider.HOTMART)))
+                    .thenReturn(WebhookInboxMessage.builder().id(7L).build());
+
+            mockMvc.perform(post("/webhook").contentType(MediaType.APPLICATION_JSON).content(payload))
+                    .andExpect(status().isAccepted());
+
+            assertEquals("Recife", sync.getValue().getCity());
+            assertEquals("81999990000", sync.getValue().getPhone());
+            assertEquals(sync.getValue(), async.getValue());
+        } finally {
+            ReflectionTestUtils.setField(controller, "asyncIntake", false);
+        }
+    }
+
+    @Test
+    void whenHotmartEventAlreadyProcessed_thenReplayAcknowledgedWithoutSaving() throws Exception {
+        when(webhookDeduplicator.claim(Provider.HOTMART, "event:evt-1"))
+                .thenReturn(Optional.of(new WebhookDeduplicator.ProcessedEvent(42L, "buyer@email.com")));
+
+        mockMvc.perform(post("/webhook/hotmart")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"evt-1\",\"event\":\"PURCHASE_APPROVED\",\"data\":{\"buyer\":{\"email\":\"buyer@email.com\"}}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.replay").value(true))
+                .andExpect(jsonPath("$.id").value(42))
+                .andExpect(jsonPath("$.email").value("buyer@email.com"));
+
+        verifyNoInteractions(subscriberService);
+        verify(webhookDeduplicator, never()).complete(any(), any(), any(), any());
+    }
+
+    @Test
+    void whenHotmartEventIsBeingProcessedElsewhere_thenConflictWithoutSaving() throws Exception {
+        when(webhookDeduplicator.claim(Provider.HOTMART, "event:evt-2"))
+                .thenReturn(Optional.of(new WebhookDeduplicator.ProcessedEvent(null, null)));
+
+        mockMvc.perform(post("/webhook/hotmart")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"evt-2\",\"event\":\"PURCHASE_APPROVED\",\"data\":{\"buyer\":{\"email\":\"buyer@email.com\"}}}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value("processing"));
+
+        verifyNoInteractions(subscriberService);
+    }
+
+    @Test
+    void whenHotmartProcessingFails_thenClaimIsReleased() throws Exception {
+        when(subscriberService.createOrUpdate(any(WebhookRequest.class), eq(Provider.HOTMART)))
+                .thenThrow(new IllegalStateException("db down"));
+
+        mockMvc.perform(post("/webhook/hotmart")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"evt-3\",\"event\":\"PURCHASE_APPROVED\",\"data\":{\"buyer\":{\"email\":\"buyer@email.com\"}}}"))
+                .andExpect(status().is5xxServerError());
+
+        verify(webhookDeduplicator).claim(Provider.HOTMART, "event:evt-3");
+        verify(webhookDeduplicator).release(Provider.HOTMART, "event:evt-3");
+        verify(webhookDeduplicator, never()).complete(any(), any(), any(), any());
+    }
+
+    @Test
+    void whenGenericRequestSignedByHotmart_thenDeduplicatedLikeHotmartEndpoint() throws Exception {
+        when(webhookDeduplicator.claim(Provider.HOTMART, "event:evt-4"))
+                .thenReturn(Optional.of(new WebhookDeduplicator.ProcessedEvent(42L, "buyer@email.com")));
+
+        mockMvc.perform(post("/webhook")
+                        .header("X-Hotmart-Hottok", "token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"evt-4\",\"event\":\"PURCHASE_APPROVED\",\"data\":{\"buyer\":{\"email\":\"buyer@email.com\"}}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.replay").value(true))
+                .andExpect(jsonPath("$.provider").value("HOTMART"));
+
+        verifyNoInteractions(subscriberService);
+    }
+
+    @Test
+    void whenGenericRequestSignedByHotmart_thenClaimedAndCompleted() throws Exception {
+        Subscriber saved = Subscriber.builder().id(9L).name("Ana").email("ana@x.com").build();
+        when(subscriberService.createOrUpdate(any(WebhookRequest.class), eq(Provider.HOTMART))).thenReturn(saved);
+
+        mockMvc.perform(post("/webhook")
+                        .header("X-Hotmart-Hottok", "token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"evt-5\",\"event\":\"PURCHASE_APPROVED\",\"data\":{\"buyer\":{\"name\":\"Ana\",\"email\":\"ana@x.com\"}}}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.provider").value("HOTMART"));
+
+        verify(webhookDeduplicator).complete(Provider.HOTMART, "event:evt-5", 9L, "ana@x.com");
+    }
+
+    @Test
+    void whenEduzzSignatureHeader_thenBoundToTypedPayload() throws Exception {
+        Subscriber saved = Subscriber.builder().id(5L).name("Maria").email("maria@x.com").build();
+        ArgumentCaptor<WebhookRequest> captor = ArgumentCaptor.forClass(WebhookRequest.class);
+        when(subscriberService.createOrUpdate(captor.capture(), eq(Provider.EDUZZ))).thenReturn(saved);
+
+        mockMvc.perform(post("/webhook")
+                        .header("x-eduzz-signature", "abc")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"event\":\"myeduzz.invoice_paid\",\"data\":{\"id\":\"INV-9\","
+                                + "\"buyer\":{\"name\":\"Maria\",\"email\":\"maria@x.com\",\"address\":{\"city\":\"Recife\"}},"
+                                + "\"items\":[{\"productId\":\"P1\",\"name\":\"Curso\"}],"
+                                + "\"price\":{\"value\":97.0,\"currency\":\"BRL\"}}}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.provider").value("EDUZZ"));
+
+        WebhookRequest captured = captor.getValue();
+        assertEquals("maria@x.com", captured.getEmail());
+        assertEquals("Recife", captured.getCity());
+        assertEquals("INV-9", captured.getTransactionId());
+        assertEquals("P1", captured.getProductId());
+        assertEquals("BRL", captured.getCurrency());
+    }
+
+    @Test
+    void whenEduzzPayloadUsesCustomerLayout_thenBuyerAndNamesAreStillExtracted() throws Exception {
+        Subscriber saved = Subscriber.builder().id(6L).name("Joana Lima").email("joana@x.com").build();
+        ArgumentCaptor<WebhookRequest> captor = ArgumentCaptor.forClass(WebhookRequest.class);
+        when(subscriberService.createOrUpdate(captor.capture(), eq(Provider.EDUZZ))).thenReturn(saved);
+
+        mockMvc.perform(post("/webhook/eduzz")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"customer\":{\"name\":\"Joana Lima\",\"email\":\"joana@x.com\","
+                                + "\"first_name\":\"Joana\",\"last_name\":\"Lima\"}}"))
+                .andExpect(status().isCreated());
+
+        assertEquals("joana@x.com", captor.getValue().getEmail());
+        assertEquals("Joana", captor.getValue().getFirstName());
+        assertEquals("Lima", captor.getValue().getLastName());
+    }
+
+    @Test
+    void whenEduzzPayloadLayoutIsUnknown_thenExtractorIsUsedAsFallback() throws Exception {
+        Subscriber saved = Subscriber.builder().id(7L).name("Rita").email("rita@x.com").build();
+        ArgumentCaptor<WebhookRequest> captor = ArgumentCaptor.forClass(WebhookRequest.class);
+        when(subscriberService.createOrUpdate(captor.capture(), eq(Provider.EDUZZ))).thenReturn(saved);
+
+        mockMvc.perform(post("/webhook")
+                        .header("x-eduzz-signature", "abc")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"venda\":{\"cliente\":{\"nome\":\"Rita\",\"e-mail\":\"rita@x.com\",\"city\":\"Natal\"}}}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.provider").value("EDUZZ"));
+
+        assertEquals("rita@x.com", captor.getValue().getEmail());
+        assertEquals("Rita", captor.getValue().getName());
+        assertEquals("Natal", captor.getValue().getCity());
+    }
+
+    @Test
+    void whenSignedPayloadIsMalformed_thenBadRequestWithoutFallback() throws Exception {
+        mockMvc.perform(post("/webhook/eduzz")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"customer\":"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(subscriberService);
+    }
 }
@@ -0,0 +1,89 @@
+package br.com.ecs.arquetipos.controller;
+
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.PurchaseStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookPayloadExtractorTest {
+
+    private static WebhookPayloadExtractor parse(String json) {
+        return WebhookPayloadExtractor.parse(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void preferredKeysWinOverDocumentOrder() {
+        WebhookPayloadExtractor extracted = parse("""
+                {"note": "contato: suporte@loja.com",
+                 "meta": {"source": "form"},
+                 "customer": {"info": {"mail": "nao-este@x.com", "email": "cliente@x.com"}, "name": "Cliente"},
+                 "name": "Fulano",
+                 "address": {"city": "Recife", "zip": "50000-000", "state": "PE"},
+                 "phone_number": "8199999"}
+                """);
+
+        WebhookRequest req = extracted.toRequest(Provider.EDUZZ);
+
+        assertEquals("cliente@x.com", req.getEmail());
+        assertEquals("Cliente", req.getName());
+        assertEquals("Recife", req.getCity());
+        assertEquals("50000-000", req.getZipcode());
+        assertEquals("PE", req.getState());
+        assertEquals("8199999", req.getPhone());
+        // campos sem chave correspondente ficam vazios em vez de herdar a primeira string do payload
+        assertNull(req.getDocument());
+        assertNull(req.getCountry());
+    }
+
+    @Test
+    void providerIsInferredFromKeysAndValues() {
+        assertEquals(Provider.HOTMART, parse("{\"product\": {\"origin\": \"HotMart\"}}").inferredProvider());
+        assertEquals(Provider.EDUZZ, parse("{\"items\": [{\"gateway\": \"eduzz-pay\"}]}").inferredProvider());
+        assertEquals(Provider.EDUZZ, parse("{\"data\": {\"eduzz_id\": 1}}").inferredProvider());
+        assertEquals(Provider.UNKNOWN, parse("{\"name\": \"Fulano\", \"email\": \"f@x.com\"}").inferredProvider());
+    }
+
+    @Test
+    void hotmartLayoutIsReadFromKnownPaths() {
+        WebhookRequest req = parse("""
+                {"hotmart": true, "event": "PURCHASE_CHARGEBACK",
+                 "data": {"buyer": {"email": "buyer@email.com", "name": "Buyer Name", "firstName": "Buyer",
+                                    "last_name": "Name", "checkout_phone": "999", "checkout_phone_code": "31",
+                                    "address": {"country": "Brasil", "country_iso": "BR", "city": "BH"}},
+                          "product": {"id": 213344, "name": "Curso"},
+                          "purchase": {"transaction": "HP1", "approved_date": 1700000000000,
+                                       "price": {"value": 150.6, "currency_value": "BRL"}}}}
+                """).toRequest(Provider.HOTMART);
+
+        assertEquals("buyer@email.com", req.getEmail());
+        assertEquals("Buyer Name", req.getName());
+        assertEquals("Buyer", req.getFirstName());
+        assertEquals("Name", req.getLastName());
+        assertEquals("+31 999", req.getPhone());
+        assertEquals("BR", req.getCountry());
+        assertEquals("BH", req.getCity());
+        assertEquals("213344", req.getProductId());
+        assertEquals("Curso", req.getProductName());
+        assertEquals("HP1", req.getTransactionId());
+        assertEquals(0, new BigDecimal("150.6").compareTo(req.getPrice()));
+        assertEquals("BRL", req.getCurrency());
+        assertEquals(Instant.ofEpochMilli(1700000000000L), req.getPurchaseDate());
+        assertEquals(PurchaseStatus.CHARGEBACK, req.getPurchaseStatus());
+    }
+
+    @Test
+    void invalidPayloadsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"name\": \"Fulano\""));
+        assertThrows(IllegalArgumentException.class, () -> parse("[{\"email\": \"f@x.com\"}]"));
+        assertThrows(IllegalArgumentException.class,
+                () -> parse("{\"name\": \"Fulano\", \"email\": \"invalido@x\"}").toRequest(Provider.EDUZZ));
+        assertThrows(IllegalArgumentException.class,
+                () -> parse("{\"email\": \"f@x.com\"}").toRequest(Provider.UNKNOWN));
+    }
+}
@@ -0,0 +1,44 @@
+package br.com.ecs.arquetipos.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class ClubMemberRepositoryTest {
+
+    private static final String SUBDOMAIN = "club-test";
+
+    @Autowired
+    private ClubMemberRepository repository;
+
+    @Test
+    void completedRun_deactivatesMembersMissingFromTheListing() {
+        Instant firstRun = Instant.parse("2026-06-01T10:00:00Z");
+        assertEquals(2, repository.upsertStatuses(SUBDOMAIN,
+                Map.of("a@x.com", "ACTIVE", "b@x.com", "ACTIVE"), firstRun, firstRun));
+
+        Instant secondRun = Instant.parse("2026-06-02T10:00:00Z");
+        assertEquals(0, repository.upsertStatuses(SUBDOMAIN, Map.of("a@x.com", "ACTIVE"), secondRun, secondRun));
+        assertEquals(1, repository.deactivateNotSeenSince(SUBDOMAIN, secondRun, secondRun));
+
+        assertEquals(Optional.of("ACTIVE"), repository.findStatus(SUBDOMAIN, "a@x.com"));
+        assertEquals(Optional.of("INACTIVE"), repository.findStatus(SUBDOMAIN, "b@x.com"));
+
+        // Já desativado não é contado de novo; reaparecendo na listagem volta ao status informado
+        assertEquals(0, repository.deactivateNotSeenSince(SUBDOMAIN, secondRun, secondRun));
+        Instant thirdRun = Instant.parse("2026-06-03T10:00:00Z");
+        assertEquals(1, repository.upsertStatuses(SUBDOMAIN,
+                Map.of("a@x.com", "ACTIVE", "b@x.com", "ACTIVE"), thirdRun, thirdRun));
+        assertEquals(0, repository.deactivateNotSeenSince(SUBDOMAIN, thirdRun, thirdRun));
+        assertEquals(Optional.of("ACTIVE"), repository.findStatus(SUBDOMAIN, "b@x.com"));
+    }
+}
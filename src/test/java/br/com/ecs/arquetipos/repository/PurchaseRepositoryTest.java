@@ -0,0 +1,144 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.dto.RevenueReport.DailyRevenue;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.Purchase;
+import br.com.ecs.arquetipos.model.PurchaseStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// No H2 a tabela não é particionada; as operações de partição não têm efeito
+@SpringBootTest
+@Transactional
+class PurchaseRepositoryTest {
+
+    @Autowired
+    private PurchaseRepository repository;
+
+    @Test
+    void append_ignoresRedeliveryOfTheSameTransaction() {
+        Instant purchasedAt = Instant.parse("2026-03-10T12:00:00Z");
+        Purchase purchase = purchase(1L, "HP1", purchasedAt);
+
+        assertTrue(repository.append(purchase));
+        assertFalse(repository.append(purchase(1L, "HP1", purchasedAt)));
+        assertTrue(repository.append(purchase(1L, "HP2", purchasedAt)));
+
+        List<Purchase> history = repository.findBySubscriberIdOrderByPurchasedAtDesc(1L);
+        assertEquals(2, history.size());
+        assertEquals(purchasedAt, history.get(0).getPurchasedAt());
+    }
+
+    @Test
+    void append_dedupsOnTransactionIdEvenWhenPurchasedAtChanges() {
+        // Sem data no payload, purchased_at vem do recebimento e muda a cada reentrega
+        assertTrue(repository.append(purchase(7L, "HP30", Instant.parse("2026-04-01T10:00:00Z"))));
+        assertFalse(repository.append(purchase(7L, "HP30", Instant.parse("2026-04-01T10:05:00Z"))));
+
+        // Repetição dentro do mesmo lote conta uma vez; compras sem transaction_id não são deduplicadas
+        Purchase first = purchase(8L, null, Instant.parse("2026-04-02T10:00:00Z"));
+        Purchase second = purchase(8L, null, Instant.parse("2026-04-02T10:00:00Z"));
+        assertEquals(3, repository.appendAll(List.of(
+                purchase(8L, "HP31", Instant.parse("2026-04-02T09:00:00Z")),
+                purchase(8L, "HP31", Instant.parse("2026-04-02T09:01:00Z")),
+                first, second)));
+
+        assertEquals(1, repository.findBySubscriberIdOrderByPurchasedAtDesc(7L).size());
+        assertEquals(1, repository.revenueByDay(LocalDate.of(2026, 4, 1), LocalDate.of(2026, 4, 1), "P1", null)
+                .get(0).purchases());
+    }
+
+    @Test
+    void refundsAndChargebacksReverseRevenueAndCancellationsAreLeftOut() {
+        LocalDate day = LocalDate.of(2026, 6, 10);
+        Instant purchasedAt = Instant.parse("2026-06-10T15:00:00Z");
+        repository.appendAll(List.of(
+                purchase(9L, "HP40", purchasedAt),
+                purchase(10L, "HP41", purchasedAt),
+                purchase(11L, "HP42", purchasedAt)));
+
+        // O reembolso da mesma transação é outro evento, não uma reentrega
+        assertTrue(repository.append(withStatus(purchase(9L, "HP40", purchasedAt), PurchaseStatus.REFUNDED)));
+        assertFalse(repository.append(withStatus(purchase(9L, "HP40", purchasedAt), PurchaseStatus.REFUNDED)));
+        assertTrue(repository.append(withStatus(purchase(10L, "HP41", purchasedAt), PurchaseStatus.CHARGEBACK)));
+        assertTrue(repository.append(withStatus(purchase(12L, "HP43", purchasedAt), PurchaseStatus.CANCELED)));
+
+        List<DailyRevenue> rows = repository.revenueByDay(day, day, "P1", null);
+        assertEquals(1, rows.size());
+        assertEquals(1, rows.get(0).purchases());
+        assertEquals(0, new BigDecimal("97.00").compareTo(rows.get(0).revenue()));
+        assertEquals(2, repository.findBySubscriberIdOrderByPurchasedAtDesc(9L).size());
+    }
+
+    @Test
+    void appendAll_andProductPeriodQuery() {
+        assertEquals(3, repository.appendAll(List.of(
+                purchase(2L, "HP10", Instant.parse("2026-01-31T23:59:59Z")),
+                purchase(2L, "HP11", Instant.parse("2026-02-01T00:00:00Z")),
+                purchase(3L, "HP12", Instant.parse("2026-02-15T10:00:00Z")))));
+
+        List<Purchase> february = repository.findByProductIdAndPurchasedAtGreaterThanEqualAndPurchasedAtLessThan(
+                "P1", Instant.parse("2026-02-01T00:00:00Z"), Instant.parse("2026-03-01T00:00:00Z"));
+        assertEquals(2, february.size());
+
+        repository.createMonthlyPartition(YearMonth.of(2026, 4));
+        assertTrue(repository.detachPartitionsBefore(YearMonth.of(2026, 1)).isEmpty());
+    }
+
+    @Test
+    void newPurchasesAccumulateInDailyRevenueOnce() {
+        LocalDate day = LocalDate.of(2026, 5, 4);
+        repository.appendAll(List.of(
+                purchase(4L, "HP20", Instant.parse("2026-05-04T00:00:00Z")),
+                purchase(4L, "HP21", Instant.parse("2026-05-04T23:59:59Z")),
+                purchase(5L, "HP22", Instant.parse("2026-05-05T10:00:00Z"))));
+        // Reentrega não soma de novo; compra sem produto/moeda fica na linha ''
+        assertFalse(repository.append(purchase(4L, "HP20", Instant.parse("2026-05-04T00:00:00Z"))));
+        Purchase anonymous = purchase(6L, "HP23", Instant.parse("2026-05-04T12:00:00Z"));
+        anonymous.setProductId(null);
+        anonymous.setCurrency(null);
+        assertTrue(repository.append(anonymous));
+
+        List<DailyRevenue> rows = repository.revenueByDay(day, day.plusDays(1), null, null);
+
+        assertEquals(3, rows.size());
+        assertEquals(new DailyRevenue(day, null, null, 1, rows.get(0).revenue()), rows.get(0));
+        assertEquals(day, rows.get(1).day());
+        assertEquals("P1", rows.get(1).productId());
+        assertEquals(2, rows.get(1).purchases());
+        assertEquals(0, new BigDecimal("194.00").compareTo(rows.get(1).revenue()));
+        assertEquals(day.plusDays(1), rows.get(2).day());
+        assertEquals(1, rows.get(2).purchases());
+        assertTrue(repository.revenueByDay(day, day, "P2", null).isEmpty());
+    }
+
+    private static Purchase withStatus(Purchase purchase, PurchaseStatus status) {
+        purchase.setStatus(status);
+        return purchase;
+    }
+
+    private static Purchase purchase(long subscriberId, String transaction, Instant purchasedAt) {
+        return Purchase.builder()
+                .subscriberId(subscriberId)
+                .email("comprador" + subscriberId + "@example.com")
+                .provider(Provider.HOTMART)
+                .productId("P1")
+                .productName("Curso")
+                .transactionId(transaction)
+                .price(new BigDecimal("97.00"))
+                .currency("BRL")
+                .purchasedAt(purchasedAt)
+                .receivedAt(Instant.parse("2026-03-10T12:00:01Z"))
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.dto.ImportReport;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.Subscriber;
+import br.com.ecs.arquetipos.repository.SubscriberRepositoryCustom.Upserted;
+import br.com.ecs.arquetipos.service.SubscriberBulkImportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Exercita o caminho PostgreSQL (ON CONFLICT + RETURNING xmax) do upsert nativo; sem Docker, é ignorado
+@SpringBootTest
+@Transactional
+@Testcontainers(disabledWithoutDocker = true)
+class SubscriberRepositoryPostgresTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driverClassName", postgres::getDriverClassName);
+    }
+
+    @Autowired
+    private SubscriberRepository repository;
+
+    @Autowired
+    private SqlDialect sqlDialect;
+
+    @Autowired
+    private SubscriberBulkImportService bulkImportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void upsert_reportsInsertFromXmax_evenWhenCreatedAtMatches() {
+        assertTrue(sqlDialect.isPostgres());
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+
+        Upserted inserted = repository.upsert(candidate("pg@example.com", "Fulano", now));
+        assertTrue(inserted.inserted());
+        assertNotNull(inserted.subscriber().getId());
+
+        // Mesmo created_at do candidato, mas a linha já existia: atualizada, não inserida
+        Upserted updated = repository.upsert(candidate("pg@example.com", "Fulano de Tal", now));
+        assertFalse(updated.inserted());
+        assertEquals(inserted.subscriber().getId(), updated.subscriber().getId());
+        assertEquals("Fulano de Tal", updated.subscriber().getName());
+
+        // Sem diferença: a linha não volta no RETURNING e vem do SELECT de fallback
+        Upserted unchanged = repository.upsert(candidate("pg@example.com", "Fulano de Tal", now));
+        assertFalse(unchanged.inserted());
+        assertEquals("Fulano de Tal", unchanged.subscriber().getName());
+    }
+
+    @Test
+    void upsertAll_flagsOnlyTheNewRows() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        repository.upsert(candidate("pg-b@example.com", "B", now));
+
+        List<Upserted> upserted = repository.upsertAll(List.of(
+                candidate("pg-c@example.com", "C", now),
+                candidate("pg-b@example.com", "B2", now),
+                candidate("pg-a@example.com", "A", now)));
+
+        assertEquals(List.of("pg-c@example.com", "pg-b@example.com", "pg-a@example.com"),
+                upserted.stream().map(u -> u.subscriber().getEmail()).toList());
+        assertEquals(List.of(true, false, true), upserted.stream().map(Upserted::inserted).toList());
+        assertEquals("B2", upserted.get(1).subscriber().getName());
+    }
+
+    @Test
+    void copyImport_keepsThePurchaseStatusOfEachRow() {
+        String csv = "name,email,transaction_id,price,purchase_status\n" +
+                "Fulano,pg-copy@example.com,HP1,97.00,APPROVED\n" +
+                "Fulano,pg-copy@example.com,HP1,97.00,REFUNDED\n" +
+                "Beltrano,pg-copy2@example.com,HP2,50.00,\n";
+
+        ImportReport report = bulkImportService.importFrom(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "text/csv", Provider.HOTMART);
+
+        assertEquals(3, report.imported());
+        assertEquals(List.of("APPROVED", "REFUNDED"), jdbcTemplate.queryForList(
+                "SELECT status FROM purchases WHERE transaction_id = 'HP1' ORDER BY status", String.class));
+        // Sem status na linha: aprovada
+        assertEquals("APPROVED", jdbcTemplate.queryForObject(
+                "SELECT status FROM purchases WHERE transaction_id = 'HP2'", String.class));
+    }
+
+    private static Subscriber candidate(String email, String name, Instant createdAt) {
+        return Subscriber.builder().name(name).email(email).createdAt(createdAt).provider(Provider.HOTMART).build();
+    }
+}
@@ -0,0 +1,169 @@
+package br.com.ecs.arquetipos.repository;
+
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.Subscriber;
+import br.com.ecs.arquetipos.repository.SubscriberRepositoryCustom.Upserted;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Exercita o caminho H2 (MERGE + FINAL TABLE) do upsert nativo
+@SpringBootTest
+@Transactional
+class SubscriberRepositoryTest {
+
+    @Autowired
+    private SubscriberRepository repository;
+
+    @Test
+    void upsert_insertsThenMergesOnlyInformedFields() {
+        Instant first = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        Subscriber inserted = repository.upsert(Subscriber.builder()
+                .name("Fulano")
+                .email("upsert@example.com")
+                .createdAt(first)
+                .provider(Provider.HOTMART)
+                .city("Belo Horizonte")
+                .price(new BigDecimal("150.6"))
+                .build()).subscriber();
+
+        assertNotNull(inserted.getId());
+        assertEquals(first, inserted.getCreatedAt());
+        assertFalse(repository.upsert(Subscriber.builder().email("upsert@example.com").createdAt(first)
+                .provider(Provider.HOTMART).build()).inserted());
+
+        Subscriber updated = repository.upsert(Subscriber.builder()
+                .name("Fulano de Tal")
+                .email("upsert@example.com")
+                .createdAt(first.plusSeconds(60))
+                .provider(Provider.EDUZZ)
+                .build()).subscriber();
+
+        assertEquals(inserted.getId(), updated.getId());
+        assertEquals(first, updated.getCreatedAt());
+        assertEquals("Fulano de Tal", updated.getName());
+        assertEquals(Provider.EDUZZ, updated.getProvider());
+        assertEquals("Belo Horizonte", updated.getCity());
+        assertEquals(0, updated.getPrice().compareTo(new BigDecimal("150.6")));
+
+        // Sem diferença: nada é reescrito, mas o registro atual é devolvido
+        Subscriber unchanged = repository.upsert(Subscriber.builder()
+                .name("Fulano de Tal")
+                .email("upsert@example.com")
+                .createdAt(first.plusSeconds(120))
+                .provider(Provider.EDUZZ)
+                .build()).subscriber();
+
+        assertEquals(inserted.getId(), unchanged.getId());
+        assertEquals("Fulano de Tal", unchanged.getName());
+        assertEquals(first, repository.findByEmail("upsert@example.com").orElseThrow().getCreatedAt());
+    }
+
+    @Test
+    void updateChanged_writesOnlyDifferingColumnsAndFingerprint() {
+        Subscriber current = repository.upsert(Subscriber.builder()
+                .name("Ciclano")
+                .email("partial@example.com")
+                .createdAt(Instant.now().truncatedTo(ChronoUnit.MICROS))
+                .provider(Provider.HOTMART)
+                .city("Recife")
+                .price(new BigDecimal("97.00"))
+                .fingerprint(1L)
+                .build()).subscriber();
+        assertEquals(1L, current.getFingerprint());
+
+        // Mesmo preço em outra escala e cidade igual: nenhuma coluna muda, nenhum SQL
+        Subscriber same = Subscriber.builder().email("partial@example.com").provider(Provider.HOTMART)
+                .city("Recife").price(new BigDecimal("97")).fingerprint(2L).build();
+        assertSame(current, repository.updateChanged(current, same).orElseThrow());
+
+        Subscriber changed = Subscriber.builder().email("partial@example.com").provider(Provider.HOTMART)
+                .phone("+55 81 9999").fingerprint(3L).build();
+        Subscriber updated = repository.updateChanged(current, changed).orElseThrow();
+
+        assertEquals(current.getId(), updated.getId());
+        assertEquals("+55 81 9999", updated.getPhone());
+        assertEquals("Recife", updated.getCity());
+        assertEquals("Ciclano", updated.getName());
+        assertEquals(3L, updated.getFingerprint());
+
+        Subscriber gone = Subscriber.builder().id(-1L).name("x").email("gone@example.com").provider(Provider.HOTMART).build();
+        assertTrue(repository.updateChanged(gone, changed).isEmpty());
+    }
+
+    @Test
+    void upsert_withSameFingerprintSkipsTheRewrite() {
+        Instant first = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        repository.upsert(Subscriber.builder().name("Beltrano").email("fp@example.com").createdAt(first)
+                .provider(Provider.HOTMART).fingerprint(10L).build());
+
+        // Fingerprint repetido: o registro atual volta intacto mesmo com um campo diferente
+        Subscriber replay = repository.upsert(Subscriber.builder().name("Outro Nome").email("fp@example.com")
+                .createdAt(first.plusSeconds(1)).provider(Provider.HOTMART).fingerprint(10L).build()).subscriber();
+        assertEquals("Beltrano", replay.getName());
+
+        Subscriber changed = repository.upsert(Subscriber.builder().name("Outro Nome").email("fp@example.com")
+                .createdAt(first.plusSeconds(2)).provider(Provider.HOTMART).fingerprint(11L).build()).subscriber();
+        assertEquals("Outro Nome", changed.getName());
+        assertEquals(11L, changed.getFingerprint());
+    }
+
+    @Test
+    void upsertAll_writesSeveralRowsInOneStatement_keepingCandidateOrder() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        repository.upsert(Subscriber.builder().name("B").email("b@example.com").createdAt(now).provider(Provider.HOTMART).build());
+
+        List<Upserted> upserted = repository.upsertAll(List.of(
+                Subscriber.builder().name("C2").email("c@example.com").createdAt(now).provider(Provider.EDUZZ).build(),
+                Subscriber.builder().name("A").email("a@example.com").createdAt(now).provider(Provider.HOTMART).build(),
+                Subscriber.builder().name("B").email("b@example.com").createdAt(now).provider(Provider.HOTMART).build()));
+        List<Subscriber> saved = upserted.stream().map(Upserted::subscriber).toList();
+
+        // Existente com o mesmo created_at do candidato continua não inserido
+        assertEquals(List.of(true, true, false), upserted.stream().map(Upserted::inserted).toList());
+
+        // Gravadas em ordem de email, devolvidas na ordem dos candidatos
+        assertEquals(List.of("c@example.com", "a@example.com", "b@example.com"), saved.stream().map(Subscriber::getEmail).toList());
+        assertEquals(now, saved.get(2).getCreatedAt());
+        assertEquals(Provider.EDUZZ, saved.get(0).getProvider());
+        assertThrows(InvalidDataAccessApiUsageException.class, () -> repository.upsertAll(List.of(saved.get(0), saved.get(0))));
+    }
+
+    @Test
+    void upsertAll_splitsLargeBatchesToStayUnderTheParameterLimit() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        List<Subscriber> candidates = new ArrayList<>();
+        for (int i = 0; i < SubscriberRepositoryImpl.MAX_ROWS_PER_STATEMENT + 5; i++) {
+            candidates.add(Subscriber.builder().name("Lote " + i).email("lote" + i + "@example.com")
+                    .createdAt(now).provider(Provider.HOTMART).build());
+        }
+
+        List<Upserted> saved = repository.upsertAll(candidates);
+
+        assertEquals(candidates.size(), saved.size());
+        assertEquals("lote1004@example.com", saved.get(1004).subscriber().getEmail());
+        assertNotNull(saved.get(1004).subscriber().getId());
+        assertTrue(saved.stream().allMatch(Upserted::inserted));
+    }
+
+    @Test
+    void nativeAndJpaInserts_shareTheSubscriberSequence() {
+        Subscriber viaJpa = repository.save(Subscriber.builder()
+                .name("Jpa").email("jpa@example.com").createdAt(Instant.now()).provider(Provider.HOTMART).build());
+        Subscriber viaUpsert = repository.upsert(Subscriber.builder()
+                .name("Nativo").email("nativo@example.com").createdAt(Instant.now()).provider(Provider.HOTMART).build()).subscriber();
+
+        assertNotNull(viaJpa.getId());
+        assertNotEquals(viaJpa.getId(), viaUpsert.getId());
+    }
+}
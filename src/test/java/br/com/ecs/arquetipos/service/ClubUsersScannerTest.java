@@ -0,0 +1,47 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.ClubMembership;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClubUsersScannerTest {
+
+    @Test
+    void stopsAtFirstActiveEntry_evenWhenSplitAcrossChunks() {
+        String body = "{\"items\":[{\"email\":\"a@x.com\",\"status\":\"BLOCKED\",\"roles\":[{\"status\":\"ACTIVE\"}]},"
+                + "{\"email\":\"a@x.com\",\"status\":\"ACTIVE\"},{\"email\":\"a@x.com\",\"status\":\"ACTIVE\"}],"
+                + "\"page_info\":{\"total_results\":3}}";
+
+        ClubMembership result = HotmartClient.scanClubUsers(chunks(body, 7)).block();
+
+        assertEquals(new ClubMembership(true, 2), result);
+    }
+
+    @Test
+    void noActiveEntry_isInactive() {
+        String body = "{\"status\":\"ACTIVE\",\"items\":[{\"status\":\"CANCELLED\"},{\"plan\":{\"status\":\"ACTIVE\"}}]}";
+
+        assertEquals(new ClubMembership(false, 2), HotmartClient.scanClubUsers(chunks(body, 5)).block());
+        assertEquals(ClubMembership.NONE, HotmartClient.scanClubUsers(chunks("{\"items\":[]}", 3)).block());
+        assertEquals(ClubMembership.NONE, HotmartClient.scanClubUsers(Flux.empty()).block());
+    }
+
+    private static Flux<DataBuffer> chunks(String body, int size) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += size) {
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(
+                    Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + size))));
+        }
+        return Flux.fromIterable(buffers);
+    }
+}
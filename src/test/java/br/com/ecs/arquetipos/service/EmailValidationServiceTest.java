@@ -0,0 +1,164 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.ClubMembership;
+import br.com.ecs.arquetipos.dto.EmailValidationResult;
+import br.com.ecs.arquetipos.exception.HotmartRateLimitedException;
+import br.com.ecs.arquetipos.exception.HotmartUnavailableException;
+import br.com.ecs.arquetipos.model.Subscriber;
+import br.com.ecs.arquetipos.model.ClubMember;
+import br.com.ecs.arquetipos.repository.ClubMemberRepository;
+import br.com.ecs.arquetipos.repository.SubscriberRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailValidationServiceTest {
+
+    @Mock
+    private SubscriberRepository repository;
+
+    @Mock
+    private ClubMemberRepository clubMemberRepository;
+
+    private ValidationResultCache cache;
+    private EmailValidationService service;
+
+    private final String email = "aluno@example.com";
+
+    @BeforeEach
+    void setup() {
+        cache = new ValidationResultCache(100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofSeconds(5),
+                100, Duration.ofDays(7));
+        service = new EmailValidationService(Optional.empty(), repository, clubMemberRepository, cache,
+                Schedulers.immediate(), 8, "club");
+    }
+
+    @Test
+    void repeatedValidation_isServedFromCache() {
+        Subscriber s = Subscriber.builder().id(1L).name("Aluno").email(email).createdAt(Instant.now()).build();
+        when(repository.findByEmail(email)).thenReturn(Optional.of(s));
+
+        assertTrue(service.isUserActiveStudent(email));
+        assertTrue(service.isUserActiveStudent(email));
+        assertTrue(service.isUserActiveStudent(" ALUNO@example.com "));
+
+        verify(repository, times(1)).findByEmail(email);
+    }
+
+    @Test
+    void negativeResult_isDroppedOnInvalidation() {
+        Subscriber s = Subscriber.builder().id(1L).name("Aluno").email(email).createdAt(Instant.now()).build();
+        when(repository.findByEmail(email)).thenReturn(Optional.empty(), Optional.of(s));
+
+        assertFalse(service.isUserActiveStudent(email));
+        assertFalse(service.isUserActiveStudent(email));
+
+        cache.invalidate(email);
+
+        assertTrue(service.isUserActiveStudent(email));
+        verify(repository, times(2)).findByEmail(email);
+    }
+
+    @Test
+    void reactiveValidation_sharesCacheWithBlockingVariant() {
+        when(repository.findByEmail(email)).thenReturn(Optional.empty());
+
+        assertEquals(Boolean.FALSE, service.checkActiveStudent(email).block());
+        assertFalse(service.isUserActiveStudent(email));
+
+        verify(repository, times(1)).findByEmail(email);
+    }
+
+    @Test
+    void batchValidation_resolvesLocalHitsWithOneQuery() {
+        when(repository.findExistingEmails(List.of("a@x.com", "b@x.com"))).thenReturn(List.of("a@x.com"));
+
+        List<EmailValidationResult> results = service.checkActiveStudents(List.of("a@x.com", "b@x.com", "a@x.com"))
+                .collectList().block();
+
+        assertEquals(List.of(EmailValidationResult.success("a@x.com", true), EmailValidationResult.success("b@x.com", false)), results);
+        assertTrue(service.isUserActiveStudent("a@x.com"));
+        verify(repository, never()).findByEmail(anyString());
+    }
+
+    @Test
+    void hotmartUnavailable_fallsBackToLastKnownResult() {
+        HotmartLookupCoalescer lookups = mock(HotmartLookupCoalescer.class);
+        // TTL zero: a entrada principal expira na hora e só o último resultado conhecido permanece
+        cache = new ValidationResultCache(100, Duration.ZERO, Duration.ZERO, Duration.ZERO, 100, Duration.ofDays(7));
+        service = new EmailValidationService(Optional.of(lookups), repository, clubMemberRepository, cache,
+                Schedulers.immediate(), 8, "club");
+        when(repository.findByEmail(email)).thenReturn(Optional.empty());
+        when(lookups.getClubMembership(email)).thenReturn(Mono.error(new HotmartUnavailableException("open", 30)));
+
+        // Sem resultado anterior, o erro é propagado
+        assertThrows(HotmartUnavailableException.class, () -> service.validate(email).block());
+
+        cache.put(email, true, cache.version());
+        assertNull(cache.get(email));
+
+        assertEquals(EmailValidationResult.stale(email, true), service.validate(email).block());
+    }
+
+    @Test
+    void localRateLimitRejection_isNotCached() {
+        HotmartLookupCoalescer lookups = mock(HotmartLookupCoalescer.class);
+        service = new EmailValidationService(Optional.of(lookups), repository, clubMemberRepository, cache,
+                Schedulers.immediate(), 8, "club");
+        when(repository.findByEmail(email)).thenReturn(Optional.empty());
+        when(lookups.getClubMembership(email)).thenReturn(
+                Mono.error(new HotmartRateLimitedException("Hotmart rate limit reached (local)", 2)),
+                Mono.just(new ClubMembership(true, 1)));
+
+        assertThrows(HotmartRateLimitedException.class, () -> service.validate(email).block());
+        assertNull(cache.get(email));
+
+        // Com a cota de volta, a próxima validação vai à Hotmart em vez de repetir o erro
+        assertEquals(EmailValidationResult.success(email, true), service.validate(email).block());
+    }
+
+    @Test
+    void syncedClubMember_isAnsweredWithoutFurtherLookups() {
+        when(clubMemberRepository.findStatus("club", email)).thenReturn(Optional.of("ACTIVE"));
+
+        assertTrue(service.isUserActiveStudent("Aluno@Example.com"));
+        verify(repository, never()).findByEmail(anyString());
+    }
+
+    @Test
+    void inactiveClubMember_isNotActiveUnlessSubscriber() {
+        when(clubMemberRepository.findBySubdomainAndEmailIn(eq("club"), anyCollection())).thenReturn(List.of(
+                ClubMember.builder().email("a@x.com").status("BLOCKED").build(),
+                ClubMember.builder().email("b@x.com").status("BLOCKED").build()));
+        when(repository.findExistingEmails(List.of("a@x.com", "b@x.com"))).thenReturn(List.of("b@x.com"));
+
+        List<EmailValidationResult> results = service.checkActiveStudents(List.of("a@x.com", "b@x.com")).collectList().block();
+
+        assertEquals(List.of(EmailValidationResult.success("a@x.com", false), EmailValidationResult.success("b@x.com", true)), results);
+    }
+
+    @Test
+    void lookupStartedBeforeInvalidation_isNotCached() {
+        long version = cache.version();
+        cache.invalidate(email);
+        cache.put(email, false, version);
+
+        assertNull(cache.get(email));
+    }
+}
@@ -0,0 +1,66 @@
+package br.com.ecs.arquetipos.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotmartCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private HotmartCircuitBreaker breaker;
+
+    @BeforeEach
+    void setup() {
+        breaker = new HotmartCircuitBreaker(50, 4, 4, Duration.ofSeconds(30), now::get);
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        record(true, false, true);
+        assertEquals(HotmartCircuitBreaker.State.CLOSED, breaker.getState());
+
+        record(false);
+        assertEquals(HotmartCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(30, breaker.secondsUntilRetry());
+    }
+
+    @Test
+    void halfOpenAllowsSingleTrialAndClosesOnSuccess() {
+        record(false, false, false, false);
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(HotmartCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+
+        breaker.onSuccess();
+        assertEquals(HotmartCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void failedTrialReopens() {
+        record(false, false, false, false);
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onFailure();
+
+        assertEquals(HotmartCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    // false = falha, true = sucesso
+    private void record(boolean... successes) {
+        for (boolean success : successes) {
+            assertTrue(breaker.tryAcquirePermission());
+            if (success) breaker.onSuccess();
+            else breaker.onFailure();
+        }
+    }
+}
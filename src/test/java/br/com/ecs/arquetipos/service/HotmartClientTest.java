@@ -0,0 +1,129 @@
+package br.com.ecs.arquetipos.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotmartClientTest {
+
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final List<String> apiAuthorizations = new CopyOnWriteArrayList<>();
+    // Resposta do /security/oauth/token; só chega quando o teste emitir
+    private volatile Sinks.One<ClientResponse> tokenResponse;
+
+    private HotmartClient client;
+
+    @BeforeEach
+    void setup() {
+        tokenResponse = Sinks.one();
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    if (request.url().getPath().endsWith("/security/oauth/token")) {
+                        tokenRequests.incrementAndGet();
+                        return tokenResponse.asMono();
+                    }
+                    apiAuthorizations.add(request.headers().getFirst(HttpHeaders.AUTHORIZATION));
+                    return Mono.just(json("{\"items\":[]}"));
+                })
+                .build();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        client = new HotmartClient(webClient,
+                new HotmartCircuitBreaker(50, 20, 10, Duration.ofSeconds(30), meterRegistry),
+                new HotmartRateLimiter(6000, 100, Duration.ofSeconds(60), meterRegistry),
+                meterRegistry,
+                "http://api.local", "http://auth.local", "Basic abc", "club",
+                Duration.ofMinutes(5), 0, Duration.ofMillis(10), Duration.ofMillis(10), 20);
+    }
+
+    @Test
+    void concurrentCallers_shareASingleTokenRequest() {
+        Mono<?> first = client.getClubUsersPage(null, 10);
+        Mono<?> second = client.getClubUsersPage(null, 10);
+        Mono<?> both = Mono.zip(first, second).cache();
+        both.subscribe();
+
+        assertEquals(1, tokenRequests.get());
+        assertTrue(apiAuthorizations.isEmpty());
+
+        tokenResponse.tryEmitValue(token("t1", 3600));
+        both.block(Duration.ofSeconds(5));
+
+        assertEquals(1, tokenRequests.get());
+        assertEquals(List.of("Bearer t1", "Bearer t1"), apiAuthorizations);
+    }
+
+    @Test
+    void scheduledRenewal_doesNotBlockTheSchedulerThread() {
+        // O token ainda não chegou: a chamada precisa retornar mesmo assim
+        assertTimeoutPreemptively(Duration.ofSeconds(5), client::renewTokenIfNeeded);
+        assertEquals(1, tokenRequests.get());
+
+        tokenResponse.tryEmitValue(token("t1", 3600));
+        client.getClubUsersPage(null, 10).block(Duration.ofSeconds(5));
+
+        assertEquals(1, tokenRequests.get());
+        assertEquals(List.of("Bearer t1"), apiAuthorizations);
+    }
+
+    @Test
+    void scheduledRenewal_refreshesAheadOfExpiry_whileCurrentTokenStaysInUse() {
+        client.renewTokenIfNeeded();
+        // Expira em 60s (expires_in menos a margem de 60s), dentro de refresh-ahead
+        tokenResponse.tryEmitValue(token("t1", 120));
+
+        tokenResponse = Sinks.one();
+        client.renewTokenIfNeeded();
+        assertEquals(2, tokenRequests.get());
+
+        // Renovação ainda em andamento: o token atual, ainda válido, atende sem esperar
+        client.getClubUsersPage(null, 10).block(Duration.ofSeconds(5));
+        assertEquals(List.of("Bearer t1"), apiAuthorizations);
+        assertEquals(2, tokenRequests.get());
+
+        // Válido por bem mais que refresh-ahead: nada a fazer
+        tokenResponse.tryEmitValue(token("t2", 3600));
+        client.renewTokenIfNeeded();
+        client.getClubUsersPage(null, 10).block(Duration.ofSeconds(5));
+        assertEquals(2, tokenRequests.get());
+        assertEquals(List.of("Bearer t1", "Bearer t2"), apiAuthorizations);
+    }
+
+    @Test
+    void callerDuringScheduledRenewal_waitsForTheSameRequest() {
+        client.renewTokenIfNeeded();
+        Mono<?> page = client.getClubUsersPage(null, 10).cache();
+        page.subscribe();
+
+        assertEquals(1, tokenRequests.get());
+        tokenResponse.tryEmitValue(token("t1", 3600));
+        page.block(Duration.ofSeconds(5));
+
+        assertEquals(1, tokenRequests.get());
+        assertEquals(List.of("Bearer t1"), apiAuthorizations);
+    }
+
+    private static ClientResponse token(String value, long expiresIn) {
+        return json("{\"access_token\":\"" + value + "\",\"expires_in\":" + expiresIn + "}");
+    }
+
+    private static ClientResponse json(String body) {
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build();
+    }
+}
@@ -0,0 +1,65 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.ClubMembership;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HotmartLookupCoalescerTest {
+
+    @Mock
+    private HotmartClient hotmartClient;
+
+    private SimpleMeterRegistry meterRegistry;
+    private HotmartLookupCoalescer coalescer;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new HotmartLookupCoalescer(hotmartClient, meterRegistry);
+    }
+
+    @Test
+    void concurrentLookups_shareOneOutboundCall() {
+        Sinks.One<ClubMembership> response = Sinks.one();
+        when(hotmartClient.getClubMembership("aluno@example.com")).thenReturn(response.asMono());
+
+        List<ClubMembership> results = new ArrayList<>();
+        coalescer.getClubMembership("aluno@example.com").subscribe(results::add);
+        coalescer.getClubMembership("ALUNO@example.com").subscribe(results::add);
+        coalescer.getClubMembership(" aluno@example.com").subscribe(results::add);
+
+        ClubMembership body = new ClubMembership(true, 1);
+        response.tryEmitValue(body);
+
+        assertEquals(3, results.size());
+        results.forEach(r -> assertSame(body, r));
+        verify(hotmartClient, times(1)).getClubMembership("aluno@example.com");
+        assertEquals(1.0, meterRegistry.get("hotmart.club.lookups").tag("type", "outbound").counter().count());
+        assertEquals(2.0, meterRegistry.get("hotmart.club.lookups").tag("type", "coalesced").counter().count());
+    }
+
+    @Test
+    void completedLookup_isNotReused() {
+        when(hotmartClient.getClubMembership("aluno@example.com"))
+                .thenReturn(Mono.just(ClubMembership.NONE));
+
+        coalescer.getClubMembership("aluno@example.com").block();
+        coalescer.getClubMembership("aluno@example.com").block();
+
+        verify(hotmartClient, times(2)).getClubMembership("aluno@example.com");
+        assertEquals(0.0, meterRegistry.get("hotmart.club.lookups").tag("type", "coalesced").counter().count());
+    }
+}
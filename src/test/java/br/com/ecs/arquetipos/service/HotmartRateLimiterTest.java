@@ -0,0 +1,52 @@
+package br.com.ecs.arquetipos.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotmartRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void rejectsWithTimeUntilNextPermit_whenBucketIsEmpty() {
+        HotmartRateLimiter limiter = new HotmartRateLimiter(60, 2, Duration.ofSeconds(60), meterRegistry, now::get);
+
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(1, limiter.tryAcquire());
+        assertEquals(1.0, meterRegistry.get("hotmart.rate_limit.rejections").counter().count());
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertEquals(0, limiter.tryAcquire());
+    }
+
+    @Test
+    void pausesForRetryAfter_whenHotmartReturns429() {
+        HotmartRateLimiter limiter = new HotmartRateLimiter(600, 10, Duration.ofSeconds(60), meterRegistry, now::get);
+
+        assertEquals(30, limiter.onRateLimited("30"));
+        assertEquals(30, limiter.tryAcquire());
+
+        now.addAndGet(Duration.ofSeconds(20).toNanos());
+        assertEquals(10, limiter.tryAcquire());
+
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertEquals(0, limiter.tryAcquire());
+    }
+
+    @Test
+    void parsesRetryAfterFormats() {
+        Duration fallback = Duration.ofSeconds(60);
+
+        assertEquals(Duration.ofSeconds(120), HotmartRateLimiter.parseRetryAfter("120", fallback));
+        assertEquals(fallback, HotmartRateLimiter.parseRetryAfter(null, fallback));
+        assertEquals(fallback, HotmartRateLimiter.parseRetryAfter("amanhã", fallback));
+        assertEquals(Duration.ZERO, HotmartRateLimiter.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT", fallback));
+    }
+}
@@ -0,0 +1,104 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubscriberImportReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private SubscriberImportReader reader(String content, SubscriberImportReader.Format format) {
+        return new SubscriberImportReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                format, objectMapper, 10);
+    }
+
+    private static List<WebhookRequest> readAll(SubscriberImportReader reader) {
+        List<WebhookRequest> rows = new ArrayList<>();
+        reader.forEachRemaining(rows::add);
+        return rows;
+    }
+
+    @Test
+    void csv_mapsSnakeCaseHeadersAndQuotedFields() {
+        String csv = "﻿name,email,first_name,city,transaction_id,price,purchase_date\r\n" +
+                "\"Silva, Ana\",ana@example.com,Ana,\"São \"\"Paulo\"\"\",HP1,150.60,2025-03-01T10:00:00Z\r\n" +
+                "Bruno,bruno@example.com,,\"Rio\nde Janeiro\",,,\r\n";
+        SubscriberImportReader reader = reader(csv, SubscriberImportReader.Format.CSV);
+
+        List<WebhookRequest> rows = readAll(reader);
+
+        assertEquals(2, rows.size());
+        WebhookRequest ana = rows.get(0);
+        assertEquals("Silva, Ana", ana.getName());
+        assertEquals("Ana", ana.getFirstName());
+        assertEquals("São \"Paulo\"", ana.getCity());
+        assertEquals("HP1", ana.getTransactionId());
+        assertEquals(0, new BigDecimal("150.6").compareTo(ana.getPrice()));
+        assertEquals(Instant.parse("2025-03-01T10:00:00Z"), ana.getPurchaseDate());
+        WebhookRequest bruno = rows.get(1);
+        assertNull(bruno.getFirstName());
+        assertEquals("Rio\nde Janeiro", bruno.getCity());
+        assertNull(bruno.getPrice());
+        assertEquals(0, reader.rejected());
+    }
+
+    @Test
+    void csv_detectsSemicolonAndRejectsInvalidLines() {
+        String csv = "EMAIL;NOME_IGNORADO;PHONE\n" +
+                "carla@example.com;x;11999990000\n" +
+                "sem-arroba;x;1\n" +
+                ";x;2\n" +
+                "a@b.com;x;3;extra\n" +
+                "\n" +
+                "dani@example.com;x;4\n";
+        SubscriberImportReader reader = reader(csv, SubscriberImportReader.Format.CSV);
+
+        List<WebhookRequest> rows = readAll(reader);
+
+        assertEquals(List.of("carla@example.com", "dani@example.com"), rows.stream().map(WebhookRequest::getEmail).toList());
+        assertEquals("carla", rows.get(0).getName());
+        assertEquals("11999990000", rows.get(0).getPhone());
+        assertEquals(2, reader.accepted());
+        assertEquals(3, reader.rejected());
+        assertEquals(List.of(3L, 4L, 5L), reader.rejects().stream().map(r -> r.line()).toList());
+        assertEquals("Invalid email format", reader.rejects().get(0).reason());
+        assertEquals("Email not found", reader.rejects().get(1).reason());
+    }
+
+    @Test
+    void ndjson_bindsEachLineAndReportsMalformedOnes() {
+        String ndjson = "{\"name\":\"Eva\",\"email\":\" eva@example.com \",\"productId\":\"P1\"}\n" +
+                "\n" +
+                "{\"email\":\"quebrado@example.com\"\n" +
+                "{\"email\":\"fabio@example.com\",\"price\":\"abc\"}\n" +
+                "{\"email\":\"gil@example.com\"}";
+        SubscriberImportReader reader = reader(ndjson, SubscriberImportReader.Format.NDJSON);
+
+        List<WebhookRequest> rows = readAll(reader);
+
+        assertEquals(2, rows.size());
+        assertEquals("eva@example.com", rows.get(0).getEmail());
+        assertEquals("P1", rows.get(0).getProductId());
+        assertEquals("gil", rows.get(1).getName());
+        assertEquals(List.of(3L, 4L), reader.rejects().stream().map(r -> r.line()).toList());
+    }
+
+    @Test
+    void formatOf_acceptsContentTypesAndFileNames() {
+        assertEquals(SubscriberImportReader.Format.CSV, SubscriberImportReader.formatOf("text/csv;charset=UTF-8"));
+        assertEquals(SubscriberImportReader.Format.NDJSON, SubscriberImportReader.formatOf("application/x-ndjson"));
+        assertEquals(SubscriberImportReader.Format.NDJSON, SubscriberImportReader.formatOf("vendas-2024.jsonl"));
+        assertThrows(IllegalArgumentException.class, () -> SubscriberImportReader.formatOf("vendas.xlsx"));
+    }
+}
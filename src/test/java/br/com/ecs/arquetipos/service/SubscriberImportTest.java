@@ -0,0 +1,128 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.ImportReport;
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.Purchase;
+import br.com.ecs.arquetipos.model.PurchaseStatus;
+import br.com.ecs.arquetipos.model.Subscriber;
+import br.com.ecs.arquetipos.repository.PurchaseRepository;
+import br.com.ecs.arquetipos.repository.SubscriberRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "subscriber.import.chunk-size=40")
+class SubscriberImportTest {
+
+    @Autowired
+    private SubscriberService subscriberService;
+
+    @Autowired
+    private SubscriberBulkImportService bulkImportService;
+
+    @Autowired
+    private SubscriberRepository repository;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanup() {
+        purchaseRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM purchase_transactions");
+        repository.deleteAll();
+    }
+
+    @Test
+    void importAll_insertsNewRowsAndMergesExistingOnes() {
+        repository.upsert(Subscriber.builder()
+                .name("Antigo").email("aluno0@example.com").createdAt(Instant.parse("2025-01-01T00:00:00Z"))
+                .provider(Provider.EDUZZ).city("Belo Horizonte").build());
+
+        List<WebhookRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            WebhookRequest req = new WebhookRequest();
+            req.setName("Aluno " + i);
+            req.setEmail("aluno" + i + "@example.com");
+            if (i % 2 == 0) req.setTransactionId("HP" + i);
+            requests.add(req);
+        }
+
+        assertEquals(100, subscriberService.importAll(requests, Provider.HOTMART));
+
+        assertEquals(100, repository.count());
+        Subscriber merged = repository.findByEmail("aluno0@example.com").orElseThrow();
+        assertEquals("Aluno 0", merged.getName());
+        assertEquals("Belo Horizonte", merged.getCity());
+        assertEquals(Provider.HOTMART, merged.getProvider());
+        assertEquals(Instant.parse("2025-01-01T00:00:00Z"), merged.getCreatedAt());
+        assertNull(merged.getTransactionId());
+
+        // Compras vão para o histórico, ligadas ao subscriber
+        assertEquals(50, purchaseRepository.count());
+        assertEquals("HP0", purchaseRepository.findBySubscriberIdOrderByPurchasedAtDesc(merged.getId()).get(0).getTransactionId());
+    }
+
+    @Test
+    void importFrom_streamsCsvInChunksAndReportsRejects() {
+        StringBuilder csv = new StringBuilder("name,email,city,transaction_id,price\n");
+        for (int i = 0; i < 100; i++) {
+            csv.append("Aluno ").append(i).append(",aluno").append(i).append("@example.com,,HP").append(i).append(",97.00\n");
+        }
+        // Mesmo email mais adiante no arquivo: o último valor informado vence
+        csv.append(",aluno7@example.com,Recife,,\n");
+        csv.append("Sem Email,,,HPX,10\n");
+
+        ImportReport report = bulkImportService.importFrom(
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), "text/csv", Provider.HOTMART);
+
+        assertEquals(102, report.rows());
+        assertEquals(101, report.imported());
+        assertEquals(1, report.rejected());
+        assertEquals(new ImportReport.Reject(103, "Email not found"), report.rejects().get(0));
+        assertTrue(report.rowsPerSecond() > 0);
+
+        assertEquals(100, repository.count());
+        Subscriber repeated = repository.findByEmail("aluno7@example.com").orElseThrow();
+        assertEquals("aluno7", repeated.getName());
+        assertEquals("Recife", repeated.getCity());
+        assertEquals(100, purchaseRepository.count());
+    }
+
+    @Test
+    void importFrom_keepsThePurchaseStatusOfEachRow() {
+        String csv = "name,email,transaction_id,price,purchase_status\n" +
+                "Fulano,fulano@example.com,HP1,97.00,APPROVED\n" +
+                "Fulano,fulano@example.com,HP1,97.00,REFUNDED\n" +
+                "Beltrano,beltrano@example.com,HP2,50.00,\n";
+
+        ImportReport report = bulkImportService.importFrom(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "text/csv", Provider.HOTMART);
+
+        assertEquals(3, report.imported());
+        Subscriber fulano = repository.findByEmail("fulano@example.com").orElseThrow();
+        assertEquals(Set.of(PurchaseStatus.APPROVED, PurchaseStatus.REFUNDED),
+                purchaseRepository.findBySubscriberIdOrderByPurchasedAtDesc(fulano.getId()).stream()
+                        .map(Purchase::getStatus).collect(Collectors.toSet()));
+        // Sem status na linha: aprovada
+        Subscriber beltrano = repository.findByEmail("beltrano@example.com").orElseThrow();
+        assertEquals(PurchaseStatus.APPROVED,
+                purchaseRepository.findBySubscriberIdOrderByPurchasedAtDesc(beltrano.getId()).get(0).getStatus());
+    }
+}
@@ -0,0 +1,104 @@
+package br.com.ecs.arquetipos.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubscriberLocksTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SubscriberLocks locks = new SubscriberLocks(meterRegistry, 64);
+
+    @Test
+    void sameEmailIsSerializedRegardlessOfCase() throws Exception {
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String email = i % 2 == 0 ? "Fulano@Example.com" : " fulano@example.com";
+                futures.add(pool.submit(() -> locks.withLock(email, () -> {
+                    maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                    Thread.yield();
+                    return inside.decrementAndGet();
+                })));
+            }
+            for (Future<?> f : futures) f.get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, maxInside.get());
+        int stripe = locks.stripeOf("fulano@example.com");
+        assertEquals(200, meterRegistry.get("subscriber.lock.wait").tag("stripe", String.valueOf(stripe)).timer().count());
+    }
+
+    @Test
+    void differentStripesRunInParallel() throws Exception {
+        String a = "a@x.com";
+        String b = "b@x.com";
+        int i = 0;
+        while (locks.stripeOf(b) == locks.stripeOf(a)) b = "b" + (++i) + "@x.com";
+        String other = b;
+
+        CountDownLatch bothInside = new CountDownLatch(2);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = pool.submit(() -> locks.withLock(a, () -> await(bothInside)));
+            Future<Boolean> second = pool.submit(() -> locks.withLock(other, () -> await(bothInside)));
+            assertTrue(first.get(5, TimeUnit.SECONDS));
+            assertTrue(second.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(0.0, meterRegistry.find("subscriber.lock.contended").counters().stream()
+                .mapToDouble(c -> c.count()).sum());
+    }
+
+    @Test
+    void contentionIsCountedPerStripe() throws Exception {
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> locks.withLock("c@x.com", () -> {
+            holding.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }));
+        holder.start();
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        Thread waiter = new Thread(() -> locks.withLock("c@x.com", () -> true));
+        waiter.start();
+        while (meterRegistry.get("subscriber.lock.queued").gauge().value() < 1) Thread.onSpinWait();
+        release.countDown();
+        holder.join(5000);
+        waiter.join(5000);
+
+        String stripe = String.valueOf(locks.stripeOf("c@x.com"));
+        assertEquals(1.0, meterRegistry.get("subscriber.lock.contended").tag("stripe", stripe).counter().count());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
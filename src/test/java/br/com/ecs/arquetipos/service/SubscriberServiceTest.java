@@ -1,21 +1,31 @@
 package br.com.ecs.arquetipos.service;
 
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Purchase;
 import br.com.ecs.arquetipos.model.Subscriber;
 import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.repository.PurchaseRepository;
 import br.com.ecs.arquetipos.repository.SubscriberRepository;
+import br.com.ecs.arquetipos.repository.SubscriberRepositoryCustom.Upserted;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.dao.DataIntegrityViolationException;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,84 +34,234 @@ class SubscriberServiceTest {
     @Mock
     private SubscriberRepository repository;
 
-    @InjectMocks
+    @Mock
+    private ValidationResultCache validationResultCache;
+
+    @Mock
+    private PurchaseRepository purchaseRepository;
+
+    @Mock
+    private SubscriberResponseCache responseCache;
+
     private SubscriberService subscriberService;
 
     private final String email = "fulano@example.com";
 
     @BeforeEach
     void setup() {
+        subscriberService = new SubscriberService(repository, validationResultCache, Optional.empty(), null, null,
+                new SubscriberLocks(new SimpleMeterRegistry(), 4),
+                new SubscriberFingerprints(new SimpleMeterRegistry(), 100, Duration.ofMinutes(10)),
+                purchaseRepository, responseCache);
     }
 
     @Test
     void createNewSubscriber_whenNotExists() {
-        when(repository.findByEmail(email)).thenReturn(Optional.empty());
-
-        Subscriber toSave = Subscriber.builder()
-                .id(1L)
-                .name("Fulano")
-                .email(email)
-                .createdAt(Instant.now())
-                .build();
-
-        when(repository.save(any(Subscriber.class))).thenReturn(toSave);
+        when(repository.upsert(any(Subscriber.class))).thenAnswer(inv -> inserted(withId(inv.getArgument(0), 1L)));
 
         Subscriber result = subscriberService.createOrUpdate("Fulano", email, Provider.HOTMART);
 
         assertNotNull(result);
         assertEquals(email, result.getEmail());
         assertEquals("Fulano", result.getName());
-        verify(repository, times(1)).save(any(Subscriber.class));
+        verify(repository, times(1)).upsert(any(Subscriber.class));
+        verify(validationResultCache).invalidate(email);
     }
 
     @Test
-    void updateExistingSubscriber_whenNameChanged() {
-        Subscriber existing = Subscriber.builder()
-                .id(2L)
-                .name("Old")
-                .email(email)
-                .createdAt(Instant.now())
-                .build();
-
-        when(repository.findByEmail(email)).thenReturn(Optional.of(existing));
-
+    void updateExistingSubscriber_inSingleRoundTrip() {
         Subscriber updated = Subscriber.builder()
                 .id(2L)
                 .name("Novo")
                 .email(email)
-                .createdAt(existing.getCreatedAt())
+                .createdAt(Instant.parse("2025-01-01T00:00:00Z"))
+                .provider(Provider.EDUZZ)
                 .build();
-
-        when(repository.save(existing)).thenReturn(updated);
+        when(repository.upsert(any(Subscriber.class))).thenReturn(new Upserted(updated, false));
 
         Subscriber result = subscriberService.createOrUpdate("Novo", email, Provider.EDUZZ);
 
-        assertNotNull(result);
         assertEquals("Novo", result.getName());
-        verify(repository, times(1)).save(existing);
+        verify(repository, never()).findByEmail(any());
+        verify(repository, never()).save(any());
+        verifyNoInteractions(validationResultCache);
     }
 
     @Test
-    void handleDataIntegrityViolationByReturningExisting() {
-        when(repository.findByEmail(email)).thenReturn(Optional.empty());
+    void existingSubscriber_withSameCreatedAtAsCandidate_isNotTreatedAsInserted() {
+        // O repositório diz explicitamente se inseriu; created_at coincidente não significa inserção
+        when(repository.upsert(any(Subscriber.class))).thenAnswer(inv -> new Upserted(withId(inv.getArgument(0), 2L), false));
 
-        // Simula salvamento lançando DataIntegrityViolationException (condição de corrida)
-        when(repository.save(any(Subscriber.class))).thenThrow(new DataIntegrityViolationException("duplicate"));
+        subscriberService.createOrUpdate("Fulano", email, Provider.HOTMART);
 
-        Subscriber existing = Subscriber.builder()
-                .id(3L)
-                .name("Exists")
-                .email(email)
-                .createdAt(Instant.now())
-                .build();
+        verifyNoInteractions(validationResultCache);
+    }
 
-        when(repository.findByEmail(email)).thenReturn(Optional.of(existing));
+    @Test
+    void identityGoesToSubscriber_andPurchaseIsAppended() {
+        WebhookRequest req = new WebhookRequest();
+        req.setName("Fulano");
+        req.setEmail(email);
+        req.setCity("Belo Horizonte");
+        req.setTransactionId("HP1");
+        req.setPrice(new BigDecimal("97.00"));
+        ArgumentCaptor<Subscriber> captor = ArgumentCaptor.forClass(Subscriber.class);
+        when(repository.upsert(captor.capture())).thenAnswer(inv -> insertedWithId(inv.getArgument(0), 9L));
+        when(purchaseRepository.append(any(Purchase.class))).thenReturn(true);
 
-        Subscriber result = subscriberService.createOrUpdate("Exists", email, Provider.HOTMART);
+        subscriberService.createOrUpdate(req, Provider.HOTMART);
 
-        assertNotNull(result);
-        assertEquals(existing.getId(), result.getId());
-        assertEquals(existing.getEmail(), result.getEmail());
-        verify(repository, atLeastOnce()).findByEmail(email);
+        Subscriber candidate = captor.getValue();
+        assertEquals("Belo Horizonte", candidate.getCity());
+        assertEquals(Provider.HOTMART, candidate.getProvider());
+        assertNull(candidate.getPhone());
+        assertNull(candidate.getTransactionId());
+        assertNull(candidate.getPrice());
+
+        ArgumentCaptor<Purchase> purchase = ArgumentCaptor.forClass(Purchase.class);
+        verify(purchaseRepository).append(purchase.capture());
+        assertEquals(9L, purchase.getValue().getSubscriberId());
+        assertEquals("HP1", purchase.getValue().getTransactionId());
+        assertEquals(0, new BigDecimal("97").compareTo(purchase.getValue().getPrice()));
+        assertNotNull(purchase.getValue().getPurchasedAt());
+    }
+
+    @Test
+    void webhookWithoutPurchaseData_appendsNothing() {
+        when(repository.upsert(any(Subscriber.class))).thenAnswer(inv -> insertedWithId(inv.getArgument(0), 4L));
+
+        subscriberService.createOrUpdate("Fulano", email, Provider.HOTMART);
+
+        verifyNoInteractions(purchaseRepository);
+    }
+
+    @Test
+    void repeatedPayload_isAnsweredWithoutTouchingTheDatabase() {
+        when(repository.upsert(any(Subscriber.class))).thenAnswer(inv -> insertedWithId(inv.getArgument(0), 3L));
+
+        Subscriber first = subscriberService.createOrUpdate("Fulano", email, Provider.HOTMART);
+        Subscriber second = subscriberService.createOrUpdate("Fulano", email, Provider.HOTMART);
+
+        // Mesmo estado, mas nunca a instância guardada em cache
+        assertEquals(first, second);
+        assertNotSame(first, second);
+        verify(repository, times(1)).upsert(any(Subscriber.class));
+        verify(repository, never()).updateChanged(any(), any());
+    }
+
+    @Test
+    void changedPayload_issuesPartialUpdateAgainstKnownState() {
+        when(repository.upsert(any(Subscriber.class))).thenAnswer(inv -> insertedWithId(inv.getArgument(0), 3L));
+        Subscriber known = subscriberService.createOrUpdate("Fulano", email, Provider.HOTMART);
+
+        WebhookRequest req = new WebhookRequest();
+        req.setName("Fulano");
+        req.setEmail(email);
+        req.setCity("Recife");
+        Subscriber updated = withId(known, 3L);
+        updated.setCity("Recife");
+        when(repository.updateChanged(eq(known), any(Subscriber.class))).thenReturn(Optional.of(updated));
+
+        Subscriber result = subscriberService.createOrUpdate(req, Provider.HOTMART);
+
+        assertEquals("Recife", result.getCity());
+        verify(repository, times(1)).upsert(any(Subscriber.class));
+        ArgumentCaptor<Subscriber> captor = ArgumentCaptor.forClass(Subscriber.class);
+        verify(repository).updateChanged(eq(known), captor.capture());
+        assertEquals(SubscriberFingerprints.of(req, Provider.HOTMART), captor.getValue().getFingerprint());
+    }
+
+    @Test
+    void withBatcher_changedPayloadGoesThroughTheBatcher_andRepeatedPayloadIsShortCircuited() {
+        SubscriberUpsertBatcher batcher = mock(SubscriberUpsertBatcher.class);
+        SubscriberLocks locks = spy(new SubscriberLocks(new SimpleMeterRegistry(), 4));
+        SubscriberService batched = new SubscriberService(repository, validationResultCache, Optional.of(batcher), null, null,
+                locks, new SubscriberFingerprints(new SimpleMeterRegistry(), 100, Duration.ofMinutes(10)),
+                purchaseRepository, responseCache);
+        when(batcher.submit(any(Subscriber.class)))
+                .thenAnswer(inv -> CompletableFuture.completedFuture(insertedWithId(inv.getArgument(0), 8L)));
+
+        batched.createOrUpdate("Fulano", email, Provider.HOTMART);
+        Subscriber renamed = batched.createOrUpdate("Fulano de Tal", email, Provider.HOTMART);
+
+        Subscriber repeated = batched.createOrUpdate("Fulano de Tal", email, Provider.HOTMART);
+
+        assertEquals("Fulano de Tal", renamed.getName());
+        assertEquals("Fulano de Tal", repeated.getName());
+        verify(batcher, times(2)).submit(any(Subscriber.class));
+        verify(repository, never()).updateChanged(any(), any());
+        // Enfileirar e lembrar em cada gravação; o payload repetido só consulta o estado conhecido
+        verify(locks, times(5)).withLock(eq(email), any());
+    }
+
+    @Test
+    void withBatcher_waitForTheBatchDoesNotHoldTheStripeLock() throws Exception {
+        SubscriberUpsertBatcher batcher = mock(SubscriberUpsertBatcher.class);
+        // Uma única faixa: todos os emails disputam a mesma trava
+        SubscriberService batched = new SubscriberService(repository, validationResultCache, Optional.of(batcher), null, null,
+                new SubscriberLocks(new SimpleMeterRegistry(), 1),
+                new SubscriberFingerprints(new SimpleMeterRegistry(), 100, Duration.ofMinutes(10)),
+                purchaseRepository, responseCache);
+        CompletableFuture<Upserted> firstBatch = new CompletableFuture<>();
+        when(batcher.submit(any(Subscriber.class))).thenAnswer(inv -> {
+            Subscriber candidate = inv.getArgument(0);
+            return email.equals(candidate.getEmail())
+                    ? firstBatch
+                    : CompletableFuture.completedFuture(insertedWithId(candidate, 9L));
+        });
+
+        CompletableFuture<Subscriber> first = CompletableFuture.supplyAsync(
+                () -> batched.createOrUpdate("Fulano", email, Provider.HOTMART));
+        verify(batcher, timeout(5000)).submit(argThat(s -> email.equals(s.getEmail())));
+
+        // O lote do primeiro email ainda não gravou, e o segundo não espera por ele
+        Subscriber other = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> batched.createOrUpdate("Beltrano", "beltrano@example.com", Provider.HOTMART));
+        assertEquals(9L, other.getId());
+        assertFalse(first.isDone());
+
+        firstBatch.complete(new Upserted(withId(Subscriber.builder().name("Fulano").email(email)
+                .provider(Provider.HOTMART).build(), 1L), true));
+        assertEquals(1L, first.get(5, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    void failedPurchaseAppend_isRetriedOnRedeliveryInsteadOfShortCircuited() {
+        WebhookRequest req = new WebhookRequest();
+        req.setName("Fulano");
+        req.setEmail(email);
+        req.setTransactionId("HP7");
+        req.setPrice(new BigDecimal("97.00"));
+        when(repository.upsert(any(Subscriber.class))).thenAnswer(inv -> insertedWithId(inv.getArgument(0), 5L));
+        when(purchaseRepository.append(any(Purchase.class)))
+                .thenThrow(new IllegalStateException("purchases indisponível"))
+                .thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> subscriberService.createOrUpdate(req, Provider.HOTMART));
+        subscriberService.createOrUpdate(req, Provider.HOTMART);
+
+        // O fingerprint não foi lembrado na falha: a reentrega grava a compra
+        verify(purchaseRepository, times(2)).append(any(Purchase.class));
+        verify(repository, times(2)).upsert(any(Subscriber.class));
+    }
+
+    private static Upserted inserted(Subscriber s) {
+        return new Upserted(s, true);
+    }
+
+    private static Upserted insertedWithId(Subscriber s, long id) {
+        return inserted(withId(s, id));
+    }
+
+    private static Subscriber withId(Subscriber s, long id) {
+        return Subscriber.builder()
+                .id(id)
+                .name(s.getName())
+                .email(s.getEmail())
+                .createdAt(s.getCreatedAt())
+                .provider(s.getProvider())
+                .city(s.getCity())
+                .fingerprint(s.getFingerprint())
+                .build();
     }
 }
@@ -0,0 +1,141 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.Subscriber;
+import br.com.ecs.arquetipos.repository.SubscriberRepository;
+import br.com.ecs.arquetipos.repository.SubscriberRepositoryCustom.Upserted;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SubscriberUpsertBatcherTest {
+
+    @Mock
+    private SubscriberRepository repository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SubscriberUpsertBatcher batcher;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Linger longo: o lote só fecha ao atingir o tamanho máximo
+        batcher = new SubscriberUpsertBatcher(repository, transactionTemplate, meterRegistry, 3, Duration.ofSeconds(5), 100);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        batcher.stop();
+    }
+
+    @Test
+    void burst_isWrittenAsOneBatch_withRepeatedEmailInALaterRound() throws Exception {
+        when(repository.upsertAll(anyList())).thenAnswer(inv -> {
+            List<Subscriber> candidates = inv.getArgument(0);
+            return candidates.stream()
+                    .map(c -> new Upserted(Subscriber.builder().id(1L).email(c.getEmail()).name(c.getName()).build(), true))
+                    .toList();
+        });
+
+        CompletableFuture<Upserted> a1 = batcher.submit(candidate("a@x.com", "A1"));
+        CompletableFuture<Upserted> b = batcher.submit(candidate("b@x.com", "B"));
+        CompletableFuture<Upserted> a2 = batcher.submit(candidate("a@x.com", "A2"));
+
+        assertEquals("A1", a1.get(2, TimeUnit.SECONDS).subscriber().getName());
+        assertEquals("B", b.get(2, TimeUnit.SECONDS).subscriber().getName());
+        assertEquals("A2", a2.get(2, TimeUnit.SECONDS).subscriber().getName());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Subscriber>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository, times(2)).upsertAll(captor.capture());
+        assertEquals(List.of("a@x.com", "b@x.com"), captor.getAllValues().get(0).stream().map(Subscriber::getEmail).toList());
+        assertEquals(List.of("A2"), captor.getAllValues().get(1).stream().map(Subscriber::getName).toList());
+        assertEquals(3.0, meterRegistry.get("subscriber.upsert.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    void failedBatch_failsEveryCaller() {
+        when(repository.upsertAll(anyList())).thenThrow(new IllegalStateException("db down"));
+
+        List<CompletableFuture<Upserted>> futures = List.of(
+                batcher.submit(candidate("a@x.com", "A")),
+                batcher.submit(candidate("b@x.com", "B")),
+                batcher.submit(candidate("c@x.com", "C")));
+
+        for (CompletableFuture<Upserted> future : futures) {
+            CompletionException e = assertThrows(CompletionException.class, future::join);
+            assertEquals("db down", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    void failedLaterRound_failsTheEarlierRoundsToo() {
+        when(repository.upsertAll(anyList()))
+                .thenAnswer(inv -> List.of(upserted("a@x.com", "A1"), upserted("b@x.com", "B")))
+                .thenThrow(new IllegalStateException("db down"));
+
+        List<CompletableFuture<Upserted>> futures = List.of(
+                batcher.submit(candidate("a@x.com", "A1")),
+                batcher.submit(candidate("b@x.com", "B")),
+                batcher.submit(candidate("a@x.com", "A2")));
+
+        // Mesma transação para as duas rodadas: a primeira foi desfeita junto
+        verify(transactionTemplate, timeout(2000)).execute(any());
+        for (CompletableFuture<Upserted> future : futures) {
+            CompletionException e = assertThrows(CompletionException.class, future::join);
+            assertEquals("db down", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    void futures_areCompletedOnlyAfterTheCommit() {
+        when(repository.upsertAll(anyList()))
+                .thenAnswer(inv -> List.of(upserted("a@x.com", "A"), upserted("b@x.com", "B"), upserted("c@x.com", "C")));
+        doAnswer(inv -> {
+            inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            throw new IllegalStateException("commit failed");
+        }).when(transactionTemplate).execute(any());
+
+        List<CompletableFuture<Upserted>> futures = List.of(
+                batcher.submit(candidate("a@x.com", "A")),
+                batcher.submit(candidate("b@x.com", "B")),
+                batcher.submit(candidate("c@x.com", "C")));
+
+        for (CompletableFuture<Upserted> future : futures) {
+            CompletionException e = assertThrows(CompletionException.class, future::join);
+            assertEquals("commit failed", e.getCause().getMessage());
+        }
+    }
+
+    private static Upserted upserted(String email, String name) {
+        return new Upserted(Subscriber.builder().id(1L).email(email).name(name).build(), true);
+    }
+
+    private static Subscriber candidate(String email, String name) {
+        return Subscriber.builder().email(email).name(name).createdAt(Instant.now()).provider(Provider.HOTMART).build();
+    }
+}
@@ -0,0 +1,108 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.HotmartWebhookPayload;
+import br.com.ecs.arquetipos.model.ProcessedWebhookEvent;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.repository.ProcessedWebhookEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookDeduplicatorTest {
+
+    @Mock
+    private ProcessedWebhookEventRepository repository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private WebhookDeduplicator deduplicator;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        deduplicator = new WebhookDeduplicator(repository, meterRegistry, 100, Duration.ofHours(1), Duration.ofDays(30),
+                Duration.ofMinutes(5));
+    }
+
+    @Test
+    void completedEvent_isAnsweredFromMemoryWindow() {
+        when(repository.insertIfAbsent(eq("HOTMART"), eq("event:1"), isNull(), isNull(), any(Instant.class))).thenReturn(1);
+
+        assertEquals(Optional.empty(), deduplicator.claim(Provider.HOTMART, "event:1"));
+        deduplicator.complete(Provider.HOTMART, "event:1", 42L, "a@x.com");
+
+        assertEquals(Optional.of(new WebhookDeduplicator.ProcessedEvent(42L, "a@x.com")),
+                deduplicator.claim(Provider.HOTMART, "event:1"));
+        verify(repository).complete(eq("HOTMART"), eq("event:1"), eq(42L), eq("a@x.com"), any(Instant.class));
+        verify(repository, times(1)).insertIfAbsent(any(), any(), any(), any(), any());
+        verify(repository, never()).findById(any());
+    }
+
+    @Test
+    void completedEventOutsideWindow_isFoundInTableAndCached() {
+        ProcessedWebhookEvent.Key key = new ProcessedWebhookEvent.Key(Provider.HOTMART, "event:2");
+        when(repository.findById(key)).thenReturn(Optional.of(ProcessedWebhookEvent.builder()
+                .provider(Provider.HOTMART).eventKey("event:2").subscriberId(7L).email("b@x.com").build()));
+
+        assertTrue(deduplicator.claim(Provider.HOTMART, "event:2").isPresent());
+        assertTrue(deduplicator.claim(Provider.HOTMART, "event:2").isPresent());
+
+        verify(repository, times(1)).findById(key);
+        assertEquals(1.0, meterRegistry.get("webhook.dedup.lookups").tag("result", "memory").counter().count());
+    }
+
+    @Test
+    void concurrentDelivery_seesEventInProgressUntilClaimExpires() {
+        ProcessedWebhookEvent.Key key = new ProcessedWebhookEvent.Key(Provider.HOTMART, "event:3");
+        when(repository.findById(key)).thenReturn(Optional.of(ProcessedWebhookEvent.builder()
+                .provider(Provider.HOTMART).eventKey("event:3").processedAt(Instant.now()).build()));
+
+        Optional<WebhookDeduplicator.ProcessedEvent> claimed = deduplicator.claim(Provider.HOTMART, "event:3");
+
+        assertTrue(claimed.isPresent());
+        assertTrue(claimed.get().inProgress());
+        verify(repository).takeOverStaleClaim(eq("HOTMART"), eq("event:3"), any(Instant.class), any(Instant.class));
+
+        // Reserva abandonada: a próxima entrega assume e processa
+        when(repository.takeOverStaleClaim(eq("HOTMART"), eq("event:3"), any(Instant.class), any(Instant.class))).thenReturn(1);
+        assertEquals(Optional.empty(), deduplicator.claim(Provider.HOTMART, "event:3"));
+    }
+
+    @Test
+    void failedProcessing_releasesClaim() {
+        deduplicator.release(Provider.HOTMART, "event:4");
+
+        verify(repository).releaseClaim("HOTMART", "event:4");
+        deduplicator.release(Provider.HOTMART, null);
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    void eventKey_prefersEventId_thenTransactionAndEventType() {
+        HotmartWebhookPayload payload = new HotmartWebhookPayload();
+        payload.setEvent("PURCHASE_REFUNDED");
+        HotmartWebhookPayload.DataNode data = new HotmartWebhookPayload.DataNode();
+        HotmartWebhookPayload.Purchase purchase = new HotmartWebhookPayload.Purchase();
+        purchase.setTransaction("HP123");
+        data.setPurchase(purchase);
+        payload.setData(data);
+
+        assertEquals("tx:HP123:PURCHASE_REFUNDED", WebhookDeduplicator.hotmartEventKey(payload));
+        payload.setId("evt-9");
+        assertEquals("event:evt-9", WebhookDeduplicator.hotmartEventKey(payload));
+        assertNull(WebhookDeduplicator.hotmartEventKey(new HotmartWebhookPayload()));
+    }
+}
@@ -0,0 +1,134 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.WebhookInboxMessage;
+import br.com.ecs.arquetipos.repository.WebhookInboxRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookInboxProcessorTest {
+
+    @Mock
+    private WebhookInboxRepository repository;
+
+    @Mock
+    private SubscriberService subscriberService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private SimpleMeterRegistry meterRegistry;
+    private WebhookInboxProcessor processor;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        processor = new WebhookInboxProcessor(repository, subscriberService, transactionTemplate, objectMapper,
+                meterRegistry, 1, 10, Duration.ofMillis(100), Duration.ofMinutes(5),
+                3, Duration.ofSeconds(5), Duration.ofSeconds(30));
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        lenient().when(repository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    void processedMessage_isRemovedFromInbox() throws Exception {
+        WebhookRequest request = new WebhookRequest();
+        request.setName("Fulano");
+        request.setEmail("fulano@example.com");
+        request.setPurchaseDate(Instant.parse("2026-01-01T00:00:00Z"));
+        WebhookInboxMessage message = message(objectMapper.writeValueAsString(request), 0);
+        when(repository.lockNextBatch(any(), eq(10))).thenReturn(List.of(message));
+
+        assertEquals(1, processor.drainOnce());
+
+        verify(subscriberService).createOrUpdate(request, Provider.HOTMART);
+        verify(repository).delete(message);
+        assertEquals(1.0, meterRegistry.get("webhook.inbox.processed").tag("outcome", "success").counter().count());
+    }
+
+    @Test
+    void failure_isRescheduledWithBackoff_thenDeadLettered() {
+        WebhookInboxMessage message = message("{\"name\":\"Fulano\",\"email\":\"fulano@example.com\"}", 0);
+        when(repository.lockNextBatch(any(), anyInt())).thenReturn(List.of(message));
+        when(subscriberService.createOrUpdate(any(WebhookRequest.class), any())).thenThrow(new IllegalStateException("db down"));
+
+        processor.drainOnce();
+        assertEquals(WebhookInboxMessage.Status.PENDING, message.getStatus());
+        assertEquals(1, message.getAttempts());
+        assertTrue(message.getNextAttemptAt().isAfter(Instant.now().plusSeconds(4)));
+
+        processor.drainOnce();
+        processor.drainOnce();
+        assertEquals(WebhookInboxMessage.Status.DEAD, message.getStatus());
+        assertEquals("db down", message.getLastError());
+        verify(repository, never()).delete(any());
+    }
+
+    @Test
+    void expiredClaims_countAsAttempts_soAPoisonMessageEndsDead() {
+        WebhookInboxMessage message = message("{\"name\":\"Fulano\",\"email\":\"fulano@example.com\"}", 0);
+        when(repository.lockNextBatch(any(), anyInt())).thenReturn(List.of(message));
+        // O worker morre no meio do processamento: nem sucesso nem falha chegam a ser gravados
+        when(subscriberService.createOrUpdate(any(WebhookRequest.class), any())).thenAnswer(inv -> {
+            throw new OutOfMemoryError("worker crashed");
+        });
+
+        for (int i = 1; i <= 3; i++) {
+            assertThrows(OutOfMemoryError.class, processor::drainOnce);
+            assertEquals(i, message.getAttempts());
+            assertEquals(WebhookInboxMessage.Status.PROCESSING, message.getStatus());
+        }
+
+        // Reserva vencida de novo, tentativas esgotadas: não é mais entregue ao processamento
+        assertEquals(0, processor.drainOnce());
+        assertEquals(WebhookInboxMessage.Status.DEAD, message.getStatus());
+        verify(subscriberService, times(3)).createOrUpdate(any(WebhookRequest.class), any());
+    }
+
+    @Test
+    void unreadablePayload_goesStraightToDead() {
+        WebhookInboxMessage message = message("not-json", 0);
+        when(repository.lockNextBatch(any(), anyInt())).thenReturn(List.of(message));
+
+        processor.drainOnce();
+
+        assertEquals(WebhookInboxMessage.Status.DEAD, message.getStatus());
+        verifyNoInteractions(subscriberService);
+    }
+
+    @Test
+    void backoff_growsExponentiallyUpToMax() {
+        assertEquals(Duration.ofSeconds(5), processor.backoff(1));
+        assertEquals(Duration.ofSeconds(20), processor.backoff(3));
+        assertEquals(Duration.ofSeconds(30), processor.backoff(10));
+    }
+
+    private static WebhookInboxMessage message(String payload, int attempts) {
+        return WebhookInboxMessage.builder()
+                .id(1L)
+                .provider(Provider.HOTMART)
+                .payload(payload)
+                .attempts(attempts)
+                .receivedAt(Instant.now())
+                .nextAttemptAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,95 @@
+package br.com.ecs.arquetipos.service;
+
+import br.com.ecs.arquetipos.dto.WebhookRequest;
+import br.com.ecs.arquetipos.model.Provider;
+import br.com.ecs.arquetipos.model.PurchaseStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookProviderRegistryTest {
+
+    private final WebhookProviderRegistry registry = new WebhookProviderRegistry(
+            new ObjectMapper().registerModule(new JavaTimeModule()),
+            List.of(new HotmartWebhookAdapter(), new EduzzWebhookAdapter()));
+
+    @Test
+    void detectsProviderBySignatureHeaderIgnoringCase() {
+        HttpHeaders hotmart = new HttpHeaders();
+        hotmart.add("x-hotmart-hottok", "token");
+        HttpHeaders eduzz = new HttpHeaders();
+        eduzz.add("X-EDUZZ-SIGNATURE", "sig");
+
+        assertEquals(Provider.HOTMART, registry.detect(hotmart));
+        assertEquals(Provider.EDUZZ, registry.detect(eduzz));
+        assertEquals(Provider.UNKNOWN, registry.detect(new HttpHeaders()));
+    }
+
+    @Test
+    void eduzzPayloadIsBoundToTypedDto() {
+        String json = """
+                {"event": "myeduzz.invoice_paid",
+                 "data": {"id": "INV-1", "paidAt": "2024-05-01T12:00:00Z",
+                          "buyer": {"name": "Maria", "email": "maria@x.com", "cellphone": "+55 81 9999",
+                                    "document": "123", "address": {"zipCode": "50000-000", "state": "PE"}},
+                          "items": [{"productId": "P1", "name": "Curso"}],
+                          "price": {"value": 97.5, "currency": "BRL"}}}
+                """;
+
+        WebhookRequest req = registry.read(Provider.EDUZZ, json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("maria@x.com", req.getEmail());
+        assertEquals("Maria", req.getName());
+        assertEquals("+55 81 9999", req.getPhone());
+        assertEquals("50000-000", req.getZipcode());
+        assertEquals("P1", req.getProductId());
+        assertEquals("INV-1", req.getTransactionId());
+        assertEquals(Instant.parse("2024-05-01T12:00:00Z"), req.getPurchaseDate());
+        assertEquals(PurchaseStatus.APPROVED, req.getPurchaseStatus());
+    }
+
+    @Test
+    void refundAndChargebackEventsAreCarriedAsPurchaseStatus() {
+        String hotmart = """
+                {"event": "PURCHASE_REFUNDED",
+                 "data": {"buyer": {"email": "ana@x.com", "name": "Ana"}, "purchase": {"transaction": "HP1"}}}
+                """;
+        String eduzz = """
+                {"event": "myeduzz.invoice_chargeback",
+                 "data": {"id": "INV-2", "buyer": {"name": "Maria", "email": "maria@x.com"}}}
+                """;
+
+        assertEquals(PurchaseStatus.REFUNDED,
+                registry.read(Provider.HOTMART, hotmart.getBytes(StandardCharsets.UTF_8)).getPurchaseStatus());
+        assertEquals(PurchaseStatus.CHARGEBACK,
+                registry.read(Provider.EDUZZ, eduzz.getBytes(StandardCharsets.UTF_8)).getPurchaseStatus());
+        assertEquals(PurchaseStatus.PENDING, HotmartWebhookAdapter.purchaseStatus("PURCHASE_BILLET_PRINTED"));
+        assertEquals(PurchaseStatus.CANCELED, EduzzWebhookAdapter.purchaseStatus("canceled", "myeduzz.invoice_paid"));
+    }
+
+    @Test
+    void flatLegacyPayloadAndValidation() {
+        WebhookRequest req = registry.read(Provider.EDUZZ,
+                "{\"name\":\"Fulano\",\"email\":\"fulano@x.com\"}".getBytes(StandardCharsets.UTF_8));
+        assertEquals("fulano@x.com", req.getEmail());
+
+        assertThrows(IllegalArgumentException.class, () -> registry.read(Provider.EDUZZ,
+                "{\"email\":\"fulano@x.com\"}".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IllegalArgumentException.class, () -> registry.read(Provider.EDUZZ,
+                "{\"name\":\"Fulano\",".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IllegalArgumentException.class, () -> registry.read(Provider.UNKNOWN, new byte[0]));
+    }
+
+    @Test
+    void duplicateAdaptersAreRejected() {
+        assertThrows(IllegalStateException.class, () -> new WebhookProviderRegistry(new ObjectMapper(),
+                List.of(new EduzzWebhookAdapter(), new EduzzWebhookAdapter())));
+    }
+}